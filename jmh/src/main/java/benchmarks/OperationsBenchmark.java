@@ -0,0 +1,102 @@
+package benchmarks;
+
+import expressions.elements.Num;
+import interfaces.Expression;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmarks of the operations every expression implements, on the small, deep and wide benchmark trees.
+ * Each operation is measured for throughput and sampled for the percentiles of its per-operation latency;
+ * run with -prof gc to add the allocation rate and the bytes allocated per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OperationsBenchmark {
+    @Param({"small", "deep", "wide"})
+    private String shape;
+
+    private Expression expression;
+    private Expression constant;
+    private Map<String, Double> assignment;
+    private String variable;
+    private Expression replacement;
+
+    /**
+     * Builds the tree of the benchmarked shape.
+     */
+    @Setup
+    public void setUp() {
+        BenchmarkTree tree;
+        switch (shape) {
+            case "small":
+                tree = BenchmarkTree.small();
+                break;
+            case "deep":
+                tree = BenchmarkTree.deep();
+                break;
+            case "wide":
+                tree = BenchmarkTree.wide();
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown tree shape: " + shape);
+        }
+        expression = tree.getExpression();
+        constant = tree.getConstantExpression();
+        assignment = tree.getAssignment();
+        variable = tree.getVariables().get(0);
+        replacement = new Num(2);
+    }
+
+    @Benchmark
+    public double evaluateMap() throws Exception {
+        return expression.evaluate(assignment);
+    }
+
+    @Benchmark
+    public double evaluate() throws Exception {
+        return constant.evaluate();
+    }
+
+    @Benchmark
+    public Expression differentiate() {
+        return expression.differentiate(variable);
+    }
+
+    @Benchmark
+    public Expression simplify() {
+        return expression.simplify();
+    }
+
+    @Benchmark
+    public Expression assign() {
+        return expression.assign(variable, replacement);
+    }
+
+    @Benchmark
+    public List<String> getVariables() {
+        return expression.getVariables();
+    }
+
+    @Benchmark
+    public String toStringOperation() {
+        return expression.toString();
+    }
+}
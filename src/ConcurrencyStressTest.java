@@ -0,0 +1,165 @@
+import expressions.base.ExpressionInterner;
+import expressions.base.ExpressionTape;
+import expressions.base.JitCompiler;
+import expressions.base.LazyDerivative;
+import interfaces.CompiledExpression;
+import interfaces.Expression;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Main class to check that expression trees can be shared between threads without copying or locking.
+ * Random trees, their lazy derivatives, a map of compiled trees and an interner are shared by many threads,
+ * which evaluate, print, simplify, differentiate, compile and intern every tree in their own order.
+ * Every result must equal the result of a single-threaded run, or the check fails with an AssertionError.
+ */
+public class ConcurrencyStressTest {
+    private static final int TREES = 200;
+    private static final int DEPTH = 6;
+    private static final int THREADS = 64;
+    private static final int ROUNDS = 4;
+
+    /**
+     * Evaluates an expression in one way, so that a value and an error can be compared alike.
+     */
+    private interface Evaluation {
+        double evaluate() throws Exception;
+    }
+
+    /**
+     * Main method.
+     *
+     * @param args Command-line arguments.
+     * @throws Exception If an error occurs during execution.
+     */
+    public static void main(String[] args) throws Exception {
+        RandomExpressions random = new RandomExpressions(16);
+        List<Expression> trees = new ArrayList<>();
+        List<LazyDerivative> derivatives = new ArrayList<>();
+        for (int i = 0; i < TREES; i++) {
+            Expression tree = random.next(DEPTH);
+            trees.add(tree);
+            derivatives.add(new LazyDerivative(tree, "x"));
+        }
+        Map<String, Double> assignment = new TreeMap<>();
+        double[] values = new double[RandomExpressions.VARIABLES.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = random.nextValue();
+            assignment.put(RandomExpressions.VARIABLES.get(i), values[i]);
+        }
+
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < TREES; i++) {
+            expected.add(results(new LazyDerivative(trees.get(i), "x"), trees.get(i), assignment, values,
+                    new ConcurrentHashMap<>(), new ExpressionInterner()));
+        }
+
+        ConcurrentMap<Expression, CompiledExpression> compiled = new ConcurrentHashMap<>();
+        ExpressionInterner interner = new ExpressionInterner();
+        Queue<String> failures = new ConcurrentLinkedQueue<>();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> workers = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            Random order = new Random(t);
+            workers.add(pool.submit(() -> {
+                start.await();
+                List<Integer> indices = new ArrayList<>();
+                for (int i = 0; i < TREES; i++) {
+                    indices.add(i);
+                }
+                for (int round = 0; round < ROUNDS; round++) {
+                    Collections.shuffle(indices, order);
+                    for (int i : indices) {
+                        String actual = results(derivatives.get(i), trees.get(i), assignment, values, compiled,
+                                interner);
+                        if (!actual.equals(expected.get(i))) {
+                            failures.add(trees.get(i) + "\n  expected " + expected.get(i) + "\n  actual   " + actual);
+                        }
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        try {
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+        } catch (ExecutionException e) {
+            throw new AssertionError("A worker thread failed", e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+
+        if (!failures.isEmpty()) {
+            throw new AssertionError(failures.size() + " concurrent results differ from the single-threaded run, "
+                    + "the first for " + failures.peek());
+        }
+        if (compiled.size() > TREES || interner.size() == 0) {
+            throw new AssertionError("Shared caches hold " + compiled.size() + " compiled trees and "
+                    + interner.size() + " interned nodes");
+        }
+        System.out.println("ok: " + THREADS + " threads agreed on " + THREADS * ROUNDS * TREES + " tree results");
+    }
+
+    /**
+     * Returns every result of the operations on a tree as one string, with errors in place of values.
+     */
+    private static String results(LazyDerivative derivative, Expression tree, Map<String, Double> assignment,
+                                  double[] values, ConcurrentMap<Expression, CompiledExpression> compiled,
+                                  ExpressionInterner interner) {
+        List<String> variableOrder = RandomExpressions.VARIABLES;
+        Map<String, double[]> columns = new TreeMap<>();
+        for (int i = 0; i < values.length; i++) {
+            columns.put(variableOrder.get(i), new double[]{values[i]});
+        }
+        StringBuilder results = new StringBuilder();
+        results.append(tree).append(" | ").append(tree.hashCode()).append(" | ").append(tree.getVariables());
+        results.append(" | ").append(tree.assign("z", tree).equals(tree));
+        results.append(" | ").append(interner.intern(tree).equals(tree));
+        append(results, () -> tree.evaluate(assignment));
+        append(results, () -> {
+            double[] out = new double[1];
+            tree.evaluateBatch(columns, out);
+            return out[0];
+        });
+        append(results, () -> {
+            double[] dual = new double[1];
+            tree.evaluateDual(assignment, Map.of("x", 1.0, "y", 0.0), dual);
+            return dual[0];
+        });
+        append(results, () -> tree.compile(variableOrder).evaluate(values));
+        append(results, () -> compiled.computeIfAbsent(tree, key -> new JitCompiler(variableOrder).compile(key))
+                .evaluate(values));
+        append(results, () -> new ExpressionTape(tree, variableOrder).gradient(values)[0]);
+        append(results, () -> derivative.evaluate(assignment));
+        results.append(" | ").append(derivative.expand());
+        results.append(" | ").append(tree.simplify());
+        results.append(" | ").append(tree.differentiate("x"));
+        return results.toString();
+    }
+
+    private static void append(StringBuilder results, Evaluation evaluation) {
+        results.append(" | ");
+        try {
+            results.append(evaluation.evaluate());
+        } catch (Exception e) {
+            results.append("error: ").append(e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,132 @@
+import expressions.base.DagDifferentiator;
+import expressions.base.EvaluationCache;
+import expressions.base.ExpressionInterner;
+import expressions.base.ExpressionOptimizer;
+import expressions.base.ExpressionTape;
+import expressions.base.JitCompiler;
+import expressions.base.RewriteEngine;
+import expressions.binary.Mult;
+import expressions.binary.Plus;
+import expressions.elements.Num;
+import expressions.elements.Var;
+import expressions.io.ExpressionSerializer;
+import expressions.nary.Product;
+import expressions.nary.Sum;
+import expressions.parser.ExpressionParser;
+import interfaces.Expression;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Main class to check that trees far deeper than the call stack can be walked by every operation.
+ * The tree is a chain that alternates n-ary sums and binary multiplications, so neither kind of node may
+ * start a new walk for its operands. The checks run on a thread with a small stack, and every operation
+ * must agree with evaluate, or the check fails with an AssertionError.
+ */
+public class DeepTreeTest {
+    private static final int LEVELS = 100_000;
+    private static final long STACK_SIZE = 512 * 1024;
+    private static final double TOLERANCE = 1e-9;
+
+    /**
+     * Main method.
+     *
+     * @param args Command-line arguments.
+     * @throws Exception If an error occurs during execution.
+     */
+    public static void main(String[] args) throws Exception {
+        Throwable[] failure = new Throwable[1];
+        Thread thread = new Thread(null, () -> {
+            try {
+                check();
+                checkFlattening();
+            } catch (Throwable e) {
+                failure[0] = e;
+            }
+        }, "deep", STACK_SIZE);
+        thread.start();
+        thread.join();
+        if (failure[0] != null) {
+            throw new AssertionError("A " + LEVELS + " level tree cannot be walked", failure[0]);
+        }
+        System.out.println("ok: every operation walks a " + LEVELS + " level tree of sums and products");
+    }
+
+    private static void check() throws Exception {
+        Expression tree = new Var("x");
+        for (int i = 0; i < LEVELS; i++) {
+            tree = i % 2 == 0
+                    ? new Sum(List.of(tree, new Var("y"), new Num(1)))
+                    : new Mult(tree, new Num(1.0000001));
+        }
+        Map<String, Double> assignment = Map.of("x", 0.5, "y", 0.25);
+        List<String> variableOrder = List.of("x", "y");
+        double[] values = {0.5, 0.25};
+        double expected = tree.evaluate(assignment);
+
+        check("evaluate()", expected, tree.assign("x", new Num(0.5)).assign("y", new Num(0.25)).evaluate());
+        check("simplify", expected, tree.simplify().evaluate(assignment));
+        check("compile", expected, tree.compile(variableOrder).evaluate(values));
+        check("JitCompiler", expected, new JitCompiler(variableOrder).compile(tree).evaluate(values));
+        check("ExpressionTape", expected, new ExpressionTape(tree, variableOrder).evaluate(values));
+        check("ExpressionOptimizer", expected, new ExpressionOptimizer().optimize(tree).evaluate(assignment));
+        check("RewriteEngine", expected, RewriteEngine.standard().rewrite(tree).evaluate(assignment));
+        check("EvaluationCache", expected, new EvaluationCache(1000).evaluate(tree, assignment));
+        check("DagDifferentiator.simplify", expected, new DagDifferentiator().simplify(tree).evaluate(assignment));
+        double[] column = new double[1];
+        tree.evaluateBatch(Map.of("x", new double[]{0.5}, "y", new double[]{0.25}), column);
+        check("evaluateBatch", expected, column[0]);
+
+        // the derivative shares the subtrees of the tree, which a tape evaluates once and evaluate at every use
+        double slope = new ExpressionTape(tree.differentiate("y"), variableOrder).evaluate(values);
+        double[] derivative = new double[1];
+        check("evaluateDual", expected, tree.evaluateDual(assignment, Map.of("y", 1.0), derivative));
+        check("evaluateDual derivative", slope, derivative[0]);
+        check("gradient", slope, new ExpressionTape(tree, variableOrder).gradient(values)[1]);
+        check("DagDifferentiator", slope,
+                new ExpressionTape(new DagDifferentiator().differentiate(tree, "y"), variableOrder).evaluate(values));
+
+        Expression copy = tree.assign("z", new Num(0));
+        if (copy == tree || !copy.equals(tree) || copy.hashCode() != tree.hashCode()) {
+            throw new AssertionError("A copy of the tree is not equal to it");
+        }
+        if (!new ExpressionInterner().intern(copy).equals(tree)) {
+            throw new AssertionError("Interning the tree changes it");
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ExpressionSerializer serializer = new ExpressionSerializer();
+        serializer.writeTo(tree, out);
+        check("ExpressionSerializer", expected,
+                serializer.readFrom(ByteBuffer.wrap(out.toByteArray())).evaluate(assignment));
+        if (RewriteEngine.cost(tree) <= LEVELS) {
+            throw new AssertionError("The tree cannot be costed");
+        }
+        check("ExpressionParser", expected, new ExpressionParser().parse(tree.toString()).evaluate(assignment));
+    }
+
+    /**
+     * Checks that sums and products flatten long chains of binary additions and multiplications.
+     */
+    private static void checkFlattening() throws Exception {
+        Expression additions = new Var("x");
+        Expression multiplications = new Var("x");
+        for (int i = 0; i < LEVELS; i++) {
+            additions = new Plus(additions, new Var("y"));
+            multiplications = new Mult(multiplications, new Num(1.0000001));
+        }
+        Map<String, Double> assignment = Map.of("x", 0.5, "y", 0.25);
+        check("Sum.simplify", additions.evaluate(assignment) + 1,
+                new Sum(List.of(additions, new Num(1))).simplify().evaluate(assignment));
+        check("Product.simplify", multiplications.evaluate(assignment) * 2,
+                new Product(List.of(multiplications, new Num(2))).simplify().evaluate(assignment));
+    }
+
+    private static void check(String operation, double expected, double actual) {
+        if (Math.abs(actual - expected) > TOLERANCE * Math.max(1, Math.abs(expected))) {
+            throw new AssertionError(operation + " gives " + actual + " instead of " + expected);
+        }
+    }
+}
@@ -0,0 +1,241 @@
+import benchmarks.BenchmarkRunner;
+import benchmarks.BenchmarkTree;
+import expressions.base.EvaluationCache;
+import expressions.base.EvaluationSession;
+import expressions.base.ExpressionOptimizer;
+import expressions.base.ExpressionSet;
+import expressions.base.ExpressionTape;
+import expressions.base.GridEvaluator;
+import expressions.base.JitCompiler;
+import expressions.base.LazyDerivative;
+import expressions.base.RewriteEngine;
+import expressions.elements.Num;
+import expressions.parser.ExpressionCache;
+import expressions.parser.ExpressionParser;
+import interfaces.CompiledExpression;
+import interfaces.Expression;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Main class to measure the expression operations and compare the evaluation backends
+ * on a small, a deep, a wide and a flat expression, and the optimizer on a sum of powers, logarithms and divisions
+ * and on a polynomial.
+ * An optional argument runs only the benchmarks whose name contains it, e.g. "deep" or "simplify".
+ * It is a quick check that runs without a build; the JMH benchmarks in the jmh module are the reference for
+ * measuring a change, with per-operation latency percentiles and allocation rates.
+ */
+public class ExpressionsBenchmark {
+    private static final int BATCH_ROWS = 10_000;
+    private static final int GRID_POINTS_PER_VARIABLE = 100;
+
+    /**
+     * Main method.
+     *
+     * @param args Command-line arguments.
+     * @throws Exception If an error occurs during execution.
+     */
+    public static void main(String[] args) throws Exception {
+        BenchmarkRunner runner = new BenchmarkRunner(args.length > 0 ? args[0] : null);
+        List<BenchmarkTree> trees = List.of(BenchmarkTree.small(), BenchmarkTree.deep(), BenchmarkTree.wide(),
+                BenchmarkTree.flat());
+
+        runner.printHeader();
+        for (BenchmarkTree tree : trees) {
+            benchmarkOperations(runner, tree);
+        }
+        for (BenchmarkTree tree : trees) {
+            benchmarkBackends(runner, tree);
+        }
+        for (BenchmarkTree tree : trees) {
+            benchmarkBatch(runner, tree);
+        }
+        for (BenchmarkTree tree : trees) {
+            benchmarkSet(runner, tree);
+        }
+        for (BenchmarkTree tree : trees) {
+            benchmarkFormulaCache(runner, tree);
+        }
+        List<BenchmarkTree> optimizerTrees = List.of(BenchmarkTree.small(), BenchmarkTree.powers(),
+                BenchmarkTree.polynomial());
+        for (BenchmarkTree tree : optimizerTrees) {
+            benchmarkOptimizer(runner, tree);
+        }
+        benchmarkGrid(runner, BenchmarkTree.small());
+        System.out.println("checksum " + runner.sink());
+    }
+
+    private static void benchmarkOperations(BenchmarkRunner runner, BenchmarkTree tree) throws Exception {
+        String prefix = tree.getName() + ".";
+        Expression expression = tree.getExpression();
+        Expression constant = tree.getConstantExpression();
+        Map<String, Double> assignment = tree.getAssignment();
+        String variable = tree.getVariables().get(0);
+        Expression replacement = new Num(2);
+
+        runner.run(prefix + "evaluate(Map)", () -> expression.evaluate(assignment));
+        runner.run(prefix + "evaluate()", constant::evaluate);
+        EvaluationCache cache = new EvaluationCache(100_000);
+        runner.run(prefix + "cached evaluate(Map)", () -> cache.evaluate(expression, assignment));
+        String lastVariable = tree.getVariables().get(tree.getVariables().size() - 1);
+        Map<String, Double> changing = new TreeMap<>(assignment);
+        double[] step = new double[1];
+        runner.run(prefix + "cached evaluate(Map) one change", () -> {
+            changing.put(lastVariable, assignment.get(lastVariable) + step[0]++ / 1e6);
+            return cache.evaluate(expression, changing);
+        });
+        EvaluationSession session = new EvaluationSession(expression, assignment);
+        runner.run(prefix + "session set one variable", () -> {
+            session.set(lastVariable, assignment.get(lastVariable) + step[0]++ / 1e6);
+            return session.value();
+        });
+        runner.run(prefix + "differentiate", () -> expression.differentiate(variable).hashCode());
+        runner.run(prefix + "lazy differentiate one level",
+                () -> new LazyDerivative(expression, variable).expand().hashCode());
+        runner.run(prefix + "simplify", () -> expression.simplify().hashCode());
+        runner.run(prefix + "rewrite", () -> RewriteEngine.standard().rewrite(expression).hashCode());
+        runner.run(prefix + "assign", () -> expression.assign(variable, replacement).hashCode());
+        runner.run(prefix + "getVariables", () -> expression.getVariables().size());
+        runner.run(prefix + "toString", () -> expression.toString().length());
+        runner.run(prefix + "appendTo minimal", () -> {
+            StringBuilder builder = new StringBuilder();
+            expression.appendTo(builder, true);
+            return builder.length();
+        });
+    }
+
+    private static void benchmarkBackends(BenchmarkRunner runner, BenchmarkTree tree) throws Exception {
+        String prefix = tree.getName() + ".backend.";
+        List<String> variableOrder = tree.getVariables();
+        double[] values = tree.getValues();
+        CompiledExpression interpreted = tree.getExpression().compile(variableOrder);
+        CompiledExpression generated = new JitCompiler(variableOrder).compile(tree.getExpression());
+        ExpressionTape tape = new ExpressionTape(tree.getExpression(), variableOrder);
+        double[] gradient = new double[variableOrder.size()];
+
+        runner.run(prefix + "compile", () -> interpreted.evaluate(values));
+        runner.run(prefix + "jit", () -> generated.evaluate(values));
+        runner.run(prefix + "tape", () -> tape.evaluate(values));
+        runner.run(prefix + "tape gradient", () -> tape.gradient(values, gradient));
+    }
+
+    private static void benchmarkBatch(BenchmarkRunner runner, BenchmarkTree tree) throws Exception {
+        String prefix = tree.getName() + ".batch." + BATCH_ROWS + " rows.";
+        List<String> variableOrder = tree.getVariables();
+        Map<String, double[]> columns = new TreeMap<>();
+        double[][] columnsInOrder = new double[variableOrder.size()][BATCH_ROWS];
+        for (int v = 0; v < variableOrder.size(); v++) {
+            for (int i = 0; i < BATCH_ROWS; i++) {
+                columnsInOrder[v][i] = 1 + (i + v) % 100 / 50.0;
+            }
+            columns.put(variableOrder.get(v), columnsInOrder[v]);
+        }
+        Expression expression = tree.getExpression();
+        CompiledExpression compiled = expression.compile(variableOrder);
+        double[] row = new double[variableOrder.size()];
+        double[] out = new double[BATCH_ROWS];
+
+        runner.run(prefix + "row by row", () -> {
+            for (int i = 0; i < BATCH_ROWS; i++) {
+                for (int v = 0; v < row.length; v++) {
+                    row[v] = columnsInOrder[v][i];
+                }
+                out[i] = compiled.evaluate(row);
+            }
+            return out[BATCH_ROWS - 1];
+        });
+        runner.run(prefix + "evaluateBatch", () -> {
+            expression.evaluateBatch(columns, out);
+            return out[BATCH_ROWS - 1];
+        });
+    }
+
+    private static void benchmarkSet(BenchmarkRunner runner, BenchmarkTree tree) throws Exception {
+        List<Expression> expressions = new ArrayList<>();
+        expressions.add(tree.getExpression());
+        for (String variable : tree.getVariables()) {
+            expressions.add(tree.getExpression().differentiate(variable));
+        }
+        String prefix = tree.getName() + ".set." + expressions.size() + " expressions.";
+        Map<String, Double> assignment = tree.getAssignment();
+        ExpressionSet set = new ExpressionSet(expressions);
+        double[] out = new double[expressions.size()];
+
+        runner.run(prefix + "evaluate(Map) each", () -> {
+            for (int k = 0; k < out.length; k++) {
+                out[k] = expressions.get(k).evaluate(assignment);
+            }
+            return out[out.length - 1];
+        });
+        runner.run(prefix + "expression set", () -> set.evaluate(assignment)[out.length - 1]);
+    }
+
+    private static void benchmarkFormulaCache(BenchmarkRunner runner, BenchmarkTree tree) throws Exception {
+        String prefix = tree.getName() + ".formula.";
+        String formula = tree.getExpression().toString();
+        List<String> variableOrder = tree.getVariables();
+        double[] values = tree.getValues();
+        ExpressionParser parser = new ExpressionParser();
+        ExpressionCache cache = new ExpressionCache(100, 10_000_000);
+
+        runner.run(prefix + "parse, simplify, compile", () -> {
+            Expression simplified = parser.parse(formula).simplify();
+            return simplified.compile(variableOrder).evaluate(values);
+        });
+        runner.run(prefix + "cache lookup", () -> cache.get(formula).getCompiled().evaluate(values));
+    }
+
+    private static void benchmarkOptimizer(BenchmarkRunner runner, BenchmarkTree tree) throws Exception {
+        String prefix = tree.getName() + ".optimizer.";
+        List<String> variableOrder = tree.getVariables();
+        Map<String, Double> assignment = tree.getAssignment();
+        double[] values = tree.getValues();
+        Expression expression = tree.getExpression();
+        ExpressionOptimizer optimizer = new ExpressionOptimizer();
+        Expression optimized = optimizer.optimize(expression);
+        CompiledExpression compiled = expression.compile(variableOrder);
+        CompiledExpression compiledOptimized = optimized.compile(variableOrder);
+        CompiledExpression generated = new JitCompiler(variableOrder).compile(expression);
+        CompiledExpression generatedOptimized = new JitCompiler(variableOrder).compile(optimized);
+
+        runner.run(prefix + "optimize", () -> optimizer.optimize(expression).hashCode());
+        runner.run(prefix + "evaluate(Map)", () -> expression.evaluate(assignment));
+        runner.run(prefix + "optimized evaluate(Map)", () -> optimized.evaluate(assignment));
+        runner.run(prefix + "compile", () -> compiled.evaluate(values));
+        runner.run(prefix + "optimized compile", () -> compiledOptimized.evaluate(values));
+        runner.run(prefix + "jit", () -> generated.evaluate(values));
+        runner.run(prefix + "optimized jit", () -> generatedOptimized.evaluate(values));
+    }
+
+    private static void benchmarkGrid(BenchmarkRunner runner, BenchmarkTree tree) throws Exception {
+        List<String> variableOrder = tree.getVariables();
+        double[] start = tree.getValues();
+        double[] step = new double[variableOrder.size()];
+        int[] counts = new int[variableOrder.size()];
+        int points = 1;
+        for (int v = 0; v < counts.length; v++) {
+            step[v] = 0.01;
+            counts[v] = GRID_POINTS_PER_VARIABLE;
+            points *= counts[v];
+        }
+        double[] out = new double[points];
+        String prefix = tree.getName() + ".grid." + points + " points.";
+        ForkJoinPool single = new ForkJoinPool(1);
+        GridEvaluator sequential = new GridEvaluator(tree.getExpression(), variableOrder, single);
+        GridEvaluator parallel = new GridEvaluator(tree.getExpression(), variableOrder);
+
+        runner.run(prefix + "1 thread", () -> {
+            sequential.evaluateGrid(start, step, counts, out);
+            return out[out.length - 1];
+        });
+        runner.run(prefix + ForkJoinPool.getCommonPoolParallelism() + " threads", () -> {
+            parallel.evaluateGrid(start, step, counts, out);
+            return out[out.length - 1];
+        });
+        single.shutdown();
+    }
+}
@@ -4,8 +4,10 @@ import expressions.binary.Pow;
 import expressions.elements.Num;
 import expressions.elements.Var;
 import expressions.unary.Sin;
+import interfaces.CompiledExpression;
 import interfaces.Expression;
 
+import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
 
@@ -42,8 +44,17 @@ public class ExpressionsTest {
         double derivativeEvaluation = derivative.evaluate(assignment);
         System.out.println(derivativeEvaluation);
 
+        // Differentiation with Dual Evaluation
+        double[] dualDerivative = new double[1];
+        expression.evaluateDual(assignment, Map.of("x", 1.0), dualDerivative);
+        System.out.println(dualDerivative[0]);
+
         // Simplification of Differentiation
         Expression simpleDiff = derivative.simplify();
         System.out.println(simpleDiff);
+
+        // Compiled Evaluation
+        CompiledExpression compiled = expression.compile(List.of("x", "y", "e"));
+        System.out.println(compiled.evaluate(new double[]{2.0, 0.25, 2.71}));
     }
 }
@@ -0,0 +1,67 @@
+import expressions.binary.Mult;
+import expressions.elements.Num;
+import expressions.elements.Var;
+import expressions.parser.ExpressionCache;
+import expressions.parser.ExpressionParser;
+import expressions.unary.Neg;
+import interfaces.Expression;
+
+import java.util.Map;
+
+/**
+ * Main class to check the expression parser. Every random tree must parse back from its toString into a tree
+ * that prints the same; a sum or product of two operands prints like an addition or multiplication, so the trees
+ * need not be equal. The number literals Infinity and NaN must be told apart from names that merely start with
+ * them, and formulas that differ only in spacing must share a cache entry, or the check fails with an
+ * AssertionError.
+ */
+public class ParserTest {
+    private static final int TREES = 20_000;
+    private static final int DEPTH = 6;
+
+    /**
+     * Main method.
+     *
+     * @param args Command-line arguments.
+     * @throws Exception If an error occurs during execution.
+     */
+    public static void main(String[] args) throws Exception {
+        ExpressionParser parser = new ExpressionParser(Map.of("e", 2.71));
+        RandomExpressions random = new RandomExpressions(29);
+        for (int i = 0; i < TREES; i++) {
+            String text = random.next(DEPTH).toString();
+            String printed = parser.parse(text).toString();
+            if (!printed.equals(text)) {
+                throw new AssertionError(text + " parses as " + printed);
+            }
+        }
+
+        check(parser, "-Infinity", new Num(Double.NEGATIVE_INFINITY));
+        check(parser, "-NaN", new Num(Double.NaN));
+        check(parser, "(-Infinity)", new Neg(new Num(Double.POSITIVE_INFINITY)));
+        check(parser, "2 * -Infinity", new Mult(new Num(2), new Num(Double.NEGATIVE_INFINITY)));
+        check(parser, "2 * -Infinity_rate", new Mult(new Num(2), new Neg(new Var("Infinity_rate"))));
+        check(parser, "-NaNa", new Neg(new Var("NaNa")));
+        check(parser, "(-NaNx)", new Neg(new Var("NaNx")));
+        check(parser, "-NaN2", new Neg(new Var("NaN2")));
+        check(parser, "-Infinity * x", new Mult(new Num(Double.NEGATIVE_INFINITY), new Var("x")));
+
+        ExpressionCache cache = new ExpressionCache(100, 10_000);
+        ExpressionCache.Entry entry = cache.get("x+y*2");
+        if (cache.get("x + y * 2") != entry || cache.get(" x+ y *2 ") != entry || cache.size() != 1) {
+            throw new AssertionError("Formulas that differ only in spacing are cached apart");
+        }
+        if (!cache.get("-3").getExpression().equals(new Num(-3))
+                || !cache.get("- 3").getExpression().equals(new Neg(new Num(3)))) {
+            throw new AssertionError("A negative number and a negated number share a cache entry");
+        }
+        System.out.println("ok: " + TREES + " random trees and the Infinity and NaN literals parse back");
+    }
+
+    private static void check(ExpressionParser parser, String text, Expression expected) throws Exception {
+        Expression parsed = parser.parse(text);
+        if (!parsed.equals(expected)) {
+            throw new AssertionError(text + " parses as " + parsed + " instead of " + expected);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+import expressions.binary.Div;
+import expressions.binary.Log;
+import expressions.binary.Minus;
+import expressions.binary.Mult;
+import expressions.binary.Plus;
+import expressions.binary.Pow;
+import expressions.elements.Const;
+import expressions.elements.Num;
+import expressions.elements.Var;
+import expressions.nary.Product;
+import expressions.nary.Sum;
+import expressions.unary.Cos;
+import expressions.unary.Neg;
+import expressions.unary.Sin;
+import interfaces.Expression;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates random expressions over the variables x and y for the checks next to ExpressionsTest.
+ * Constants include zero and one, and powers, logarithms and divisions get constant operands often, so the
+ * trees reach the rules and failures that depend on them.
+ */
+final class RandomExpressions {
+    static final List<String> VARIABLES = List.of("x", "y");
+
+    private final Random random;
+
+    /**
+     * Constructs a generator whose trees are determined by a seed.
+     *
+     * @param seed the seed of the generator
+     */
+    RandomExpressions(long seed) {
+        this.random = new Random(seed);
+    }
+
+    /**
+     * Returns a random expression at most the given number of operators deep.
+     *
+     * @param depth the maximum depth of operators
+     * @return the expression
+     */
+    Expression next(int depth) {
+        if (depth == 0 || random.nextInt(4) == 0) {
+            switch (random.nextInt(5)) {
+                case 0:
+                    return new Num(random.nextInt(7) - 3);
+                case 1:
+                    return new Num(random.nextBoolean() ? 0.5 : 2.5);
+                case 2:
+                    return new Const("e", 2.71);
+                default:
+                    return new Var(VARIABLES.get(random.nextInt(VARIABLES.size())));
+            }
+        }
+        switch (random.nextInt(12)) {
+            case 0:
+                return new Plus(next(depth - 1), next(depth - 1));
+            case 1:
+                return new Minus(next(depth - 1), next(depth - 1));
+            case 2:
+                return new Mult(next(depth - 1), next(depth - 1));
+            case 3:
+                return new Div(next(depth - 1),
+                        random.nextBoolean() ? new Num(random.nextInt(5) - 2) : next(depth - 1));
+            case 4:
+                return new Pow(next(depth - 1),
+                        random.nextBoolean() ? new Num(random.nextInt(5) - 1) : next(depth - 1));
+            case 5:
+                return new Log(random.nextBoolean() ? new Num(random.nextInt(4)) : next(depth - 1), next(depth - 1));
+            case 6:
+                return new Sin(next(depth - 1));
+            case 7:
+                return new Cos(next(depth - 1));
+            case 8:
+                return new Neg(next(depth - 1));
+            case 9:
+                return new Sum(operands(depth - 1));
+            case 10:
+                return new Product(operands(depth - 1));
+            default:
+                return new Plus(new Mult(next(depth - 1), new Var("x")), next(depth - 1));
+        }
+    }
+
+    /**
+     * Returns a random value for a variable, zero or one now and then.
+     *
+     * @return the value
+     */
+    double nextValue() {
+        switch (random.nextInt(6)) {
+            case 0:
+                return 0;
+            case 1:
+                return 1;
+            default:
+                return random.nextDouble() * 6 - 2;
+        }
+    }
+
+    private List<Expression> operands(int depth) {
+        List<Expression> operands = new ArrayList<>();
+        int count = 2 + random.nextInt(3);
+        for (int i = 0; i < count; i++) {
+            operands.add(next(depth));
+        }
+        return operands;
+    }
+}
@@ -0,0 +1,102 @@
+import expressions.base.BinaryExpression;
+import expressions.base.NaryExpression;
+import expressions.base.RewriteEngine;
+import expressions.base.UnaryExpression;
+import interfaces.Expression;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Main class to check the standard rewrite rules on random trees. The rewritten tree must cost no more than
+ * the simplified one, and wherever every subtree of the simplified tree has a finite value, the rewritten tree
+ * must have the same value up to rounding. Rules such as b^log(b, x) = x, log(b, b^x) = x, a * b / b = a and
+ * x^a * x^b = x^(a + b) assume the expression is defined, like x / x = 1 in simplify, so where the simplified
+ * tree fails, or only has a value because a zero factor absorbs an infinite or NaN one, the rewritten tree may
+ * have a different value; those trees are counted, not failed.
+ */
+public class RewriteEngineTest {
+    private static final int TREES = 20_000;
+    private static final int DEPTH = 5;
+    private static final double TOLERANCE = 1e-6;
+
+    /**
+     * Main method.
+     *
+     * @param args Command-line arguments.
+     * @throws Exception If an error occurs during execution.
+     */
+    public static void main(String[] args) throws Exception {
+        RandomExpressions random = new RandomExpressions(23);
+        RewriteEngine engine = RewriteEngine.standard();
+        int compared = 0;
+        int extended = 0;
+        for (int i = 0; i < TREES; i++) {
+            Expression tree = random.next(DEPTH);
+            Map<String, Double> assignment = new HashMap<>();
+            for (String variable : RandomExpressions.VARIABLES) {
+                assignment.put(variable, random.nextValue());
+            }
+            Expression simplified = tree.simplify();
+            Expression rewritten = engine.rewrite(tree);
+            if (RewriteEngine.cost(rewritten) > RewriteEngine.cost(simplified)) {
+                throw new AssertionError("Rewriting " + tree + " gives " + rewritten + ", which costs more than "
+                        + simplified);
+            }
+
+            if (!defined(simplified, assignment)) {
+                if (defined(rewritten, assignment)) {
+                    extended++;
+                }
+                continue;
+            }
+            double expected = simplified.evaluate(assignment);
+            double actual;
+            try {
+                actual = rewritten.evaluate(assignment);
+            } catch (Exception e) {
+                throw new AssertionError("Rewriting " + simplified + " gives " + rewritten + ", which fails at "
+                        + assignment, e);
+            }
+            compared++;
+            if (!equal(expected, actual)) {
+                throw new AssertionError("Rewriting " + simplified + " gives " + rewritten + ", which is " + actual
+                        + " instead of " + expected + " at " + assignment);
+            }
+        }
+        System.out.println("ok: " + compared + " rewritten trees evaluate like the simplified ones, " + extended
+                + " have a value where the simplified one is undefined");
+    }
+
+    /**
+     * Returns whether every subtree of a tree evaluates to a finite value.
+     */
+    private static boolean defined(Expression tree, Map<String, Double> assignment) {
+        try {
+            if (!Double.isFinite(tree.evaluate(assignment))) {
+                return false;
+            }
+        } catch (Exception e) {
+            return false;
+        }
+        if (tree instanceof BinaryExpression) {
+            BinaryExpression binary = (BinaryExpression) tree;
+            return defined(binary.getLeftOperand(), assignment) && defined(binary.getRightOperand(), assignment);
+        }
+        if (tree instanceof UnaryExpression) {
+            return defined(((UnaryExpression) tree).getOperand(), assignment);
+        }
+        if (tree instanceof NaryExpression) {
+            for (Expression operand : ((NaryExpression) tree).getOperands()) {
+                if (!defined(operand, assignment)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static boolean equal(double expected, double actual) {
+        return Math.abs(expected - actual) <= TOLERANCE * Math.max(1, Math.abs(expected));
+    }
+}
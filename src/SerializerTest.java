@@ -0,0 +1,49 @@
+import expressions.base.LazyDerivative;
+import expressions.binary.Plus;
+import expressions.elements.Var;
+import expressions.io.ExpressionSerializer;
+import expressions.unary.Polynomial;
+import interfaces.Expression;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Main class to check the binary encoding on random trees. Every tree, and every polynomial and lazy derivative
+ * of one, on its own or as an operand, must read back as a tree that prints the same, or the check fails with
+ * an AssertionError.
+ */
+public class SerializerTest {
+    private static final int TREES = 5_000;
+    private static final int DEPTH = 5;
+
+    /**
+     * Main method.
+     *
+     * @param args Command-line arguments.
+     * @throws Exception If an error occurs during execution.
+     */
+    public static void main(String[] args) throws Exception {
+        ExpressionSerializer serializer = new ExpressionSerializer();
+        RandomExpressions random = new RandomExpressions(31);
+        for (int i = 0; i < TREES; i++) {
+            Expression tree = random.next(DEPTH);
+            Expression derivative = new LazyDerivative(tree, "x");
+            check(serializer, tree);
+            check(serializer, derivative);
+            check(serializer, new LazyDerivative(derivative, "y"));
+            check(serializer, new Polynomial(tree, new double[]{1, -2, 0.5}));
+            check(serializer, new Plus(new Var("y"), derivative));
+        }
+        System.out.println("ok: " + TREES + " random trees, their polynomials and lazy derivatives read back");
+    }
+
+    private static void check(ExpressionSerializer serializer, Expression expression) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        serializer.writeTo(expression, out);
+        Expression read = serializer.readFrom(ByteBuffer.wrap(out.toByteArray()));
+        if (!read.toString().equals(expression.toString())) {
+            throw new AssertionError(expression + " reads back as " + read);
+        }
+    }
+}
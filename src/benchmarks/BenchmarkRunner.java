@@ -0,0 +1,156 @@
+package benchmarks;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+
+/**
+ * A class that measures operations and prints one result line per benchmark.
+ * Every benchmark is warmed up first, then timed in batches sized to take at least a few microseconds.
+ * It reports throughput, the average latency per operation, and the bytes allocated per operation when the JVM
+ * can count them. Single operations are too short to time one by one, so the 50th/90th/99th percentiles are of
+ * the average latency of each batch: they show how much batches vary, not the latency of single operations,
+ * and an operation that is slow now and then is averaged out. The JMH benchmarks sample the latency of single
+ * operations and are the reference; this runner is a quick check that needs no build.
+ */
+public class BenchmarkRunner {
+    private static final long MIN_BATCH_NANOS = 20_000;
+    private static final long DEFAULT_WARMUP_NANOS = 500_000_000L;
+    private static final long DEFAULT_MEASUREMENT_NANOS = 1_000_000_000L;
+
+    private final String filter;
+    private final long warmupNanos;
+    private final long measurementNanos;
+    private double sink;
+
+    /**
+     * Constructs a runner with the default warmup and measurement times.
+     *
+     * @param filter only benchmarks whose name contains this text are run; null runs all benchmarks
+     */
+    public BenchmarkRunner(String filter) {
+        this(filter, DEFAULT_WARMUP_NANOS, DEFAULT_MEASUREMENT_NANOS);
+    }
+
+    /**
+     * Constructs a runner.
+     *
+     * @param filter           only benchmarks whose name contains this text are run; null runs all benchmarks
+     * @param warmupNanos      how long each benchmark is run before measuring, in nanoseconds
+     * @param measurementNanos how long each benchmark is measured, in nanoseconds
+     */
+    public BenchmarkRunner(String filter, long warmupNanos, long measurementNanos) {
+        this.filter = filter;
+        this.warmupNanos = warmupNanos;
+        this.measurementNanos = measurementNanos;
+    }
+
+    /**
+     * Prints the header of the result table. The batch percentile columns are in nanoseconds per operation.
+     */
+    public void printHeader() {
+        System.out.printf("%-44s %14s %10s %10s %10s %10s %12s%n",
+                "benchmark", "ops/s", "avg ns", "batch p50", "batch p90", "batch p99", "B/op");
+    }
+
+    /**
+     * Measures an operation and prints its results, unless the filter excludes it.
+     *
+     * @param name      the name of the benchmark
+     * @param operation the operation to measure
+     * @throws Exception if the operation fails
+     */
+    public void run(String name, Operation operation) throws Exception {
+        if (filter != null && !name.contains(filter)) {
+            return;
+        }
+        int batchSize = calibrate(operation);
+        long warmupEnd = System.nanoTime() + warmupNanos;
+        while (System.nanoTime() < warmupEnd) {
+            runBatch(operation, batchSize);
+        }
+
+        double[] samples = new double[1024];
+        int sampleCount = 0;
+        long operations = 0;
+        long allocatedBefore = allocatedBytes();
+        long start = System.nanoTime();
+        long end = start + measurementNanos;
+        long now = start;
+        while (now < end) {
+            long batchStart = now;
+            runBatch(operation, batchSize);
+            now = System.nanoTime();
+            if (sampleCount == samples.length) {
+                samples = Arrays.copyOf(samples, samples.length * 2);
+            }
+            samples[sampleCount++] = (double) (now - batchStart) / batchSize;
+            operations += batchSize;
+        }
+        long allocatedAfter = allocatedBytes();
+        double elapsed = now - start;
+
+        Arrays.sort(samples, 0, sampleCount);
+        String allocation = allocatedBefore < 0 || allocatedAfter < 0
+                ? "n/a" : String.format("%.1f", (double) (allocatedAfter - allocatedBefore) / operations);
+        System.out.printf("%-44s %14.0f %10.1f %10.1f %10.1f %10.1f %12s%n", name,
+                operations / elapsed * 1e9, elapsed / operations,
+                percentile(samples, sampleCount, 0.50), percentile(samples, sampleCount, 0.90),
+                percentile(samples, sampleCount, 0.99), allocation);
+    }
+
+    /**
+     * Returns a value accumulated from every operation result, so the JIT cannot drop the operations.
+     *
+     * @return the accumulated value
+     */
+    public double sink() {
+        return sink;
+    }
+
+    private int calibrate(Operation operation) throws Exception {
+        int batchSize = 1;
+        while (true) {
+            long start = System.nanoTime();
+            runBatch(operation, batchSize);
+            if (System.nanoTime() - start >= MIN_BATCH_NANOS || batchSize >= 1 << 24) {
+                return batchSize;
+            }
+            batchSize *= 2;
+        }
+    }
+
+    private void runBatch(Operation operation, int batchSize) throws Exception {
+        double result = 0;
+        for (int i = 0; i < batchSize; i++) {
+            result += operation.run();
+        }
+        sink += result;
+    }
+
+    private static double percentile(double[] sorted, int count, double fraction) {
+        return sorted[Math.min(count - 1, (int) (fraction * count))];
+    }
+
+    private static long allocatedBytes() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+
+    /**
+     * An operation to be measured. It returns a number derived from its result,
+     * which the runner accumulates so the work is not optimized away.
+     */
+    public interface Operation {
+        /**
+         * Runs the operation once.
+         *
+         * @return a number derived from the result of the operation
+         * @throws Exception if the operation fails
+         */
+        double run() throws Exception;
+    }
+}
@@ -0,0 +1,211 @@
+package benchmarks;
+
+import expressions.binary.Div;
+import expressions.binary.Log;
+import expressions.binary.Mult;
+import expressions.binary.Plus;
+import expressions.binary.Pow;
+import expressions.elements.Num;
+import expressions.elements.Var;
+import expressions.nary.Sum;
+import expressions.unary.Cos;
+import expressions.unary.Sin;
+import interfaces.Expression;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A class that holds one of the expression shapes used by the benchmarks, with its variables and an assignment.
+ */
+public class BenchmarkTree {
+    private final String name;
+    private final Expression expression;
+    private final List<String> variables;
+    private final Map<String, Double> assignment = new TreeMap<>();
+
+    /**
+     * Constructs a benchmark tree.
+     *
+     * @param name       the name of the shape
+     * @param expression the expression
+     * @param variables  the variables of the expression, in evaluation order
+     * @param values     the value assigned to each variable, in the same order
+     */
+    public BenchmarkTree(String name, Expression expression, List<String> variables, double[] values) {
+        this.name = name;
+        this.expression = expression;
+        this.variables = variables;
+        for (int i = 0; i < variables.size(); i++) {
+            assignment.put(variables.get(i), values[i]);
+        }
+    }
+
+    /**
+     * Returns the formula used in ExpressionsTest.
+     *
+     * @return the small benchmark tree
+     */
+    public static BenchmarkTree small() {
+        Expression expression = new Plus(new Plus(new Mult(new Num(2), new Var("x")),
+                new Sin(new Mult(new Num(4), new Var("y")))),
+                new Pow(new Var("e"), new Var("x")));
+        return new BenchmarkTree("small", expression, List.of("x", "y", "e"), new double[]{2.0, 0.25, 2.71});
+    }
+
+    /**
+     * Returns a chain where every level adds a scaled previous level and a variable, 1,200 nodes deep.
+     *
+     * @return the deep benchmark tree
+     */
+    public static BenchmarkTree deep() {
+        List<String> variables = names(3);
+        Expression expression = new Var(variables.get(0));
+        for (int i = 0; i < 300; i++) {
+            expression = new Plus(new Mult(expression, new Num(0.999)), new Var(variables.get(i % variables.size())));
+        }
+        return new BenchmarkTree("deep", expression, variables, values(variables.size()));
+    }
+
+    /**
+     * Returns a balanced sum of 1,024 terms over 8 variables, about 4,000 nodes but only 12 levels deep.
+     *
+     * @return the wide benchmark tree
+     */
+    public static BenchmarkTree wide() {
+        List<String> variables = names(8);
+        List<Expression> terms = wideTerms(variables);
+        while (terms.size() > 1) {
+            List<Expression> sums = new ArrayList<>();
+            for (int i = 0; i < terms.size(); i += 2) {
+                sums.add(new Plus(terms.get(i), terms.get(i + 1)));
+            }
+            terms = sums;
+        }
+        return new BenchmarkTree("wide", terms.get(0), variables, values(variables.size()));
+    }
+
+    /**
+     * Returns the terms of the wide tree held in a single flat sum, about 3,000 nodes and 3 levels deep.
+     *
+     * @return the flat benchmark tree
+     */
+    public static BenchmarkTree flat() {
+        List<String> variables = names(8);
+        return new BenchmarkTree("flat", new Sum(wideTerms(variables)), variables, values(variables.size()));
+    }
+
+    /**
+     * Returns a flat sum of 256 powers, logarithms and divisions with constant exponents, bases and divisors
+     * over 8 variables, the operators the optimizer lowers.
+     *
+     * @return the powers benchmark tree
+     */
+    public static BenchmarkTree powers() {
+        List<String> variables = names(8);
+        List<Expression> terms = new ArrayList<>();
+        for (int i = 0; i < 256; i++) {
+            Expression variable = new Var(variables.get(i % variables.size()));
+            switch (i % 4) {
+                case 0:
+                    terms.add(new Pow(variable, new Num(2 + i % 5)));
+                    break;
+                case 1:
+                    terms.add(new Pow(variable, new Num(0.5)));
+                    break;
+                case 2:
+                    terms.add(new Log(new Num(2 + i % 3), variable));
+                    break;
+                default:
+                    terms.add(new Div(variable, new Num(i + 1)));
+                    break;
+            }
+        }
+        return new BenchmarkTree("powers", new Sum(terms), variables, values(variables.size()));
+    }
+
+    /**
+     * Returns a polynomial of degree 12 in one variable, written as a sum of coefficients times powers.
+     *
+     * @return the polynomial benchmark tree
+     */
+    public static BenchmarkTree polynomial() {
+        List<String> variables = names(1);
+        List<Expression> terms = new ArrayList<>();
+        terms.add(new Num(1));
+        for (int i = 1; i <= 12; i++) {
+            terms.add(new Mult(new Num(1.0 / (i + 1)), new Pow(new Var(variables.get(0)), new Num(i))));
+        }
+        return new BenchmarkTree("polynomial", new Sum(terms), variables, new double[]{0.75});
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Expression getExpression() {
+        return expression;
+    }
+
+    public List<String> getVariables() {
+        return variables;
+    }
+
+    public Map<String, Double> getAssignment() {
+        return assignment;
+    }
+
+    /**
+     * Returns the values of the assignment in variable order.
+     *
+     * @return the variable values
+     */
+    public double[] getValues() {
+        double[] values = new double[variables.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = assignment.get(variables.get(i));
+        }
+        return values;
+    }
+
+    /**
+     * Returns the expression with every variable replaced by its assigned value,
+     * so it can be evaluated without an assignment.
+     *
+     * @return the constant expression
+     */
+    public Expression getConstantExpression() {
+        Expression constant = expression;
+        for (String variable : variables) {
+            constant = constant.assign(variable, new Num(assignment.get(variable)));
+        }
+        return constant;
+    }
+
+    private static List<Expression> wideTerms(List<String> variables) {
+        List<Expression> terms = new ArrayList<>();
+        for (int i = 0; i < 1024; i++) {
+            Expression variable = new Var(variables.get(i % variables.size()));
+            terms.add(new Mult(new Num(i + 1), i % 2 == 0 ? variable : new Cos(variable)));
+        }
+        return terms;
+    }
+
+    private static List<String> names(int count) {
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            names.add("x" + i);
+        }
+        return names;
+    }
+
+    private static double[] values(int count) {
+        double[] values = new double[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = 1.5 + i * 0.25;
+        }
+        return values;
+    }
+}
@@ -1,9 +1,201 @@
 package expressions.base;
 
+import expressions.elements.Num;
 import interfaces.Expression;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 /**
  * An abstract class that Represents a base expression that implements the Expression interface.
  */
 public abstract class BaseExpression implements Expression {
+    protected static final int PRECEDENCE_ADDITIVE = 1;
+    protected static final int PRECEDENCE_MULTIPLICATIVE = 2;
+    protected static final int PRECEDENCE_PREFIX = 3;
+    protected static final int PRECEDENCE_POWER = 4;
+    protected static final int PRECEDENCE_FUNCTION = 5;
+    protected static final int COST_ARITHMETIC = 1;
+    protected static final int COST_DIVISION = 4;
+    protected static final int COST_FUNCTION = 20;
+
+    /**
+     * The derivative of every subtree that does not use the variable of differentiation.
+     */
+    protected static final Expression ZERO = new Num(0);
+
+    /**
+     * Returns whether the expression is a literal constant. Operator expressions never are;
+     * constant operator subtrees are folded into numbers by simplify.
+     *
+     * @return false
+     */
+    @Override
+    public boolean isConstant() {
+        return false;
+    }
+
+    /**
+     * Operator expressions are not literal constants, so they have no constant value.
+     *
+     * @return never returns normally
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public double constantValue() {
+        throw new UnsupportedOperationException("Not a constant: " + this);
+    }
+
+    /**
+     * Writes the string representation of the expression, with every operator in parentheses, to an output.
+     *
+     * @param out the output the text is appended to
+     * @throws IOException if appending to the output fails
+     */
+    @Override
+    public void appendTo(Appendable out) throws IOException {
+        Traversal.write(this, out, false);
+    }
+
+    /**
+     * Writes the string representation of the expression to an output, walking the tree once.
+     *
+     * @param out                the output the text is appended to
+     * @param minimalParentheses whether to omit the parentheses that precedence and grouping do not need
+     * @throws IOException if appending to the output fails
+     */
+    @Override
+    public void appendTo(Appendable out, boolean minimalParentheses) throws IOException {
+        Traversal.write(this, out, minimalParentheses);
+    }
+
+    /**
+     * Returns a string representation of the expression, with every operator in parentheses.
+     * The whole tree is written into one builder, so printing takes time linear in its size.
+     *
+     * @return the string representation of the expression
+     */
+    @Override
+    public final String toString() {
+        StringBuilder builder = new StringBuilder(128);
+        try {
+            Traversal.write(this, builder, false);
+        } catch (IOException e) {
+            // in-memory builders never fail
+            throw new IllegalStateException(e);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Returns how tightly the operator binds its operands, which decides where minimal output needs
+     * parentheses. Functions such as sin print their own delimiters and bind tightest.
+     *
+     * @return the precedence of the operator, PRECEDENCE_FUNCTION unless overridden
+     */
+    protected int precedenceSelf() {
+        return PRECEDENCE_FUNCTION;
+    }
+
+    /**
+     * Returns the estimated cost of evaluating the operator once its operands are known, which the rewrite
+     * engine uses to choose the cheaper of equivalent expressions. Additions and multiplications cost one,
+     * divisions a few, and library functions such as sin and pow many.
+     *
+     * @return the estimated cost of the operator, COST_FUNCTION unless overridden
+     */
+    protected int costSelf() {
+        return COST_FUNCTION;
+    }
+
+    /**
+     * Returns the tree the expression stands for, which the walkers over the tree print and visit in its
+     * place, such as the sum of monomials of a polynomial or the derivative a lazy derivative builds.
+     *
+     * @return the tree the expression stands for, or null if it is its own tree, unless overridden
+     */
+    protected Expression resolvedSelf() {
+        return null;
+    }
+
+    /**
+     * Returns the tree the expression stands for, following stand-ins such as polynomials and lazy derivatives
+     * until an expression that is its own tree, so that code outside the walkers, such as a serializer, can
+     * handle it like that tree.
+     *
+     * @return the tree the expression stands for, or the expression itself if it is its own tree
+     */
+    public Expression resolve() {
+        return Traversal.resolve(this);
+    }
+
+    /**
+     * Returns whether an expression uses a variable, by a binary search of its sorted variable list.
+     *
+     * @param expression the expression
+     * @param var        the name of the variable
+     * @return true if the variable occurs in the expression
+     */
+    protected static boolean dependsOn(Expression expression, String var) {
+        return Collections.binarySearch(expression.getVariables(), var) >= 0;
+    }
+
+    /**
+     * Merges the sorted variable lists of two operands into the sorted list of distinct variables of both.
+     * When one list already contains the other, it is returned as is, so nodes share variable lists
+     * with their operands wherever possible instead of copying them.
+     *
+     * @param left  the sorted, distinct variables of the left operand
+     * @param right the sorted, distinct variables of the right operand
+     * @return an unmodifiable sorted list of the distinct variables of both operands
+     */
+    protected static List<String> mergeVariables(List<String> left, List<String> right) {
+        if (right.isEmpty() || left == right) {
+            return left;
+        }
+        if (left.isEmpty()) {
+            return right;
+        }
+        if (containsAll(left, right)) {
+            return left;
+        }
+        if (containsAll(right, left)) {
+            return right;
+        }
+        List<String> merged = new ArrayList<>(left.size() + right.size());
+        int i = 0;
+        int j = 0;
+        while (i < left.size() && j < right.size()) {
+            int order = left.get(i).compareTo(right.get(j));
+            if (order <= 0) {
+                merged.add(left.get(i++));
+                if (order == 0) {
+                    j++;
+                }
+            } else {
+                merged.add(right.get(j++));
+            }
+        }
+        while (i < left.size()) {
+            merged.add(left.get(i++));
+        }
+        while (j < right.size()) {
+            merged.add(right.get(j++));
+        }
+        return Collections.unmodifiableList(merged);
+    }
+
+    private static boolean containsAll(List<String> sorted, List<String> sortedSubset) {
+        if (sortedSubset.size() > sorted.size()) {
+            return false;
+        }
+        for (String name : sortedSubset) {
+            if (Collections.binarySearch(sorted, name) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
 }
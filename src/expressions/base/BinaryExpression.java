@@ -1,18 +1,22 @@
 package expressions.base;
 
+import expressions.elements.Num;
+import interfaces.CompiledExpression;
 import interfaces.Expression;
 
-import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 
 /**
  * An abstract class that represents a binary expression that extends the BaseExpression class.
+ * Its operands, hash code and variable list are final and computed in the constructor, so binary expressions
+ * are immutable and safe to share between threads once constructed. Subclasses must not add mutable state.
  */
 public abstract class BinaryExpression extends BaseExpression {
-    private Expression leftOperand;
-    private Expression rightOperand;
+    private final Expression leftOperand;
+    private final Expression rightOperand;
+    private final int hash;
+    private final List<String> variables;
 
     /**
      * Constructs a binary expression with the given left and right operands.
@@ -23,23 +27,49 @@ public abstract class BinaryExpression extends BaseExpression {
     public BinaryExpression(Expression leftOperand, Expression rightOperand) {
         this.leftOperand = leftOperand;
         this.rightOperand = rightOperand;
+        this.hash = 31 * (31 * getClass().getName().hashCode() + leftOperand.hashCode()) + rightOperand.hashCode();
+        this.variables = mergeVariables(leftOperand.getVariables(), rightOperand.getVariables());
+    }
+
+    /**
+     * Returns whether the given object is a binary expression of the same type with equal operands.
+     * Identical operands are recognized by reference first, so interned trees compare in constant time,
+     * and the operands are compared with an explicit stack, so deep trees cannot overflow the call stack.
+     *
+     * @param other the object to compare with
+     * @return true if the expressions are structurally equal
+     */
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (other == null || getClass() != other.getClass()) {
+            return false;
+        }
+        BinaryExpression that = (BinaryExpression) other;
+        return hash == that.hash && Traversal.equal(this, that);
+    }
+
+    /**
+     * Returns the structural hash code of the binary expression, computed once on construction.
+     *
+     * @return the hash code
+     */
+    @Override
+    public int hashCode() {
+        return hash;
     }
 
     /**
      * Return's the variables used in the binary expression.
+     * The list is built once when the expression is constructed and shared, not copied, on every call.
      *
-     * @return a list of variable names used in the expression
+     * @return an unmodifiable sorted list of the distinct variable names used in the expression
      */
     @Override
     public List<String> getVariables() {
-        List<String> lOperandVar = leftOperand.getVariables();
-        List<String> rOperandVar = rightOperand.getVariables();
-        List<String> var = new ArrayList<>(lOperandVar);
-        var.addAll(rOperandVar);
-        HashSet<String> varSet = new HashSet<>(var);
-        var.clear();
-        var.addAll(varSet);
-        return var;
+        return variables;
     }
 
     /**
@@ -51,9 +81,7 @@ public abstract class BinaryExpression extends BaseExpression {
      */
     @Override
     public double evaluate(Map<String, Double> assignment) throws Exception {
-        double leftOperandValue = getLeftOperand().evaluate(assignment);
-        double rightOperandValue = getRightOperand().evaluate(assignment);
-        return evaluateSelf(leftOperandValue, rightOperandValue);
+        return Traversal.evaluate(this, assignment);
     }
 
     /**
@@ -64,9 +92,22 @@ public abstract class BinaryExpression extends BaseExpression {
      */
     @Override
     public double evaluate() throws Exception {
-        double leftOperandValue = getLeftOperand().evaluate();
-        double rightOperandValue = getRightOperand().evaluate();
-        return evaluateSelf(leftOperandValue, rightOperandValue);
+        return Traversal.evaluate(this, null);
+    }
+
+    /**
+     * Evaluates the binary expression and its directional derivative together.
+     *
+     * @param assignment a map of variable assignments
+     * @param direction  the derivative of each variable along the direction
+     * @param derivative a one-element array the directional derivative is written to
+     * @return the result of the evaluation
+     * @throws Exception if an error occurs during evaluation
+     */
+    @Override
+    public double evaluateDual(Map<String, Double> assignment, Map<String, Double> direction, double[] derivative)
+            throws Exception {
+        return Traversal.evaluateDual(this, assignment, direction, derivative);
     }
 
     /**
@@ -78,20 +119,153 @@ public abstract class BinaryExpression extends BaseExpression {
      */
     @Override
     public final Expression assign(String var, Expression expression) {
-        Expression leftOperandAssign = getLeftOperand().assign(var, expression);
-        Expression rightOperandAssign = getRightOperand().assign(var, expression);
-        return assignSelf(leftOperandAssign, rightOperandAssign);
+        return Traversal.fold(this, new Traversal.Assignment(var, expression));
+    }
+
+    /**
+     * Computes the derivative of the binary expression with respect to a variable,
+     * from the derivatives of its operands.
+     * Subtrees that do not use the variable differentiate to a shared zero without being visited.
+     *
+     * @param var the variable to differentiate by
+     * @return the derivative expression
+     */
+    @Override
+    public final Expression differentiate(String var) {
+        return Traversal.fold(this, new Traversal.Differentiation(var));
+    }
+
+    /**
+     * Simplifies the binary expression bottom-up: both operands are simplified once,
+     * then the expression's own rules are applied to the simplified operands.
+     *
+     * @return the simplified expression
+     */
+    @Override
+    public final Expression simplify() {
+        return Traversal.fold(this, Traversal.SIMPLIFY);
+    }
+
+    /**
+     * Compiles the binary expression into an evaluator over a primitive array of variable values.
+     *
+     * @param variableOrder the variable names, in the order their values appear in the evaluator's input
+     * @return the compiled expression
+     */
+    @Override
+    public CompiledExpression compile(List<String> variableOrder) {
+        return Traversal.compile(this, variableOrder);
     }
 
-    protected Expression getLeftOperand() {
+    /**
+     * Evaluates the binary expression over columns of variable values.
+     * Rows where any operator of the tree fails are set to NaN.
+     *
+     * @param columns the values of each variable, one array per variable
+     * @param out     the array the results are written to, one value per row
+     * @throws Exception if a variable has no column or its column is too short
+     */
+    @Override
+    public void evaluateBatch(Map<String, double[]> columns, double[] out) throws Exception {
+        Traversal.evaluateBatch(this, columns, out);
+    }
+
+    /**
+     * Returns the left operand of the expression.
+     *
+     * @return the left operand of the expression
+     */
+    public Expression getLeftOperand() {
         return leftOperand;
     }
 
-    protected Expression getRightOperand() {
+    /**
+     * Returns the right operand of the expression.
+     *
+     * @return the right operand of the expression
+     */
+    public Expression getRightOperand() {
         return rightOperand;
     }
 
+    /**
+     * Returns the text toString prints before the left operand.
+     *
+     * @return an opening parenthesis, unless overridden
+     */
+    protected String prefixSelf() {
+        return "(";
+    }
+
+    /**
+     * Returns the text toString prints between the operands.
+     *
+     * @return the operator text
+     */
+    protected abstract String operatorSelf();
+
     protected abstract Expression assignSelf(Expression leftOperand, Expression rightOperand);
 
+    protected abstract Expression differentiateSelf(Expression leftOperandDerivative,
+                                                    Expression rightOperandDerivative);
+
+    protected abstract Expression simplifySelf(Expression leftOperandSimple, Expression rightOperandSimple);
+
+    /**
+     * Folds the operator over two simplified operands when both are literal constants.
+     *
+     * @param leftOperandSimple  the simplified left operand
+     * @param rightOperandSimple the simplified right operand
+     * @return the folded number, or null if an operand is not a constant or the operator is undefined for them
+     */
+    protected Expression foldSelf(Expression leftOperandSimple, Expression rightOperandSimple) {
+        if (!leftOperandSimple.isConstant() || !rightOperandSimple.isConstant()) {
+            return null;
+        }
+        try {
+            return new Num(evaluateSelf(leftOperandSimple.constantValue(), rightOperandSimple.constantValue()));
+        } catch (Exception undefinedError) {
+            return null;
+        }
+    }
+
     protected abstract double evaluateSelf(double leftOperand, double rightOperand) throws Exception;
+
+    /**
+     * Applies the operator during evaluate(), which may reject results that evaluate(Map) returns as they are.
+     *
+     * @param leftOperand  the value of the left operand
+     * @param rightOperand the value of the right operand
+     * @return the value of the expression, by default evaluateSelf
+     * @throws Exception if the operator is undefined for the operands
+     */
+    protected double evaluateCheckedSelf(double leftOperand, double rightOperand) throws Exception {
+        return evaluateSelf(leftOperand, rightOperand);
+    }
+
+    protected abstract double leftPartialSelf(double leftOperand, double rightOperand);
+
+    protected abstract double rightPartialSelf(double leftOperand, double rightOperand);
+
+    /**
+     * Applies the operator to whole columns of operand values, row by row.
+     * Rows the operator cannot evaluate are marked in the failure mask, which stays set whatever later
+     * operators compute for the row. Subclasses override this with a branch-free loop where possible,
+     * so the JIT can vectorize it.
+     *
+     * @param leftOperand  the values of the left operand
+     * @param rightOperand the values of the right operand
+     * @param out          the array the results are written to, may be one of the operand arrays
+     * @param failed       the failure mask of the rows, set for every row the operator cannot evaluate
+     */
+    protected void evaluateColumns(double[] leftOperand, double[] rightOperand, double[] out, boolean[] failed) {
+        for (int i = 0; i < out.length; i++) {
+            try {
+                out[i] = evaluateSelf(leftOperand[i], rightOperand[i]);
+            } catch (Exception evalError) {
+                out[i] = Double.NaN;
+                failed[i] = true;
+            }
+        }
+    }
 }
@@ -0,0 +1,229 @@
+package expressions.base;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A minimal class file writer used by the JIT compiler to generate straight-line evaluator classes.
+ * It only supports what the generated classes need: one superclass, interfaces, fields and methods
+ * with a Code attribute that has no branches (so no stack map frames are required).
+ */
+final class ClassFile {
+    static final int MAX_CONSTANT_POOL_SIZE = 65535;
+
+    private static final int VERSION_JAVA_17 = 61;
+    private static final int CONSTANT_UTF8 = 1;
+    private static final int CONSTANT_INTEGER = 3;
+    private static final int CONSTANT_DOUBLE = 6;
+    private static final int CONSTANT_CLASS = 7;
+    private static final int CONSTANT_FIELDREF = 9;
+    private static final int CONSTANT_METHODREF = 10;
+    private static final int CONSTANT_INTERFACE_METHODREF = 11;
+    private static final int CONSTANT_NAME_AND_TYPE = 12;
+
+    private final ByteArrayOutputStream poolBytes = new ByteArrayOutputStream();
+    private final DataOutputStream pool = new DataOutputStream(poolBytes);
+    private final Map<String, Integer> poolIndices = new HashMap<>();
+    private int poolSize = 1;
+
+    private final ByteArrayOutputStream fieldBytes = new ByteArrayOutputStream();
+    private final DataOutputStream fields = new DataOutputStream(fieldBytes);
+    private final ByteArrayOutputStream methodBytes = new ByteArrayOutputStream();
+    private final DataOutputStream methods = new DataOutputStream(methodBytes);
+    private int fieldCount;
+    private int methodCount;
+
+    private final int thisClass;
+    private final int superClass;
+    private final int[] interfaces;
+
+    /**
+     * Constructs a class file writer for a public final class.
+     *
+     * @param className      the internal name of the class
+     * @param superClassName the internal name of the superclass
+     * @param interfaceNames the internal names of the implemented interfaces
+     */
+    ClassFile(String className, String superClassName, String... interfaceNames) {
+        this.thisClass = classRef(className);
+        this.superClass = classRef(superClassName);
+        this.interfaces = new int[interfaceNames.length];
+        for (int i = 0; i < interfaceNames.length; i++) {
+            this.interfaces[i] = classRef(interfaceNames[i]);
+        }
+    }
+
+    int utf8(String value) {
+        return constant("U" + value, out -> {
+            out.writeByte(CONSTANT_UTF8);
+            out.writeUTF(value);
+        }, 1);
+    }
+
+    int integer(int value) {
+        return constant("I" + value, out -> {
+            out.writeByte(CONSTANT_INTEGER);
+            out.writeInt(value);
+        }, 1);
+    }
+
+    int doubleConstant(double value) {
+        long bits = Double.doubleToRawLongBits(value);
+        return constant("D" + bits, out -> {
+            out.writeByte(CONSTANT_DOUBLE);
+            out.writeLong(bits);
+        }, 2);
+    }
+
+    int classRef(String internalName) {
+        int name = utf8(internalName);
+        return constant("C" + internalName, out -> {
+            out.writeByte(CONSTANT_CLASS);
+            out.writeShort(name);
+        }, 1);
+    }
+
+    int fieldRef(String owner, String name, String descriptor) {
+        return memberRef(CONSTANT_FIELDREF, owner, name, descriptor);
+    }
+
+    int methodRef(String owner, String name, String descriptor) {
+        return memberRef(CONSTANT_METHODREF, owner, name, descriptor);
+    }
+
+    int interfaceMethodRef(String owner, String name, String descriptor) {
+        return memberRef(CONSTANT_INTERFACE_METHODREF, owner, name, descriptor);
+    }
+
+    int constantPoolSize() {
+        return poolSize;
+    }
+
+    /**
+     * Adds a field to the class.
+     *
+     * @param access     the access flags of the field
+     * @param name       the name of the field
+     * @param descriptor the type descriptor of the field
+     */
+    void addField(int access, String name, String descriptor) {
+        int nameIndex = utf8(name);
+        int descriptorIndex = utf8(descriptor);
+        write(() -> {
+            fields.writeShort(access);
+            fields.writeShort(nameIndex);
+            fields.writeShort(descriptorIndex);
+            fields.writeShort(0);
+        });
+        fieldCount++;
+    }
+
+    /**
+     * Adds a method with the given branch-free bytecode to the class.
+     *
+     * @param access     the access flags of the method
+     * @param name       the name of the method
+     * @param descriptor the type descriptor of the method
+     * @param maxStack   the maximum operand stack depth of the code
+     * @param maxLocals  the number of local variable slots used by the code
+     * @param code       the bytecode of the method
+     */
+    void addMethod(int access, String name, String descriptor, int maxStack, int maxLocals, byte[] code) {
+        int nameIndex = utf8(name);
+        int descriptorIndex = utf8(descriptor);
+        int codeIndex = utf8("Code");
+        write(() -> {
+            methods.writeShort(access);
+            methods.writeShort(nameIndex);
+            methods.writeShort(descriptorIndex);
+            methods.writeShort(1);
+            methods.writeShort(codeIndex);
+            methods.writeInt(12 + code.length);
+            methods.writeShort(maxStack);
+            methods.writeShort(maxLocals);
+            methods.writeInt(code.length);
+            methods.write(code);
+            methods.writeShort(0);
+            methods.writeShort(0);
+        });
+        methodCount++;
+    }
+
+    /**
+     * Returns the bytes of the complete class file.
+     *
+     * @return the class file bytes
+     */
+    byte[] toByteArray() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        write(() -> {
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(VERSION_JAVA_17);
+            out.writeShort(poolSize);
+            out.write(poolBytes.toByteArray());
+            out.writeShort(0x0001 | 0x0010 | 0x0020);
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(interfaces.length);
+            for (int anInterface : interfaces) {
+                out.writeShort(anInterface);
+            }
+            out.writeShort(fieldCount);
+            out.write(fieldBytes.toByteArray());
+            out.writeShort(methodCount);
+            out.write(methodBytes.toByteArray());
+            out.writeShort(0);
+        });
+        return bytes.toByteArray();
+    }
+
+    private int memberRef(int tag, String owner, String name, String descriptor) {
+        int ownerIndex = classRef(owner);
+        int nameIndex = utf8(name);
+        int descriptorIndex = utf8(descriptor);
+        int nameAndType = constant("N" + name + ":" + descriptor, out -> {
+            out.writeByte(CONSTANT_NAME_AND_TYPE);
+            out.writeShort(nameIndex);
+            out.writeShort(descriptorIndex);
+        }, 1);
+        return constant(tag + owner + "." + name + ":" + descriptor, out -> {
+            out.writeByte(tag);
+            out.writeShort(ownerIndex);
+            out.writeShort(nameAndType);
+        }, 1);
+    }
+
+    private int constant(String key, PoolEntry entry, int slots) {
+        Integer existing = poolIndices.get(key);
+        if (existing != null) {
+            return existing;
+        }
+        int index = poolSize;
+        write(() -> entry.writeTo(pool));
+        poolIndices.put(key, index);
+        poolSize += slots;
+        return index;
+    }
+
+    private void write(IoAction action) {
+        try {
+            action.run();
+        } catch (IOException e) {
+            // in-memory streams never fail
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private interface PoolEntry {
+        void writeTo(DataOutputStream out) throws IOException;
+    }
+
+    private interface IoAction {
+        void run() throws IOException;
+    }
+}
@@ -0,0 +1,159 @@
+package expressions.base;
+
+import interfaces.Expression;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A class that differentiates and simplifies expressions as DAGs instead of trees.
+ * Every expression is interned first, so structurally equal subtrees are one node; each distinct node is
+ * then differentiated or simplified once, and the results are interned again. Repeated derivatives therefore
+ * share their common subexpressions instead of copying them, and grow with the number of distinct nodes
+ * rather than the size of the fully expanded tree.
+ */
+public class DagDifferentiator {
+    private final ExpressionInterner interner;
+
+    /**
+     * Constructs a DAG differentiator with its own interner.
+     */
+    public DagDifferentiator() {
+        this(new ExpressionInterner());
+    }
+
+    /**
+     * Constructs a DAG differentiator that shares the given interner.
+     *
+     * @param interner the interner used to share common subexpressions
+     */
+    public DagDifferentiator(ExpressionInterner interner) {
+        this.interner = interner;
+    }
+
+    /**
+     * Computes the derivative of the expression with respect to a variable, sharing common subexpressions.
+     *
+     * @param expression the expression to differentiate
+     * @param var        the variable to differentiate by
+     * @return the interned derivative expression
+     */
+    public Expression differentiate(Expression expression, String var) {
+        return Traversal.fold(interner.intern(expression), new Differentiation(var));
+    }
+
+    /**
+     * Computes the derivative of the given order, simplifying after every step so that
+     * terms which vanish do not carry over to the next derivative.
+     *
+     * @param expression the expression to differentiate
+     * @param var        the variable to differentiate by
+     * @param order      the number of times to differentiate
+     * @return the interned, simplified derivative expression
+     */
+    public Expression differentiate(Expression expression, String var, int order) {
+        Expression derivative = simplify(expression);
+        for (int i = 0; i < order; i++) {
+            derivative = simplify(Traversal.fold(derivative, new Differentiation(var)));
+        }
+        return derivative;
+    }
+
+    /**
+     * Simplifies the expression, simplifying each distinct node once.
+     *
+     * @param expression the expression to simplify
+     * @return the interned, simplified expression
+     */
+    public Expression simplify(Expression expression) {
+        return Traversal.fold(interner.intern(expression), new Simplification());
+    }
+
+    /**
+     * Differentiates every distinct node once, from the interned derivatives of its operands.
+     */
+    private class Differentiation implements Traversal.Visitor<Expression> {
+        private final String var;
+        private final Map<Expression, Expression> derivatives = new IdentityHashMap<>();
+
+        private Differentiation(String var) {
+            this.var = var;
+        }
+
+        @Override
+        public Expression skip(Expression node) {
+            Expression derivative = derivatives.get(node);
+            if (derivative == null && !BaseExpression.dependsOn(node, var)) {
+                derivative = remember(node, BaseExpression.ZERO);
+            }
+            return derivative;
+        }
+
+        @Override
+        public Expression leaf(Expression leaf) {
+            return remember(leaf, leaf.differentiate(var));
+        }
+
+        @Override
+        public Expression binary(BinaryExpression binary, Expression leftOperandDerivative,
+                                 Expression rightOperandDerivative) {
+            return remember(binary, binary.differentiateSelf(leftOperandDerivative, rightOperandDerivative));
+        }
+
+        @Override
+        public Expression unary(UnaryExpression unary, Expression operandDerivative) {
+            return remember(unary, unary.differentiateSelf(operandDerivative));
+        }
+
+        @Override
+        public Expression nary(NaryExpression nary, List<Expression> operandDerivatives) {
+            return remember(nary, nary.differentiateSelf(operandDerivatives));
+        }
+
+        private Expression remember(Expression node, Expression derivative) {
+            derivative = interner.intern(derivative);
+            derivatives.put(node, derivative);
+            return derivative;
+        }
+    }
+
+    /**
+     * Simplifies every distinct node once, from the interned simplified forms of its operands.
+     */
+    private class Simplification implements Traversal.Visitor<Expression> {
+        private final Map<Expression, Expression> simplified = new IdentityHashMap<>();
+
+        @Override
+        public Expression skip(Expression node) {
+            return simplified.get(node);
+        }
+
+        @Override
+        public Expression leaf(Expression leaf) {
+            return remember(leaf, leaf.simplify());
+        }
+
+        @Override
+        public Expression binary(BinaryExpression binary, Expression leftOperandSimple,
+                                 Expression rightOperandSimple) {
+            return remember(binary, binary.simplifySelf(leftOperandSimple, rightOperandSimple));
+        }
+
+        @Override
+        public Expression unary(UnaryExpression unary, Expression operandSimple) {
+            return remember(unary, unary.simplifySelf(operandSimple));
+        }
+
+        @Override
+        public Expression nary(NaryExpression nary, List<Expression> operandsSimple) {
+            return remember(nary, nary.simplifySelf(operandsSimple));
+        }
+
+        private Expression remember(Expression node, Expression simple) {
+            simple = interner.intern(simple);
+            simplified.put(node, simple);
+            return simple;
+        }
+    }
+}
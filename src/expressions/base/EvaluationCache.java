@@ -0,0 +1,228 @@
+package expressions.base;
+
+import expressions.elements.Var;
+import interfaces.Expression;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A class that evaluates expressions like evaluate(Map), remembering the value of every operator subtree.
+ * A subtree's value is keyed on the subtree instance and the values of only the variables it depends on,
+ * so evaluating again with an assignment that changed a few variables reuses every subtree that does not
+ * read them, and recomputes only the paths from the changed variables to the root.
+ * The cache holds at most a fixed number of subtree values and evicts the least recently used one first.
+ * Failed evaluations are not cached. All methods are synchronized, so one cache can be shared between threads.
+ */
+public class EvaluationCache {
+    private final int maximumSize;
+    private final LinkedHashMap<Key, Double> values;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * Constructs an empty cache.
+     *
+     * @param maximumSize the maximum number of subtree values the cache holds
+     */
+    public EvaluationCache(int maximumSize) {
+        if (maximumSize < 1) {
+            throw new IllegalArgumentException("Cache size must be positive: " + maximumSize);
+        }
+        this.maximumSize = maximumSize;
+        this.values = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Double> eldest) {
+                if (size() > EvaluationCache.this.maximumSize) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Evaluates an expression with the given assignment, reusing cached subtree values.
+     *
+     * @param expression the expression to evaluate
+     * @param assignment the values of the variables
+     * @return the value of the expression
+     * @throws Exception if a variable is missing from the assignment or the evaluation fails
+     */
+    public synchronized double evaluate(Expression expression, Map<String, Double> assignment) throws Exception {
+        try {
+            return Traversal.fold(expression, new Evaluation(assignment));
+        } catch (Traversal.FoldFailure failure) {
+            throw failure.error;
+        }
+    }
+
+    /**
+     * Removes every cached value. The hit, miss and eviction counts are kept.
+     */
+    public synchronized void clear() {
+        values.clear();
+    }
+
+    /**
+     * Returns the number of subtree values currently cached.
+     *
+     * @return the number of cached values
+     */
+    public synchronized int size() {
+        return values.size();
+    }
+
+    /**
+     * Returns the number of subtree lookups that found a cached value.
+     *
+     * @return the number of cache hits
+     */
+    public synchronized long hitCount() {
+        return hits;
+    }
+
+    /**
+     * Returns the number of subtree lookups that had to evaluate the subtree.
+     *
+     * @return the number of cache misses
+     */
+    public synchronized long missCount() {
+        return misses;
+    }
+
+    /**
+     * Returns the number of values removed to keep the cache within its maximum size.
+     *
+     * @return the number of evictions
+     */
+    public synchronized long evictionCount() {
+        return evictions;
+    }
+
+    /**
+     * Evaluates the operators whose value is not cached from the values of their operands, and caches them.
+     * Variables and constants are never cached.
+     */
+    private class Evaluation implements Traversal.Visitor<Double> {
+        private final Map<String, Double> assignment;
+        private final Map<Expression, Key> keys = new IdentityHashMap<>();
+
+        private Evaluation(Map<String, Double> assignment) {
+            this.assignment = assignment;
+        }
+
+        @Override
+        public Double skip(Expression node) {
+            if (node instanceof Var) {
+                String name = ((Var) node).getVariableName();
+                Double value = assignment.get(name);
+                if (value == null) {
+                    throw new Traversal.FoldFailure(new Exception("Symbol not found in assignment: " + name));
+                }
+                return value;
+            }
+            if (node.isConstant()) {
+                return node.constantValue();
+            }
+            Key key;
+            try {
+                key = new Key(node, assignment);
+            } catch (Exception e) {
+                throw new Traversal.FoldFailure(e);
+            }
+            Double cached = values.get(key);
+            if (cached != null) {
+                hits++;
+                return cached;
+            }
+            misses++;
+            keys.put(node, key);
+            return null;
+        }
+
+        @Override
+        public Double leaf(Expression leaf) {
+            try {
+                return remember(leaf, leaf.evaluate(assignment));
+            } catch (Exception e) {
+                throw new Traversal.FoldFailure(e);
+            }
+        }
+
+        @Override
+        public Double binary(BinaryExpression binary, Double leftOperandValue, Double rightOperandValue) {
+            try {
+                return remember(binary, binary.evaluateSelf(leftOperandValue, rightOperandValue));
+            } catch (Exception e) {
+                throw new Traversal.FoldFailure(e);
+            }
+        }
+
+        @Override
+        public Double unary(UnaryExpression unary, Double operandValue) {
+            try {
+                return remember(unary, unary.evaluateSelf(operandValue));
+            } catch (Exception e) {
+                throw new Traversal.FoldFailure(e);
+            }
+        }
+
+        @Override
+        public Double nary(NaryExpression nary, List<Double> operandValues) {
+            double value = operandValues.get(0);
+            for (int i = 1; i < operandValues.size(); i++) {
+                value = nary.combineSelf(value, operandValues.get(i));
+            }
+            return remember(nary, value);
+        }
+
+        private Double remember(Expression node, double value) {
+            values.put(keys.remove(node), value);
+            return value;
+        }
+    }
+
+    /**
+     * A subtree instance together with the values of the variables it depends on.
+     */
+    private static final class Key {
+        private final Expression expression;
+        private final double[] variableValues;
+        private final int hash;
+
+        private Key(Expression expression, Map<String, Double> assignment) throws Exception {
+            List<String> variables = expression.getVariables();
+            this.expression = expression;
+            this.variableValues = new double[variables.size()];
+            for (int i = 0; i < variableValues.length; i++) {
+                Double value = assignment.get(variables.get(i));
+                if (value == null) {
+                    throw new Exception("Symbol not found in assignment: " + variables.get(i));
+                }
+                variableValues[i] = value;
+            }
+            this.hash = 31 * System.identityHashCode(expression) + Arrays.hashCode(variableValues);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Key)) {
+                return false;
+            }
+            Key that = (Key) other;
+            return expression == that.expression && hash == that.hash
+                    && Arrays.equals(variableValues, that.variableValues);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
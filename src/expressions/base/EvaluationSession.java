@@ -0,0 +1,147 @@
+package expressions.base;
+
+import interfaces.Expression;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A class that keeps an expression evaluated while its variables change one at a time.
+ * The session flattens the expression into a tape, caches the value of every node, and records for every
+ * variable a bitset of the nodes that depend on it. Setting a variable recomputes only those nodes, in tape
+ * order, so subtrees that do not read the variable, such as a sin or pow of other variables, are not
+ * evaluated again.
+ * Evaluation errors are kept per node and reported by value, so a variable can move into and back out of
+ * a region where the expression is undefined. A session is not thread-safe.
+ */
+public class EvaluationSession {
+    private final ExpressionTape tape;
+    private final Map<String, Integer> slots = new HashMap<>();
+    private final BitSet[] dependents;
+    private final double[] values;
+    private final double[] results;
+    private final Exception[] errors;
+    private int failures;
+
+    /**
+     * Constructs a session and evaluates the expression once with the given assignment.
+     *
+     * @param expression the expression to evaluate
+     * @param assignment the initial values of the variables
+     * @throws Exception if a variable of the expression is missing from the assignment
+     */
+    public EvaluationSession(Expression expression, Map<String, Double> assignment) throws Exception {
+        List<String> variables = expression.getVariables();
+        this.tape = new ExpressionTape(expression, variables);
+        this.dependents = new BitSet[variables.size()];
+        this.values = new double[variables.size()];
+        for (int v = 0; v < variables.size(); v++) {
+            Double value = assignment.get(variables.get(v));
+            if (value == null) {
+                throw new Exception("Symbol not found in assignment: " + variables.get(v));
+            }
+            values[v] = value;
+            slots.put(variables.get(v), v);
+            dependents[v] = new BitSet(tape.size());
+        }
+        for (int i = 0; i < tape.size(); i++) {
+            for (String variable : tape.node(i).getVariables()) {
+                dependents[slots.get(variable)].set(i);
+            }
+        }
+        this.results = new double[tape.size()];
+        this.errors = new Exception[tape.size()];
+        for (int i = 0; i < tape.size(); i++) {
+            recompute(i);
+        }
+    }
+
+    /**
+     * Changes the value of one variable and recomputes the nodes that depend on it.
+     * Variables the expression does not use are ignored, as they are by evaluate(Map).
+     *
+     * @param variable the name of the variable
+     * @param value    the new value of the variable
+     */
+    public void set(String variable, double value) {
+        Integer slot = slots.get(variable);
+        if (slot == null || Double.doubleToLongBits(values[slot]) == Double.doubleToLongBits(value)) {
+            return;
+        }
+        values[slot] = value;
+        recompute(dependents[slot]);
+    }
+
+    /**
+     * Changes the values of several variables and recomputes every node that depends on any of them once.
+     *
+     * @param assignment the new values of the variables
+     */
+    public void setAll(Map<String, Double> assignment) {
+        BitSet dirty = new BitSet(tape.size());
+        for (Map.Entry<String, Double> entry : assignment.entrySet()) {
+            Integer slot = slots.get(entry.getKey());
+            if (slot != null && Double.doubleToLongBits(values[slot]) != Double.doubleToLongBits(entry.getValue())) {
+                values[slot] = entry.getValue();
+                dirty.or(dependents[slot]);
+            }
+        }
+        recompute(dirty);
+    }
+
+    /**
+     * Returns the current value of a variable of the expression.
+     *
+     * @param variable the name of the variable
+     * @return the value of the variable
+     * @throws Exception if the expression does not use the variable
+     */
+    public double get(String variable) throws Exception {
+        Integer slot = slots.get(variable);
+        if (slot == null) {
+            throw new Exception("Symbol not found in expression: " + variable);
+        }
+        return values[slot];
+    }
+
+    /**
+     * Returns the value of the expression for the current variable values.
+     *
+     * @return the value of the expression
+     * @throws Exception if evaluation with the current values encounters an error
+     */
+    public double value() throws Exception {
+        if (failures > 0) {
+            for (Exception error : errors) {
+                if (error != null) {
+                    throw error;
+                }
+            }
+        }
+        return results[results.length - 1];
+    }
+
+    private void recompute(BitSet dirty) {
+        for (int i = dirty.nextSetBit(0); i >= 0; i = dirty.nextSetBit(i + 1)) {
+            recompute(i);
+        }
+    }
+
+    private void recompute(int i) {
+        try {
+            results[i] = tape.evaluateNode(i, results, values);
+            if (errors[i] != null) {
+                errors[i] = null;
+                failures--;
+            }
+        } catch (Exception e) {
+            results[i] = Double.NaN;
+            if (errors[i] == null) {
+                failures++;
+            }
+            errors[i] = e;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package expressions.base;
+
+import interfaces.Expression;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A class that hash-conses expression trees: every structurally equal subtree passed through the same
+ * interner is replaced by one canonical instance.
+ * Interned trees share memory for duplicated subtrees, and since expressions compare their operands
+ * by reference first, equality between interned trees is a pointer check.
+ * The interner keeps every canonical node it has seen, so its lifetime should match the trees it serves.
+ */
+public class ExpressionInterner {
+    private final ConcurrentMap<Expression, Expression> canonical = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the canonical instance of the given expression, interning its subtrees bottom-up.
+     * Subtrees shared by reference are visited once, so interning a DAG is linear in its number of distinct nodes.
+     *
+     * @param expression the expression to intern
+     * @return the canonical instance, structurally equal to the given expression
+     */
+    public Expression intern(Expression expression) {
+        return Traversal.fold(expression, new Interning());
+    }
+
+    /**
+     * Returns the number of canonical nodes held by the interner.
+     *
+     * @return the number of canonical nodes
+     */
+    public int size() {
+        return canonical.size();
+    }
+
+    /**
+     * Replaces every node by its canonical instance, rebuilding operators whose operands were replaced.
+     * Nodes already seen in this walk, or already canonical, are skipped without visiting their operands.
+     */
+    private class Interning implements Traversal.Visitor<Expression> {
+        private final Map<Expression, Expression> visited = new IdentityHashMap<>();
+
+        @Override
+        public Expression skip(Expression node) {
+            Expression interned = visited.get(node);
+            if (interned == null) {
+                interned = canonical.get(node);
+                if (interned != null) {
+                    visited.put(node, interned);
+                }
+            }
+            return interned;
+        }
+
+        @Override
+        public Expression leaf(Expression leaf) {
+            return canonicalize(leaf, leaf);
+        }
+
+        @Override
+        public Expression binary(BinaryExpression binary, Expression leftOperand, Expression rightOperand) {
+            Expression rebuilt = binary;
+            if (leftOperand != binary.getLeftOperand() || rightOperand != binary.getRightOperand()) {
+                rebuilt = binary.assignSelf(leftOperand, rightOperand);
+            }
+            return canonicalize(binary, rebuilt);
+        }
+
+        @Override
+        public Expression unary(UnaryExpression unary, Expression operand) {
+            return canonicalize(unary, operand != unary.getOperand() ? unary.assignSelf(operand) : unary);
+        }
+
+        @Override
+        public Expression nary(NaryExpression nary, List<Expression> operands) {
+            for (int i = 0; i < operands.size(); i++) {
+                if (operands.get(i) != nary.getOperands().get(i)) {
+                    return canonicalize(nary, nary.assignSelf(operands));
+                }
+            }
+            return canonicalize(nary, nary);
+        }
+
+        private Expression canonicalize(Expression node, Expression rebuilt) {
+            Expression existing = canonical.putIfAbsent(rebuilt, rebuilt);
+            Expression interned = existing != null ? existing : rebuilt;
+            visited.put(node, interned);
+            return interned;
+        }
+    }
+}
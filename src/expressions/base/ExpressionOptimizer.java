@@ -0,0 +1,534 @@
+package expressions.base;
+
+import expressions.binary.ConstantBaseLog;
+import expressions.binary.ConstantDiv;
+import expressions.binary.Div;
+import expressions.binary.IntegerPow;
+import expressions.binary.Log;
+import expressions.binary.Minus;
+import expressions.binary.Mult;
+import expressions.binary.Plus;
+import expressions.binary.Pow;
+import expressions.binary.SqrtPow;
+import expressions.elements.Var;
+import expressions.nary.Product;
+import expressions.nary.Sum;
+import expressions.unary.Neg;
+import expressions.unary.Polynomial;
+import interfaces.Expression;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A class that lowers operators with constant operands into cheaper forms for evaluation: powers with
+ * integer exponents into repeated squaring, powers of 0.5 into square roots, logarithms to a constant base
+ * into one logarithm and a division by the logarithm of the base, and divisions by a constant into
+ * multiplications by its reciprocal. The lowered operators print, differentiate and simplify like the ones
+ * they replace, so only evaluation changes.
+ * Sums of monomials in one variable with constant coefficients, such as 3 * x^2 + 2 * x + 1, are collected
+ * into a Polynomial node evaluated by Horner's scheme. A polynomial prints as its normalized sum of monomials,
+ * so its text may differ from the original. Products of two sums and powers of sums are not expanded,
+ * since expanding can lose far more precision than the original form.
+ * An operator is lowered only if its cost in the cost table, costSelf, is lower, and if the lowered form
+ * differs from the original by no more than the tolerance, relative to the result, for results in the
+ * normal floating point range. For a polynomial the difference is relative to the sum of the magnitudes of
+ * its terms, which bounds the rounding of the original sum as well. Errors propagate through the rest of the
+ * expression like any other rounding.
+ * Operators that fail keep failing the same way, and the optimizer never folds or removes subtrees
+ * outside of polynomials.
+ * An optimizer is immutable and safe to share between threads.
+ */
+public class ExpressionOptimizer {
+    /**
+     * The tolerance of the default optimizer, which allows integer powers up to the thousands.
+     */
+    public static final double DEFAULT_TOLERANCE = 1e-12;
+
+    private static final double UNIT_ROUNDOFF = Math.ulp(1.0) / 2;
+    private static final Terms NONE = new Terms(null, new double[0], Integer.MAX_VALUE);
+
+    private final double tolerance;
+
+    /**
+     * Constructs an optimizer with the default tolerance.
+     */
+    public ExpressionOptimizer() {
+        this(DEFAULT_TOLERANCE);
+    }
+
+    /**
+     * Constructs an optimizer with the given tolerance. A tolerance below about 3.3e-16, three unit
+     * roundoffs, lowers nothing.
+     *
+     * @param tolerance the largest relative difference a lowered operator may have from the original
+     */
+    public ExpressionOptimizer(double tolerance) {
+        if (!(tolerance >= 0)) {
+            throw new IllegalArgumentException("Tolerance must not be negative: " + tolerance);
+        }
+        this.tolerance = tolerance;
+    }
+
+    /**
+     * Returns the tolerance of the optimizer.
+     *
+     * @return the largest relative difference a lowered operator may have from the original
+     */
+    public double getTolerance() {
+        return tolerance;
+    }
+
+    /**
+     * Lowers every operator of an expression that has a cheaper form within the tolerance.
+     * Subtrees shared by reference are lowered once and stay shared.
+     *
+     * @param expression the expression to optimize
+     * @return an expression that evaluates like the given one within the tolerance
+     */
+    public Expression optimize(Expression expression) {
+        return Traversal.fold(expression, new Lowering());
+    }
+
+    /**
+     * Returns the polynomial node for a subtree whose terms were collected, or null if it would not be cheaper
+     * or its evaluation could differ by more than the tolerance.
+     */
+    private Expression polynomial(Terms terms) {
+        if (terms == null || terms.variable == null) {
+            return null;
+        }
+        int length = terms.coefficients.length;
+        while (length > 1 && terms.coefficients[length - 1] == 0) {
+            length--;
+        }
+        if (length == 1) {
+            return null;
+        }
+        Polynomial polynomial = new Polynomial(terms.variable, Arrays.copyOf(terms.coefficients, length));
+        if (polynomialBound(polynomial.getDegree()) > tolerance
+                || ((BaseExpression) polynomial).costSelf() >= terms.cost) {
+            return null;
+        }
+        return polynomial;
+    }
+
+    /**
+     * Returns the bound of the difference between Horner's scheme and the sum of the terms, relative to the sum
+     * of their magnitudes: both round at most twice per degree, and collecting equal powers once more.
+     */
+    private static double polynomialBound(int degree) {
+        return (4 * (double) degree + 4) * UNIT_ROUNDOFF;
+    }
+
+    /**
+     * Returns the lowered form of an operator with optimized operands, or the operator itself.
+     */
+    private Expression lower(BinaryExpression binary) {
+        Expression leftOperand = binary.getLeftOperand();
+        Expression rightOperand = binary.getRightOperand();
+        BinaryExpression lowered = null;
+        double bound = 0;
+        if (binary.getClass() == Pow.class && rightOperand.isConstant()) {
+            double exponent = rightOperand.constantValue();
+            if (exponent == 0.5) {
+                lowered = new SqrtPow(leftOperand, rightOperand);
+                bound = 3 * UNIT_ROUNDOFF;
+            } else if (exponent == (int) exponent) {
+                lowered = new IntegerPow(leftOperand, rightOperand);
+                bound = (Math.abs(exponent) + 2) * UNIT_ROUNDOFF;
+            }
+        } else if (binary.getClass() == Log.class && leftOperand.isConstant()) {
+            double base = leftOperand.constantValue();
+            if (base > 0 && base != 1 && Double.isFinite(base)) {
+                lowered = new ConstantBaseLog(leftOperand, rightOperand);
+                bound = 3 * UNIT_ROUNDOFF;
+            }
+        } else if (binary.getClass() == Div.class && rightOperand.isConstant()) {
+            double divisor = rightOperand.constantValue();
+            if (Double.isFinite(divisor) && Math.abs(divisor) >= Double.MIN_NORMAL
+                    && Math.abs(1 / divisor) >= Double.MIN_NORMAL && Double.isFinite(1 / divisor)) {
+                lowered = new ConstantDiv(leftOperand, rightOperand);
+                bound = 3 * UNIT_ROUNDOFF;
+            }
+        }
+        if (lowered == null || bound > tolerance || lowered.costSelf() >= binary.costSelf()) {
+            return binary;
+        }
+        return lowered;
+    }
+
+    /**
+     * Rebuilds a tree bottom-up with lowered operators, remembering the result of every node it has seen.
+     */
+    private class Lowering implements Traversal.Visitor<Expression> {
+        private final Map<Expression, Expression> lowered = new IdentityHashMap<>();
+        private final Collection collection = new Collection();
+
+        /**
+         * Replaces the largest polynomial subtrees first, since the tree is visited top-down before any
+         * operand is lowered.
+         */
+        @Override
+        public Expression skip(Expression node) {
+            Expression result = lowered.get(node);
+            if (result == null) {
+                result = polynomial(collection.terms(node));
+                if (result != null) {
+                    lowered.put(node, result);
+                }
+            }
+            return result;
+        }
+
+        @Override
+        public Expression leaf(Expression leaf) {
+            Expression result = leaf;
+            Expression resolved = Traversal.resolve(leaf);
+            if (resolved != leaf) {
+                result = Traversal.fold(resolved, this);
+            }
+            lowered.put(leaf, result);
+            return result;
+        }
+
+        /**
+         * Rebuilds an n-ary node from its lowered operands. The operands of a sum that are polynomials in the
+         * same variable are replaced by one polynomial first, which is already lowered.
+         */
+        @Override
+        public Expression nary(NaryExpression nary, List<Expression> operandResults) {
+            List<Expression> source = nary instanceof Sum ? collectTerms(nary.getOperands()) : nary.getOperands();
+            List<Expression> operands = operandResults;
+            boolean changed = source != nary.getOperands();
+            if (changed) {
+                operands = new ArrayList<>(source.size());
+                for (Expression operand : source) {
+                    Expression optimized = lowered.get(operand);
+                    operands.add(optimized != null ? optimized : operand);
+                }
+            } else {
+                for (int i = 0; i < operands.size(); i++) {
+                    changed |= operands.get(i) != source.get(i);
+                }
+            }
+            Expression result = nary;
+            if (operands.size() == 1) {
+                result = operands.get(0);
+            } else if (changed) {
+                result = nary.assignSelf(operands);
+            }
+            lowered.put(nary, result);
+            return result;
+        }
+
+        /**
+         * Replaces the operands of a sum that are polynomials in the same variable by one polynomial in place of
+         * the first of them, with the constant operands if there is only one such variable. Returns the operands
+         * themselves if no group of them is cheaper as a polynomial.
+         */
+        private List<Expression> collectTerms(List<Expression> operands) {
+            Map<Var, Terms> groups = new LinkedHashMap<>();
+            Terms constants = null;
+            for (Expression operand : operands) {
+                Terms terms = collection.terms(operand);
+                if (terms != null && terms.variable == null) {
+                    constants = constants == null ? terms : collection.sum(constants, terms);
+                } else if (terms != null) {
+                    Terms group = groups.get(terms.variable);
+                    groups.put(terms.variable, group == null ? terms : collection.sum(group, terms));
+                }
+            }
+            if (groups.size() == 1 && constants != null) {
+                Map.Entry<Var, Terms> group = groups.entrySet().iterator().next();
+                group.setValue(collection.sum(group.getValue(), constants));
+            }
+            Map<Var, Expression> polynomials = new HashMap<>();
+            for (Map.Entry<Var, Terms> group : groups.entrySet()) {
+                Expression polynomial = polynomial(group.getValue());
+                if (polynomial != null) {
+                    polynomials.put(group.getKey(), polynomial);
+                }
+            }
+            if (polynomials.isEmpty()) {
+                return operands;
+            }
+            Var only = groups.size() == 1 ? groups.keySet().iterator().next() : null;
+            Set<Var> placed = new HashSet<>();
+            List<Expression> collected = new ArrayList<>(operands.size());
+            for (Expression operand : operands) {
+                Terms terms = collection.terms(operand);
+                Var variable = terms == null ? null : terms.variable == null ? only : terms.variable;
+                if (variable == null || !polynomials.containsKey(variable)) {
+                    collected.add(operand);
+                } else if (placed.add(variable)) {
+                    collected.add(polynomials.get(variable));
+                }
+            }
+            return collected;
+        }
+
+        @Override
+        public Expression binary(BinaryExpression binary, Expression leftOperandResult,
+                                 Expression rightOperandResult) {
+            BinaryExpression rebuilt = binary;
+            if (leftOperandResult != binary.getLeftOperand() || rightOperandResult != binary.getRightOperand()) {
+                rebuilt = (BinaryExpression) binary.assignSelf(leftOperandResult, rightOperandResult);
+            }
+            Expression result = lower(rebuilt);
+            lowered.put(binary, result);
+            return result;
+        }
+
+        @Override
+        public Expression unary(UnaryExpression unary, Expression operandResult) {
+            Expression result = operandResult != unary.getOperand() ? unary.assignSelf(operandResult) : unary;
+            lowered.put(unary, result);
+            return result;
+        }
+    }
+
+    /**
+     * The dense coefficients of a subtree that is a polynomial in at most one variable, with the cost of
+     * evaluating the subtree as it is written.
+     */
+    private static final class Terms {
+        private final Var variable;
+        private final double[] coefficients;
+        private final int cost;
+
+        private Terms(Var variable, double[] coefficients, int cost) {
+            this.variable = variable;
+            this.coefficients = coefficients;
+            this.cost = cost;
+        }
+
+        private boolean isMonomial() {
+            int nonzero = 0;
+            for (double coefficient : coefficients) {
+                if (coefficient != 0) {
+                    nonzero++;
+                }
+            }
+            return nonzero <= 1;
+        }
+    }
+
+    /**
+     * Collects the terms of every subtree that is a sum of monomials, remembering the result of every node it
+     * has seen. Subtrees over other operators, several variables, or coefficients that are not finite have no
+     * terms, and neither does a product of two sums or a power of a sum.
+     */
+    private class Collection implements Traversal.Visitor<Terms> {
+        private final Map<Expression, Terms> collected = new IdentityHashMap<>();
+        private final int maximumDegree = (int) Math.min(Integer.MAX_VALUE - 8, tolerance / (4 * UNIT_ROUNDOFF));
+
+        /**
+         * Returns the terms of a subtree, or null if it is not a sum of monomials.
+         */
+        private Terms terms(Expression node) {
+            Terms terms = Traversal.fold(node, this);
+            return terms == NONE ? null : terms;
+        }
+
+        @Override
+        public Terms skip(Expression node) {
+            return collected.get(node);
+        }
+
+        @Override
+        public Terms leaf(Expression leaf) {
+            Terms terms = null;
+            if (leaf.isConstant()) {
+                terms = constant(leaf.constantValue());
+            } else if (leaf instanceof Var) {
+                terms = new Terms((Var) leaf, new double[]{0, 1}, 0);
+            }
+            return remember(leaf, terms);
+        }
+
+        @Override
+        public Terms binary(BinaryExpression binary, Terms leftOperandResult, Terms rightOperandResult) {
+            Terms terms = null;
+            if (leftOperandResult != NONE && rightOperandResult != NONE) {
+                if (binary instanceof Plus) {
+                    terms = add(leftOperandResult, rightOperandResult, 1);
+                } else if (binary instanceof Minus) {
+                    terms = add(leftOperandResult, rightOperandResult, -1);
+                } else if (binary instanceof Mult) {
+                    terms = multiply(leftOperandResult, rightOperandResult);
+                } else if (binary instanceof Div && rightOperandResult.variable == null) {
+                    terms = divide(leftOperandResult, rightOperandResult.coefficients[0]);
+                } else if (binary instanceof Pow && rightOperandResult.variable == null) {
+                    terms = power(leftOperandResult, rightOperandResult.coefficients[0]);
+                }
+                terms = withCost(terms, ((BaseExpression) lower(binary)).costSelf());
+            }
+            return remember(binary, terms);
+        }
+
+        @Override
+        public Terms unary(UnaryExpression unary, Terms operandResult) {
+            Terms terms = null;
+            if (operandResult != NONE && unary instanceof Neg) {
+                terms = withCost(scale(operandResult, -1), unary.costSelf());
+            }
+            return remember(unary, terms);
+        }
+
+        @Override
+        public Terms nary(NaryExpression nary, List<Terms> operandResults) {
+            Terms terms = null;
+            if (nary instanceof Sum || nary instanceof Product) {
+                terms = operandResults.get(0);
+                for (int i = 1; i < operandResults.size() && terms != NONE && terms != null; i++) {
+                    Terms operand = operandResults.get(i);
+                    if (operand == NONE) {
+                        terms = null;
+                    } else {
+                        terms = nary instanceof Sum ? add(terms, operand, 1) : multiply(terms, operand);
+                    }
+                }
+                terms = terms == NONE ? null : withCost(terms, nary.costSelf());
+            }
+            return remember(nary, terms);
+        }
+
+        private Terms remember(Expression node, Terms terms) {
+            Terms result = terms == null ? NONE : terms;
+            collected.put(node, result);
+            return result;
+        }
+
+        private Terms constant(double value) {
+            return Double.isFinite(value) ? new Terms(null, new double[]{value}, 0) : null;
+        }
+
+        private Terms withCost(Terms terms, int cost) {
+            return terms == null ? null : new Terms(terms.variable, terms.coefficients, saturate(terms.cost, cost));
+        }
+
+        /**
+         * Returns the terms of the sum of two operands of a sum, with the cost of one more addition, or the
+         * terms that are not a polynomial if either is.
+         */
+        private Terms sum(Terms left, Terms right) {
+            if (left == NONE || right == NONE) {
+                return NONE;
+            }
+            Terms sum = withCost(add(left, right, 1), BaseExpression.COST_ARITHMETIC);
+            return sum == null ? NONE : sum;
+        }
+
+        private Terms add(Terms left, Terms right, double sign) {
+            Var variable = variable(left, right);
+            if (variable == null && left.variable != right.variable) {
+                return null;
+            }
+            double[] sum = Arrays.copyOf(left.coefficients,
+                    Math.max(left.coefficients.length, right.coefficients.length));
+            for (int i = 0; i < right.coefficients.length; i++) {
+                sum[i] += sign * right.coefficients[i];
+            }
+            return finite(variable, sum, saturate(left.cost, right.cost));
+        }
+
+        private Terms multiply(Terms left, Terms right) {
+            Var variable = variable(left, right);
+            if ((variable == null && left.variable != right.variable)
+                    || (!left.isMonomial() && !right.isMonomial())
+                    || left.coefficients.length + right.coefficients.length - 2 > maximumDegree) {
+                return null;
+            }
+            double[] product = new double[left.coefficients.length + right.coefficients.length - 1];
+            for (int i = 0; i < left.coefficients.length; i++) {
+                for (int j = 0; j < right.coefficients.length; j++) {
+                    if (left.coefficients[i] != 0 && right.coefficients[j] != 0) {
+                        product[i + j] += left.coefficients[i] * right.coefficients[j];
+                    }
+                }
+            }
+            return finite(variable, trim(product), saturate(left.cost, right.cost));
+        }
+
+        private Terms divide(Terms dividend, double divisor) {
+            if (divisor == 0) {
+                return null;
+            }
+            double[] quotient = dividend.coefficients.clone();
+            for (int i = 0; i < quotient.length; i++) {
+                quotient[i] /= divisor;
+            }
+            return finite(dividend.variable, quotient, dividend.cost);
+        }
+
+        private Terms power(Terms base, double exponent) {
+            if (!(exponent >= 0) || exponent != Math.rint(exponent) || !base.isMonomial()
+                    || exponent * (base.coefficients.length - 1) > maximumDegree) {
+                return null;
+            }
+            int n = (int) exponent;
+            if (n == 0) {
+                return new Terms(null, new double[]{1}, base.cost);
+            }
+            int degree = base.coefficients.length - 1;
+            while (degree > 0 && base.coefficients[degree] == 0) {
+                degree--;
+            }
+            double[] power = new double[degree * n + 1];
+            power[degree * n] = Math.pow(base.coefficients[degree], n);
+            return finite(base.variable, power, base.cost);
+        }
+
+        private Terms scale(Terms terms, double factor) {
+            double[] scaled = terms.coefficients.clone();
+            for (int i = 0; i < scaled.length; i++) {
+                scaled[i] *= factor;
+            }
+            return new Terms(terms.variable, scaled, terms.cost);
+        }
+
+        /**
+         * Returns the variable two sets of terms share, the one of either if the other is a constant, or null
+         * if they are both constants or in different variables.
+         */
+        private Var variable(Terms left, Terms right) {
+            if (left.variable == null) {
+                return right.variable;
+            }
+            if (right.variable == null || left.variable.equals(right.variable)) {
+                return left.variable;
+            }
+            return null;
+        }
+
+        private Terms finite(Var variable, double[] coefficients, int cost) {
+            for (double coefficient : coefficients) {
+                if (!Double.isFinite(coefficient)) {
+                    return null;
+                }
+            }
+            return new Terms(variable, coefficients, cost);
+        }
+
+        private double[] trim(double[] coefficients) {
+            int length = coefficients.length;
+            while (length > 1 && coefficients[length - 1] == 0) {
+                length--;
+            }
+            return length == coefficients.length ? coefficients : Arrays.copyOf(coefficients, length);
+        }
+
+        private int saturate(int left, int right) {
+            int sum = left + right;
+            return sum < 0 ? Integer.MAX_VALUE : sum;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package expressions.base;
+
+import interfaces.Expression;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A class that evaluates several related expressions together, such as a function and its derivatives.
+ * The expressions are merged into one tape, so a subexpression they share is stored once and computed a
+ * single time per assignment, and the assignment map is read once per variable instead of once per
+ * variable occurrence in every expression.
+ * An expression set is immutable and safe to share between threads.
+ */
+public class ExpressionSet {
+    private final List<Expression> expressions;
+    private final List<String> variables;
+    private final ExpressionTape tape;
+
+    /**
+     * Constructs a set of the given expressions.
+     *
+     * @param expressions the expressions to evaluate, in the order their values are returned
+     */
+    public ExpressionSet(List<Expression> expressions) {
+        if (expressions.isEmpty()) {
+            throw new IllegalArgumentException("An expression set needs at least one expression");
+        }
+        this.expressions = Collections.unmodifiableList(new ArrayList<>(expressions));
+        List<String> variables = Collections.emptyList();
+        for (Expression expression : expressions) {
+            variables = BaseExpression.mergeVariables(variables, expression.getVariables());
+        }
+        this.variables = variables;
+        this.tape = new ExpressionTape(this.expressions, variables);
+    }
+
+    /**
+     * Returns the expressions of the set.
+     *
+     * @return an unmodifiable list of the expressions, in order
+     */
+    public List<Expression> getExpressions() {
+        return expressions;
+    }
+
+    /**
+     * Returns the variables used by any expression of the set, which is the order of the values
+     * evaluate(double[], double[]) reads.
+     *
+     * @return an unmodifiable sorted list of the distinct variable names
+     */
+    public List<String> getVariables() {
+        return variables;
+    }
+
+    /**
+     * Returns the number of distinct nodes of the merged expressions, each of which is computed once
+     * per evaluation.
+     *
+     * @return the number of distinct nodes
+     */
+    public int nodeCount() {
+        return tape.size();
+    }
+
+    /**
+     * Evaluates every expression of the set with the given variable assignments.
+     * Expressions that cannot be evaluated, such as a division by zero, are set to NaN, like the rows of
+     * evaluateBatch, and the others are still computed.
+     *
+     * @param assignment a map of variable assignments
+     * @return the values of the expressions, in order
+     * @throws Exception if a variable of the set is missing from the assignment
+     */
+    public double[] evaluate(Map<String, Double> assignment) throws Exception {
+        double[] values = new double[variables.size()];
+        for (int v = 0; v < values.length; v++) {
+            Double value = assignment.get(variables.get(v));
+            if (value == null) {
+                throw new Exception("Symbol not found in assignment: " + variables.get(v));
+            }
+            values[v] = value;
+        }
+        double[] out = new double[expressions.size()];
+        evaluate(values, out);
+        return out;
+    }
+
+    /**
+     * Evaluates every expression of the set with the given variable values.
+     * Expressions that cannot be evaluated are set to NaN.
+     *
+     * @param values the variable values, in the order of getVariables
+     * @param out    the array the results are written to, one value per expression
+     */
+    public void evaluate(double[] values, double[] out) {
+        tape.evaluateOutputs(values, out);
+    }
+}
@@ -0,0 +1,394 @@
+package expressions.base;
+
+import expressions.elements.Var;
+import interfaces.CompiledExpression;
+import interfaces.Expression;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A class that flattens an expression into a tape: its distinct nodes in an order where every operand
+ * comes before the nodes that use it.
+ * Structurally equal subtrees are stored once, so evaluating the tape computes each shared subexpression
+ * a single time, no matter how often it appears in the original tree or DAG.
+ * The tape also computes full gradients by reverse-mode automatic differentiation: one forward sweep for
+ * the node values and one reverse sweep that accumulates the partial derivatives, without building any
+ * symbolic derivative trees.
+ */
+public class ExpressionTape {
+    private static final byte CONSTANT = 0;
+    private static final byte VARIABLE = 1;
+    private static final byte BINARY = 2;
+    private static final byte UNARY = 3;
+    private static final byte COMPILED = 4;
+    private static final byte NARY = 5;
+
+    private final byte[] kinds;
+    private final Expression[] nodes;
+    private final int[] leftOperands;
+    private final int[] rightOperands;
+    private final int[][] naryOperands;
+    private final double[] constants;
+    private final int[] slots;
+    private final CompiledExpression[] compiled;
+    private final CompiledExpression[][] compiledDerivatives;
+    private final boolean[] variable;
+    private final int variableCount;
+    private final int[] outputs;
+
+    /**
+     * Constructs the tape of an expression for the given variable order.
+     *
+     * @param expression    the expression to flatten
+     * @param variableOrder the variable names, in the order their values appear in the evaluator's input
+     */
+    public ExpressionTape(Expression expression, List<String> variableOrder) {
+        this(Collections.singletonList(expression), variableOrder);
+    }
+
+    /**
+     * Constructs one tape of several expressions for the given variable order. Subtrees the expressions
+     * share are stored once. evaluate and gradient apply to the last expression only; evaluateOutputs
+     * computes all of them.
+     *
+     * @param expressions   the expressions to flatten
+     * @param variableOrder the variable names, in the order their values appear in the evaluator's input
+     */
+    ExpressionTape(List<Expression> expressions, List<String> variableOrder) {
+        Builder builder = new Builder(variableOrder);
+        for (Expression expression : expressions) {
+            builder.add(expression);
+        }
+        this.outputs = new int[expressions.size()];
+        for (int k = 0; k < outputs.length; k++) {
+            outputs[k] = builder.indices.get(expressions.get(k));
+        }
+        int size = builder.nodes.size();
+        this.nodes = builder.nodes.toArray(new Expression[0]);
+        this.kinds = new byte[size];
+        this.leftOperands = new int[size];
+        this.rightOperands = new int[size];
+        this.naryOperands = new int[size][];
+        this.constants = new double[size];
+        this.slots = new int[size];
+        this.compiled = new CompiledExpression[size];
+        this.compiledDerivatives = new CompiledExpression[size][];
+        this.variable = new boolean[size];
+        this.variableCount = variableOrder.size();
+        for (int i = 0; i < size; i++) {
+            Expression node = nodes[i];
+            if (node.isConstant()) {
+                kinds[i] = CONSTANT;
+                constants[i] = node.constantValue();
+            } else if (builder.slots.containsKey(i)) {
+                kinds[i] = VARIABLE;
+                slots[i] = builder.slots.get(i);
+                variable[i] = true;
+            } else if (node instanceof BinaryExpression) {
+                kinds[i] = BINARY;
+                leftOperands[i] = builder.indices.get(((BinaryExpression) node).getLeftOperand());
+                rightOperands[i] = builder.indices.get(((BinaryExpression) node).getRightOperand());
+                variable[i] = variable[leftOperands[i]] || variable[rightOperands[i]];
+            } else if (node instanceof UnaryExpression) {
+                kinds[i] = UNARY;
+                leftOperands[i] = builder.indices.get(((UnaryExpression) node).getOperand());
+                variable[i] = variable[leftOperands[i]];
+            } else if (node instanceof NaryExpression) {
+                kinds[i] = NARY;
+                List<Expression> operands = ((NaryExpression) node).getOperands();
+                naryOperands[i] = new int[operands.size()];
+                for (int k = 0; k < operands.size(); k++) {
+                    naryOperands[i][k] = builder.indices.get(operands.get(k));
+                    variable[i] |= variable[naryOperands[i][k]];
+                }
+            } else {
+                kinds[i] = COMPILED;
+                compiled[i] = node.compile(variableOrder);
+                variable[i] = !node.getVariables().isEmpty();
+                compiledDerivatives[i] = new CompiledExpression[variableCount];
+                for (int v = 0; v < variableCount; v++) {
+                    compiledDerivatives[i][v] = node.differentiate(variableOrder.get(v)).compile(variableOrder);
+                }
+            }
+        }
+    }
+
+    /**
+     * Evaluates the tape using the given variable values, computing every distinct node once.
+     *
+     * @param values the variable values, indexed by the variable order of the tape
+     * @return the result of evaluating the expression
+     * @throws Exception if evaluation encounters an error
+     */
+    public double evaluate(double[] values) throws Exception {
+        return evaluateNodes(values)[outputs[outputs.length - 1]];
+    }
+
+    /**
+     * Computes the partial derivatives of the expression with respect to every variable of the tape.
+     *
+     * @param values the variable values, indexed by the variable order of the tape
+     * @return the partial derivatives, indexed by the variable order of the tape
+     * @throws Exception if evaluation encounters an error
+     */
+    public double[] gradient(double[] values) throws Exception {
+        double[] gradient = new double[variableCount];
+        gradient(values, gradient);
+        return gradient;
+    }
+
+    /**
+     * Computes the value of the expression and its partial derivatives with respect to every variable
+     * of the tape, in one forward and one reverse sweep.
+     * Like differentiate, sin and cos are differentiated without the degree conversion factor, and
+     * logarithms in the derivatives use base e = 2.71.
+     *
+     * @param values   the variable values, indexed by the variable order of the tape
+     * @param gradient the array the partial derivatives are written to, indexed by the variable order of the tape
+     * @return the result of evaluating the expression
+     * @throws Exception if evaluation encounters an error
+     */
+    public double gradient(double[] values, double[] gradient) throws Exception {
+        double[] results = evaluateNodes(values);
+        double[] adjoints = new double[kinds.length];
+        Arrays.fill(gradient, 0, variableCount, 0);
+        adjoints[outputs[outputs.length - 1]] = 1;
+        for (int i = kinds.length - 1; i >= 0; i--) {
+            double adjoint = adjoints[i];
+            if (adjoint == 0 || !variable[i]) {
+                continue;
+            }
+            switch (kinds[i]) {
+                case VARIABLE:
+                    gradient[slots[i]] += adjoint;
+                    break;
+                case BINARY:
+                    BinaryExpression binary = (BinaryExpression) nodes[i];
+                    double leftOperand = results[leftOperands[i]];
+                    double rightOperand = results[rightOperands[i]];
+                    if (variable[leftOperands[i]]) {
+                        adjoints[leftOperands[i]] += chain(adjoint, binary.leftPartialSelf(leftOperand, rightOperand));
+                    }
+                    if (variable[rightOperands[i]]) {
+                        adjoints[rightOperands[i]] +=
+                                chain(adjoint, binary.rightPartialSelf(leftOperand, rightOperand));
+                    }
+                    break;
+                case UNARY:
+                    UnaryExpression unary = (UnaryExpression) nodes[i];
+                    adjoints[leftOperands[i]] += chain(adjoint, unary.partialSelf(results[leftOperands[i]]));
+                    break;
+                case NARY:
+                    int[] operands = naryOperands[i];
+                    double[] operandValues = new double[operands.length];
+                    for (int k = 0; k < operands.length; k++) {
+                        operandValues[k] = results[operands[k]];
+                    }
+                    double[] partials = new double[operands.length];
+                    ((NaryExpression) nodes[i]).partialsSelf(operandValues, partials);
+                    for (int k = 0; k < operands.length; k++) {
+                        if (variable[operands[k]]) {
+                            adjoints[operands[k]] += chain(adjoint, partials[k]);
+                        }
+                    }
+                    break;
+                default:
+                    for (int v = 0; v < variableCount; v++) {
+                        gradient[v] += adjoint * compiledDerivatives[i][v].evaluate(values);
+                    }
+            }
+        }
+        return results[outputs[outputs.length - 1]];
+    }
+
+    /**
+     * Returns the number of distinct nodes on the tape.
+     *
+     * @return the number of distinct nodes
+     */
+    public int size() {
+        return kinds.length;
+    }
+
+    /**
+     * Evaluates every expression of the tape using the given variable values, computing every distinct node
+     * once. Expressions that cannot be evaluated are set to NaN, and the others are still computed.
+     *
+     * @param values the variable values, indexed by the variable order of the tape
+     * @param out    the array the results are written to, one value per expression
+     */
+    void evaluateOutputs(double[] values, double[] out) {
+        double[] results;
+        try {
+            results = evaluateNodes(values);
+        } catch (Exception evalError) {
+            results = evaluateNodesFailing(values);
+        }
+        for (int k = 0; k < outputs.length; k++) {
+            out[k] = results[outputs[k]];
+        }
+    }
+
+    /**
+     * Evaluates the nodes one by one after a sweep failed, setting every node that fails or has a failed
+     * operand to NaN.
+     */
+    private double[] evaluateNodesFailing(double[] values) {
+        double[] results = new double[kinds.length];
+        boolean[] failed = new boolean[kinds.length];
+        for (int i = 0; i < kinds.length; i++) {
+            failed[i] = operandFailed(i, failed);
+            if (!failed[i]) {
+                try {
+                    results[i] = evaluateNode(i, results, values);
+                } catch (Exception evalError) {
+                    failed[i] = true;
+                }
+            }
+            if (failed[i]) {
+                results[i] = Double.NaN;
+            }
+        }
+        return results;
+    }
+
+    // a zero partial absorbs the adjoint, as a zero factor does in Mult and in the derivatives differentiate builds
+    private static double chain(double adjoint, double partial) {
+        return partial == 0 ? 0 : adjoint * partial;
+    }
+
+    private boolean operandFailed(int i, boolean[] failed) {
+        switch (kinds[i]) {
+            case BINARY:
+                return failed[leftOperands[i]] || failed[rightOperands[i]];
+            case UNARY:
+                return failed[leftOperands[i]];
+            case NARY:
+                for (int operand : naryOperands[i]) {
+                    if (failed[operand]) {
+                        return true;
+                    }
+                }
+                return false;
+            default:
+                return false;
+        }
+    }
+
+    private double[] evaluateNodes(double[] values) throws Exception {
+        double[] results = new double[kinds.length];
+        for (int i = 0; i < kinds.length; i++) {
+            results[i] = evaluateNode(i, results, values);
+        }
+        return results;
+    }
+
+    /**
+     * Returns the node at the given position of the tape.
+     *
+     * @param i the position of the node
+     * @return the node
+     */
+    Expression node(int i) {
+        return nodes[i];
+    }
+
+    /**
+     * Computes the value of one node from the values of its operands.
+     *
+     * @param i       the position of the node
+     * @param results the values of the nodes before it on the tape
+     * @param values  the variable values, indexed by the variable order of the tape
+     * @return the value of the node
+     * @throws Exception if evaluation encounters an error
+     */
+    double evaluateNode(int i, double[] results, double[] values) throws Exception {
+        switch (kinds[i]) {
+            case CONSTANT:
+                return constants[i];
+            case VARIABLE:
+                return values[slots[i]];
+            case BINARY:
+                return ((BinaryExpression) nodes[i]).evaluateSelf(results[leftOperands[i]], results[rightOperands[i]]);
+            case UNARY:
+                return ((UnaryExpression) nodes[i]).evaluateSelf(results[leftOperands[i]]);
+            case NARY:
+                NaryExpression nary = (NaryExpression) nodes[i];
+                int[] operands = naryOperands[i];
+                double value = results[operands[0]];
+                for (int k = 1; k < operands.length; k++) {
+                    value = nary.combineSelf(value, results[operands[k]]);
+                }
+                return value;
+            default:
+                return compiled[i].evaluate(values);
+        }
+    }
+
+    /**
+     * Collects the distinct nodes of an expression in operand-first order. Each node folds to its index on the
+     * tape, and a node equal to one already collected is skipped with the index of that one.
+     */
+    private static class Builder implements Traversal.Visitor<Integer> {
+        private final List<String> variableOrder;
+        private final List<Expression> nodes = new ArrayList<>();
+        private final Map<Expression, Integer> indices = new HashMap<>();
+        private final Map<Integer, Integer> slots = new HashMap<>();
+
+        private Builder(List<String> variableOrder) {
+            this.variableOrder = variableOrder;
+        }
+
+        private void add(Expression expression) {
+            Traversal.fold(expression, this);
+        }
+
+        @Override
+        public Integer skip(Expression node) {
+            return indices.get(node);
+        }
+
+        @Override
+        public Integer leaf(Expression leaf) {
+            Expression resolved = Traversal.resolve(leaf);
+            if (resolved != leaf) {
+                int index = Traversal.fold(resolved, this);
+                indices.put(leaf, index);
+                return index;
+            }
+            if (leaf instanceof Var) {
+                int slot = variableOrder.indexOf(((Var) leaf).getVariableName());
+                if (slot >= 0) {
+                    slots.put(nodes.size(), slot);
+                }
+            }
+            return collect(leaf);
+        }
+
+        @Override
+        public Integer binary(BinaryExpression binary, Integer leftOperandResult, Integer rightOperandResult) {
+            return collect(binary);
+        }
+
+        @Override
+        public Integer unary(UnaryExpression unary, Integer operandResult) {
+            return collect(unary);
+        }
+
+        @Override
+        public Integer nary(NaryExpression nary, List<Integer> operandResults) {
+            return collect(nary);
+        }
+
+        private int collect(Expression node) {
+            indices.put(node, nodes.size());
+            nodes.add(node);
+            return nodes.size() - 1;
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package expressions.base;
+
+import interfaces.CompiledExpression;
+import interfaces.Expression;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A class that evaluates one expression over many points in parallel.
+ * The expression is compiled once with the JitCompiler, and the points are split into chunks that the tasks
+ * of a ForkJoinPool evaluate independently, each with its own small buffer of variable values, writing
+ * straight into a preallocated output array. The chunks are large enough that scheduling costs little, so
+ * throughput grows nearly linearly with the number of cores.
+ * As with evaluateBatch, a point whose evaluation fails gets NaN instead of aborting the whole sweep.
+ * An evaluator holds no mutable state, so it can be used from several threads at once.
+ */
+public class GridEvaluator {
+    private static final int CHUNK_SIZE = 1 << 14;
+
+    private final CompiledExpression compiled;
+    private final int variableCount;
+    private final ForkJoinPool pool;
+
+    /**
+     * Constructs an evaluator that runs on the common ForkJoinPool.
+     *
+     * @param expression    the expression to evaluate
+     * @param variableOrder the variable names, in the order of the grid dimensions and input columns
+     */
+    public GridEvaluator(Expression expression, List<String> variableOrder) {
+        this(expression, variableOrder, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Constructs an evaluator that runs on the given ForkJoinPool.
+     *
+     * @param expression    the expression to evaluate
+     * @param variableOrder the variable names, in the order of the grid dimensions and input columns
+     * @param pool          the pool the evaluation tasks run on
+     */
+    public GridEvaluator(Expression expression, List<String> variableOrder, ForkJoinPool pool) {
+        this.compiled = new JitCompiler(variableOrder).compile(expression);
+        this.variableCount = variableOrder.size();
+        this.pool = pool;
+    }
+
+    /**
+     * Evaluates the expression at every point of a regular grid.
+     * Variable v takes the values start[v] + i * step[v] for i from 0 to counts[v] - 1. The points are
+     * written in row-major order, so the last variable changes fastest.
+     *
+     * @param start  the first value of every variable, in variable order
+     * @param step   the distance between consecutive values of every variable, in variable order
+     * @param counts the number of values of every variable, in variable order
+     * @param out    the array the results are written to; its length must be the number of grid points
+     * @throws Exception if the arrays do not match the variable order or the grid does not fit the output
+     */
+    public void evaluateGrid(double[] start, double[] step, int[] counts, double[] out) throws Exception {
+        if (start.length != variableCount || step.length != variableCount || counts.length != variableCount) {
+            throw new Exception("Grid needs one start, step and count per variable: " + variableCount);
+        }
+        long points = 1;
+        for (int count : counts) {
+            if (count < 0) {
+                throw new Exception("Negative grid count: " + count);
+            }
+            points *= count;
+            if (points > Integer.MAX_VALUE) {
+                throw new Exception("Grid too large for an array");
+            }
+        }
+        if (points != out.length) {
+            throw new Exception("Output length " + out.length + " does not match the " + points + " grid points");
+        }
+        if (points == 0) {
+            return;
+        }
+        pool.invoke(new GridTask(start, step, counts, out, 0, out.length));
+    }
+
+    /**
+     * Evaluates the expression at every row of the given columns.
+     *
+     * @param columns the values of every variable, one array per variable in variable order
+     * @param out     the array the results are written to; row i uses element i of every column
+     * @throws Exception if there is not one column per variable or a column is shorter than the output
+     */
+    public void evaluateColumns(double[][] columns, double[] out) throws Exception {
+        if (columns.length != variableCount) {
+            throw new Exception("Expected one column per variable: " + variableCount);
+        }
+        for (double[] column : columns) {
+            if (column.length < out.length) {
+                throw new Exception("Column too short for output of length " + out.length);
+            }
+        }
+        pool.invoke(new ColumnTask(columns, out, 0, out.length));
+    }
+
+    private double evaluatePoint(double[] values) {
+        try {
+            return compiled.evaluate(values);
+        } catch (Exception e) {
+            return Double.NaN;
+        }
+    }
+
+    /**
+     * Evaluates a range of grid points, splitting it in halves until it is no longer than a chunk.
+     */
+    private class GridTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final double[] start;
+        private final double[] step;
+        private final int[] counts;
+        private final double[] out;
+        private final int from;
+        private final int to;
+
+        private GridTask(double[] start, double[] step, int[] counts, double[] out, int from, int to) {
+            this.start = start;
+            this.step = step;
+            this.counts = counts;
+            this.out = out;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > CHUNK_SIZE) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new GridTask(start, step, counts, out, from, middle),
+                        new GridTask(start, step, counts, out, middle, to));
+                return;
+            }
+            int[] index = new int[variableCount];
+            double[] values = new double[variableCount];
+            int remainder = from;
+            for (int v = variableCount - 1; v >= 0; v--) {
+                index[v] = remainder % counts[v];
+                remainder /= counts[v];
+                values[v] = start[v] + index[v] * step[v];
+            }
+            for (int point = from; point < to; point++) {
+                out[point] = evaluatePoint(values);
+                for (int v = variableCount - 1; v >= 0; v--) {
+                    if (++index[v] < counts[v]) {
+                        values[v] = start[v] + index[v] * step[v];
+                        break;
+                    }
+                    index[v] = 0;
+                    values[v] = start[v];
+                }
+            }
+        }
+    }
+
+    /**
+     * Evaluates a range of column rows, splitting it in halves until it is no longer than a chunk.
+     */
+    private class ColumnTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final double[][] columns;
+        private final double[] out;
+        private final int from;
+        private final int to;
+
+        private ColumnTask(double[][] columns, double[] out, int from, int to) {
+            this.columns = columns;
+            this.out = out;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > CHUNK_SIZE) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new ColumnTask(columns, out, from, middle), new ColumnTask(columns, out, middle, to));
+                return;
+            }
+            double[] values = new double[variableCount];
+            for (int row = from; row < to; row++) {
+                for (int v = 0; v < variableCount; v++) {
+                    values[v] = columns[v][row];
+                }
+                out[row] = evaluatePoint(values);
+            }
+        }
+    }
+}
@@ -0,0 +1,286 @@
+package expressions.base;
+
+import expressions.binary.Minus;
+import expressions.binary.Plus;
+import expressions.elements.Var;
+import expressions.nary.Sum;
+import expressions.unary.Neg;
+import interfaces.CompiledExpression;
+import interfaces.Expression;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A class that compiles an expression tree into a generated hidden class with a single straight-line
+ * evaluate method, so the JVM can inline and register-allocate the whole formula instead of making
+ * one virtual call per node.
+ * Additions, subtractions, negations and sums are emitted as plain arithmetic instructions, other unary and
+ * binary nodes call their own evaluateSelf, and other n-ary nodes their combineSelf, from a monomorphic
+ * call site, and any other expression falls back to its interpreted compiled form.
+ * HotSpot never compiles a method of more than 8000 bytes of bytecode, so a formula that large would only
+ * ever run in the bytecode interpreter, which is slower than the compiled form of the tree; such formulas
+ * are returned in their compiled form instead.
+ */
+public class JitCompiler {
+    private static final String CLASS_NAME = "expressions/base/JitExpression";
+    private static final String NODES_FIELD = "nodes";
+    private static final String NODES_DESCRIPTOR = "[Ljava/lang/Object;";
+    private static final String BINARY_EXPRESSION = "expressions/base/BinaryExpression";
+    private static final String UNARY_EXPRESSION = "expressions/base/UnaryExpression";
+    private static final String NARY_EXPRESSION = "expressions/base/NaryExpression";
+    private static final String COMPILED_EXPRESSION = "interfaces/CompiledExpression";
+    private static final int HUGE_METHOD_LIMIT = 8000;
+
+    private static final int ALOAD_0 = 0x2a;
+    private static final int ALOAD_1 = 0x2b;
+    private static final int ICONST_0 = 0x03;
+    private static final int DCONST_0 = 0x0e;
+    private static final int DCONST_1 = 0x0f;
+    private static final int BIPUSH = 0x10;
+    private static final int SIPUSH = 0x11;
+    private static final int LDC_W = 0x13;
+    private static final int LDC2_W = 0x14;
+    private static final int DALOAD = 0x31;
+    private static final int AALOAD = 0x32;
+    private static final int DUP = 0x59;
+    private static final int DADD = 0x63;
+    private static final int DSUB = 0x67;
+    private static final int DNEG = 0x77;
+    private static final int DRETURN = 0xaf;
+    private static final int RETURN = 0xb1;
+    private static final int GETFIELD = 0xb4;
+    private static final int PUTFIELD = 0xb5;
+    private static final int INVOKEVIRTUAL = 0xb6;
+    private static final int INVOKESPECIAL = 0xb7;
+    private static final int INVOKEINTERFACE = 0xb9;
+    private static final int CHECKCAST = 0xc0;
+
+    private final List<String> variableOrder;
+
+    /**
+     * Constructs a JIT compiler for the given variable order.
+     *
+     * @param variableOrder the variable names, in the order their values appear in the evaluator's input
+     */
+    public JitCompiler(List<String> variableOrder) {
+        this.variableOrder = variableOrder;
+    }
+
+    /**
+     * Compiles the expression into a generated class.
+     * If the generated method would be too large for HotSpot to compile, or the class cannot be defined,
+     * the interpreted compiled form of the expression is returned instead.
+     *
+     * @param expression the expression to compile
+     * @return the compiled expression
+     */
+    public CompiledExpression compile(Expression expression) {
+        Emitter emitter = new Emitter();
+        emitter.emit(expression);
+        if (emitter.code.size() + 1 > HUGE_METHOD_LIMIT
+                || emitter.classFile.constantPoolSize() > ClassFile.MAX_CONSTANT_POOL_SIZE) {
+            return expression.compile(variableOrder);
+        }
+        try {
+            Class<?> generated = MethodHandles.lookup().defineHiddenClass(emitter.toByteArray(), true).lookupClass();
+            return (CompiledExpression) generated.getConstructor(Object[].class)
+                    .newInstance((Object) emitter.nodes.toArray());
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return expression.compile(variableOrder);
+        }
+    }
+
+    /**
+     * Emits the bytecode of the evaluate method while tracking the operand stack depth. Operators that call
+     * their node load it before their operands are visited, and apply their operation after them. N-ary nodes
+     * combine every operand after the first as soon as it is emitted, so they add from left to right.
+     */
+    private class Emitter implements Traversal.Visitor<Boolean> {
+        private final ClassFile classFile = new ClassFile(CLASS_NAME, "java/lang/Object", COMPILED_EXPRESSION);
+        private final ByteArrayOutputStream code = new ByteArrayOutputStream();
+        private final List<Object> nodes = new ArrayList<>();
+        private final List<Expression> operators = new ArrayList<>();
+        private final List<Integer> operandsEmitted = new ArrayList<>();
+        private int stack;
+        private int maxStack;
+
+        private void emit(Expression expression) {
+            Traversal.fold(expression, this);
+        }
+
+        @Override
+        public Boolean skip(Expression node) {
+            if (node.isConstant()) {
+                emitDouble(node.constantValue());
+                operandDone();
+                return true;
+            }
+            if (node instanceof Var && variableOrder.contains(((Var) node).getVariableName())) {
+                op(ALOAD_1, 1);
+                emitInt(variableOrder.indexOf(((Var) node).getVariableName()));
+                op(DALOAD, 0);
+                operandDone();
+                return true;
+            }
+            if (node instanceof BinaryExpression && !(node instanceof Plus || node instanceof Minus)) {
+                emitNode(node, BINARY_EXPRESSION);
+            } else if (node instanceof UnaryExpression && !(node instanceof Neg)) {
+                emitNode(node, UNARY_EXPRESSION);
+            } else if (node instanceof NaryExpression && !(node instanceof Sum)) {
+                emitNode(node, NARY_EXPRESSION);
+                for (int i = 2; i < ((NaryExpression) node).getOperands().size(); i++) {
+                    op(DUP, 1);
+                }
+            }
+            if (node instanceof BinaryExpression || node instanceof UnaryExpression
+                    || node instanceof NaryExpression) {
+                operators.add(node);
+                operandsEmitted.add(0);
+            }
+            return null;
+        }
+
+        @Override
+        public Boolean leaf(Expression leaf) {
+            emitFallback(leaf);
+            operandDone();
+            return true;
+        }
+
+        @Override
+        public Boolean binary(BinaryExpression binary, Boolean leftOperandResult, Boolean rightOperandResult) {
+            operatorDone();
+            if (binary instanceof Plus || binary instanceof Minus) {
+                op(binary instanceof Plus ? DADD : DSUB, -2);
+            } else {
+                op(INVOKEVIRTUAL, -3);
+                u2(classFile.methodRef(BINARY_EXPRESSION, "evaluateSelf", "(DD)D"));
+            }
+            operandDone();
+            return true;
+        }
+
+        @Override
+        public Boolean unary(UnaryExpression unary, Boolean operandResult) {
+            operatorDone();
+            if (unary instanceof Neg) {
+                op(DNEG, 0);
+            } else {
+                op(INVOKEVIRTUAL, -1);
+                u2(classFile.methodRef(UNARY_EXPRESSION, "evaluateSelf", "(D)D"));
+            }
+            operandDone();
+            return true;
+        }
+
+        @Override
+        public Boolean nary(NaryExpression nary, List<Boolean> operandResults) {
+            operatorDone();
+            operandDone();
+            return true;
+        }
+
+        private void operatorDone() {
+            operators.remove(operators.size() - 1);
+            operandsEmitted.remove(operandsEmitted.size() - 1);
+        }
+
+        /**
+         * Records that the value of a node is on the stack, and combines it into the value of the n-ary node it
+         * is an operand of, if it is not the first one.
+         */
+        private void operandDone() {
+            int last = operators.size() - 1;
+            if (last < 0 || !(operators.get(last) instanceof NaryExpression)) {
+                return;
+            }
+            int emitted = operandsEmitted.get(last) + 1;
+            operandsEmitted.set(last, emitted);
+            if (emitted == 1) {
+                return;
+            }
+            if (operators.get(last) instanceof Sum) {
+                op(DADD, -2);
+            } else {
+                op(INVOKEVIRTUAL, -3);
+                u2(classFile.methodRef(NARY_EXPRESSION, "combineSelf", "(DD)D"));
+            }
+        }
+
+        private void emitFallback(Expression expression) {
+            emitNode(expression.compile(variableOrder), COMPILED_EXPRESSION);
+            op(ALOAD_1, 1);
+            op(INVOKEINTERFACE, 0);
+            u2(classFile.interfaceMethodRef(COMPILED_EXPRESSION, "evaluate", "([D)D"));
+            code.write(2);
+            code.write(0);
+        }
+
+        private void emitNode(Object node, String type) {
+            op(ALOAD_0, 1);
+            op(GETFIELD, 0);
+            u2(classFile.fieldRef(CLASS_NAME, NODES_FIELD, NODES_DESCRIPTOR));
+            emitInt(nodes.size());
+            op(AALOAD, -1);
+            op(CHECKCAST, 0);
+            u2(classFile.classRef(type));
+            nodes.add(node);
+        }
+
+        private void emitDouble(double value) {
+            long bits = Double.doubleToRawLongBits(value);
+            if (bits == 0L) {
+                op(DCONST_0, 2);
+            } else if (bits == Double.doubleToRawLongBits(1.0)) {
+                op(DCONST_1, 2);
+            } else {
+                op(LDC2_W, 2);
+                u2(classFile.doubleConstant(value));
+            }
+        }
+
+        private void emitInt(int value) {
+            if (value <= 5) {
+                op(ICONST_0 + value, 1);
+            } else if (value <= Byte.MAX_VALUE) {
+                op(BIPUSH, 1);
+                code.write(value);
+            } else if (value <= Short.MAX_VALUE) {
+                op(SIPUSH, 1);
+                u2(value);
+            } else {
+                op(LDC_W, 1);
+                u2(classFile.integer(value));
+            }
+        }
+
+        private void op(int opcode, int stackChange) {
+            code.write(opcode);
+            stack += stackChange;
+            maxStack = Math.max(maxStack, stack);
+        }
+
+        private void u2(int value) {
+            code.write(value >>> 8);
+            code.write(value);
+        }
+
+        private byte[] toByteArray() {
+            code.write(DRETURN);
+            classFile.addField(0x0002 | 0x0010, NODES_FIELD, NODES_DESCRIPTOR);
+            int objectInit = classFile.methodRef("java/lang/Object", "<init>", "()V");
+            int nodesField = classFile.fieldRef(CLASS_NAME, NODES_FIELD, NODES_DESCRIPTOR);
+            byte[] constructor = {
+                    (byte) ALOAD_0, (byte) INVOKESPECIAL, (byte) (objectInit >>> 8), (byte) objectInit,
+                    (byte) ALOAD_0, (byte) ALOAD_1, (byte) PUTFIELD, (byte) (nodesField >>> 8), (byte) nodesField,
+                    (byte) RETURN
+            };
+            classFile.addMethod(0x0001, "<init>", "(" + NODES_DESCRIPTOR + ")V", 2, 2, constructor);
+            classFile.addMethod(0x0001, "evaluate", "([D)D", maxStack, 2, code.toByteArray());
+            return classFile.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package expressions.base;
+
+import interfaces.CompiledExpression;
+import interfaces.Expression;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A class that represents the derivative of an expression with respect to a variable without building it.
+ * Constructing a lazy derivative costs constant time. The derivative is built only when it is needed:
+ * expand() builds a single level, whose operands are lazy derivatives of the operands of the expression,
+ * so inspecting one branch never builds the others, and evaluation, printing, simplification and the other
+ * operations build the whole derivative tree once and reuse it.
+ * Subtrees that do not use the variable differentiate to zero at once, at every level.
+ * A lazy derivative is immutable: its two caches only ever hold the same deterministic result, so threads
+ * that race to fill them at worst build equal trees twice.
+ */
+public class LazyDerivative extends BaseExpression {
+    private final Expression expression;
+    private final String var;
+    private final int hash;
+    private volatile Expression expanded;
+    private volatile Expression derivative;
+
+    /**
+     * Constructs the lazy derivative of an expression with respect to a variable.
+     *
+     * @param expression the expression to differentiate
+     * @param var        the variable to differentiate by
+     */
+    public LazyDerivative(Expression expression, String var) {
+        this.expression = expression;
+        this.var = var;
+        this.hash = 31 * (31 * getClass().getName().hashCode() + expression.hashCode()) + var.hashCode();
+    }
+
+    /**
+     * Returns the derivative one level deep: the derivative rule of the root of the expression applied to
+     * lazy derivatives of its operands.
+     *
+     * @return the expanded derivative
+     */
+    public Expression expand() {
+        Expression result = expanded;
+        if (result == null) {
+            result = expandSelf();
+            expanded = result;
+        }
+        return result;
+    }
+
+    /**
+     * Returns the whole derivative tree, as differentiate builds it.
+     *
+     * @return the derivative
+     */
+    public Expression derivative() {
+        Expression result = derivative;
+        if (result == null) {
+            Expression source = expression instanceof LazyDerivative
+                    ? ((LazyDerivative) expression).derivative()
+                    : expression;
+            result = source.differentiate(var);
+            derivative = result;
+        }
+        return result;
+    }
+
+    /**
+     * Returns the expression that is differentiated.
+     *
+     * @return the expression
+     */
+    public Expression getExpression() {
+        return expression;
+    }
+
+    /**
+     * Returns the variable of differentiation.
+     *
+     * @return the name of the variable
+     */
+    public String getVar() {
+        return var;
+    }
+
+    /**
+     * Returns the derivative tree, which the walkers over the tree visit in place of the lazy derivative.
+     *
+     * @return the derivative
+     */
+    @Override
+    protected Expression resolvedSelf() {
+        return derivative();
+    }
+
+    /**
+     * Returns whether the given object is a lazy derivative of an equal expression by the same variable.
+     *
+     * @param other the object to compare with
+     * @return true if the lazy derivatives are equal
+     */
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (other == null || getClass() != other.getClass()) {
+            return false;
+        }
+        LazyDerivative that = (LazyDerivative) other;
+        return hash == that.hash && var.equals(that.var) && expression.equals(that.expression);
+    }
+
+    /**
+     * Returns the hash code of the lazy derivative, computed once on construction.
+     *
+     * @return the hash code
+     */
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    /**
+     * Returns the variables of the differentiated expression, which include every variable of the
+     * derivative, without building it.
+     *
+     * @return an unmodifiable sorted list of the variables of the expression
+     */
+    @Override
+    public List<String> getVariables() {
+        return expression.getVariables();
+    }
+
+    /**
+     * Evaluates the derivative with the given variable assignments.
+     *
+     * @param assignment a map of variable assignments
+     * @return the result of the evaluation
+     * @throws Exception if an error occurs during evaluation
+     */
+    @Override
+    public double evaluate(Map<String, Double> assignment) throws Exception {
+        return derivative().evaluate(assignment);
+    }
+
+    /**
+     * Evaluates the derivative without a variable assignments.
+     *
+     * @return the result of the evaluation
+     * @throws Exception if an error occurs during evaluation
+     */
+    @Override
+    public double evaluate() throws Exception {
+        return derivative().evaluate();
+    }
+
+    /**
+     * Evaluates the derivative and its directional derivative together.
+     *
+     * @param assignment a map of variable assignments
+     * @param direction  the derivative of each variable along the direction
+     * @param derivative a one-element array the directional derivative is written to
+     * @return the result of the evaluation
+     * @throws Exception if an error occurs during evaluation
+     */
+    @Override
+    public double evaluateDual(Map<String, Double> assignment, Map<String, Double> direction, double[] derivative)
+            throws Exception {
+        return derivative().evaluateDual(assignment, direction, derivative);
+    }
+
+    /**
+     * Assigns a new expression to a variable within the derivative.
+     *
+     * @param var        the variable to assign the expression to
+     * @param expression the expression to assign
+     * @return the derivative with the assigned variable
+     */
+    @Override
+    public Expression assign(String var, Expression expression) {
+        return derivative().assign(var, expression);
+    }
+
+    /**
+     * Returns the lazy derivative of the derivative, without building either.
+     *
+     * @param var the variable to differentiate by
+     * @return the lazy second derivative
+     */
+    @Override
+    public Expression differentiate(String var) {
+        return new LazyDerivative(this, var);
+    }
+
+    /**
+     * Simplifies the derivative.
+     *
+     * @return the simplified derivative
+     */
+    @Override
+    public Expression simplify() {
+        return derivative().simplify();
+    }
+
+    /**
+     * Compiles the derivative into an evaluator over a primitive array of variable values.
+     *
+     * @param variableOrder the variable names, in the order their values appear in the evaluator's input
+     * @return the compiled derivative
+     */
+    @Override
+    public CompiledExpression compile(List<String> variableOrder) {
+        return derivative().compile(variableOrder);
+    }
+
+    /**
+     * Evaluates the derivative over columns of variable values.
+     *
+     * @param columns the values of each variable, one array per variable
+     * @param out     the array the results are written to, one value per row
+     * @throws Exception if a variable has no column or its column is too short
+     */
+    @Override
+    public void evaluateBatch(Map<String, double[]> columns, double[] out) throws Exception {
+        derivative().evaluateBatch(columns, out);
+    }
+
+    private Expression expandSelf() {
+        if (!dependsOn(expression, var)) {
+            return ZERO;
+        }
+        if (expression instanceof BinaryExpression) {
+            BinaryExpression binary = (BinaryExpression) expression;
+            return binary.differentiateSelf(new LazyDerivative(binary.getLeftOperand(), var),
+                    new LazyDerivative(binary.getRightOperand(), var));
+        }
+        if (expression instanceof UnaryExpression) {
+            UnaryExpression unary = (UnaryExpression) expression;
+            return unary.differentiateSelf(new LazyDerivative(unary.getOperand(), var));
+        }
+        if (expression instanceof NaryExpression) {
+            NaryExpression nary = (NaryExpression) expression;
+            List<Expression> operandDerivatives = new ArrayList<>(nary.getOperands().size());
+            for (Expression operand : nary.getOperands()) {
+                operandDerivatives.add(new LazyDerivative(operand, var));
+            }
+            return nary.differentiateSelf(operandDerivatives);
+        }
+        if (expression instanceof LazyDerivative) {
+            return new LazyDerivative(((LazyDerivative) expression).expand(), var).expand();
+        }
+        return expression.differentiate(var);
+    }
+}
@@ -0,0 +1,265 @@
+package expressions.base;
+
+import interfaces.CompiledExpression;
+import interfaces.Expression;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An abstract class that represents an associative operation over any number of operands, such as a sum
+ * of many terms, that extends the BaseExpression class.
+ * The operands are held in one array, so a long sum is a single shallow node instead of a deep chain of
+ * binary nodes. Like binary expressions, n-ary expressions are immutable, cache their hash code and
+ * variable list, and compare structurally, operand order included.
+ */
+public abstract class NaryExpression extends BaseExpression {
+    private static final int SORT_PREFIX_LENGTH = 64;
+
+    private final Expression[] operands;
+    private final List<Expression> operandList;
+    private final int hash;
+    private final List<String> variables;
+
+    /**
+     * Constructs an n-ary expression with the given operands.
+     *
+     * @param operands the operands, at least two
+     */
+    public NaryExpression(List<Expression> operands) {
+        if (operands.size() < 2) {
+            throw new IllegalArgumentException("An n-ary expression needs at least two operands: " + operands);
+        }
+        this.operands = operands.toArray(new Expression[0]);
+        this.operandList = Collections.unmodifiableList(Arrays.asList(this.operands));
+        int hash = getClass().getName().hashCode();
+        List<String> variables = Collections.emptyList();
+        for (Expression operand : this.operands) {
+            hash = 31 * hash + operand.hashCode();
+            variables = mergeVariables(variables, operand.getVariables());
+        }
+        this.hash = hash;
+        this.variables = variables;
+    }
+
+    /**
+     * Returns whether the given object is an n-ary expression of the same type with equal operands in the
+     * same order.
+     *
+     * @param other the object to compare with
+     * @return true if the expressions are structurally equal
+     */
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (other == null || getClass() != other.getClass()) {
+            return false;
+        }
+        NaryExpression that = (NaryExpression) other;
+        return hash == that.hash && Traversal.equal(this, that);
+    }
+
+    /**
+     * Returns the structural hash code of the n-ary expression, computed once on construction.
+     *
+     * @return the hash code
+     */
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    /**
+     * Returns the variables used in the n-ary expression.
+     * The list is built once when the expression is constructed and shared, not copied, on every call.
+     *
+     * @return an unmodifiable sorted list of the distinct variable names used in the expression
+     */
+    @Override
+    public List<String> getVariables() {
+        return variables;
+    }
+
+    /**
+     * Evaluates the n-ary expression with the given variable assignments, combining the operands from left
+     * to right.
+     *
+     * @param assignment a map of variable assignments
+     * @return the result of the evaluation
+     * @throws Exception if an error occurs during evaluation
+     */
+    @Override
+    public double evaluate(Map<String, Double> assignment) throws Exception {
+        return Traversal.evaluate(this, assignment);
+    }
+
+    /**
+     * Evaluates the n-ary expression without a variable assignments.
+     *
+     * @return the result of the evaluation
+     * @throws Exception if an error occurs during evaluation
+     */
+    @Override
+    public double evaluate() throws Exception {
+        return Traversal.evaluate(this, null);
+    }
+
+    /**
+     * Evaluates the n-ary expression and its directional derivative together.
+     *
+     * @param assignment a map of variable assignments
+     * @param direction  the derivative of each variable along the direction
+     * @param derivative a one-element array the directional derivative is written to
+     * @return the result of the evaluation
+     * @throws Exception if an error occurs during evaluation
+     */
+    @Override
+    public double evaluateDual(Map<String, Double> assignment, Map<String, Double> direction, double[] derivative)
+            throws Exception {
+        return Traversal.evaluateDual(this, assignment, direction, derivative);
+    }
+
+    /**
+     * Assigns a new expression to a variable within every operand of the n-ary expression.
+     *
+     * @param var        the variable to assign the expression to
+     * @param expression the expression to assign
+     * @return a new expression with the assigned variable
+     */
+    @Override
+    public final Expression assign(String var, Expression expression) {
+        return Traversal.fold(this, new Traversal.Assignment(var, expression));
+    }
+
+    /**
+     * Computes the derivative of the n-ary expression with respect to a variable,
+     * from the derivatives of its operands.
+     * Subtrees that do not use the variable differentiate to a shared zero without being visited.
+     *
+     * @param var the variable to differentiate by
+     * @return the derivative expression
+     */
+    @Override
+    public final Expression differentiate(String var) {
+        return Traversal.fold(this, new Traversal.Differentiation(var));
+    }
+
+    /**
+     * Simplifies the n-ary expression bottom-up: every operand is simplified once,
+     * then the expression's own rules are applied to the simplified operands.
+     *
+     * @return the simplified expression
+     */
+    @Override
+    public final Expression simplify() {
+        return Traversal.fold(this, Traversal.SIMPLIFY);
+    }
+
+    /**
+     * Compiles the n-ary expression into an evaluator over a primitive array of variable values.
+     *
+     * @param variableOrder the variable names, in the order their values appear in the evaluator's input
+     * @return the compiled expression
+     */
+    @Override
+    public CompiledExpression compile(List<String> variableOrder) {
+        return Traversal.compile(this, variableOrder);
+    }
+
+    /**
+     * Evaluates the n-ary expression over columns of variable values, accumulating one operand column
+     * at a time into the output. Rows where any operator of the tree fails are set to NaN.
+     *
+     * @param columns the values of each variable, one array per variable
+     * @param out     the array the results are written to, one value per row
+     * @throws Exception if a variable has no column or its column is too short
+     */
+    @Override
+    public void evaluateBatch(Map<String, double[]> columns, double[] out) throws Exception {
+        Traversal.evaluateBatch(this, columns, out);
+    }
+
+    /**
+     * Returns the operands of the expression.
+     *
+     * @return an unmodifiable list of the operands, in order
+     */
+    public List<Expression> getOperands() {
+        return operandList;
+    }
+
+    /**
+     * Sorts operands into the canonical order of simplified n-ary expressions, by their text.
+     * Operands are compared by the first characters of their text, and printed in full only when those are
+     * equal, so sorting the operands of deep subtrees does not print them whole at every level.
+     *
+     * @param operands the operands to sort in place
+     */
+    protected static void sortCanonically(List<Expression> operands) {
+        String[] prefixes = new String[operands.size()];
+        String[] keys = new String[operands.size()];
+        Integer[] order = new Integer[operands.size()];
+        for (int i = 0; i < prefixes.length; i++) {
+            prefixes[i] = Traversal.prefix(operands.get(i), SORT_PREFIX_LENGTH);
+            order[i] = i;
+        }
+        Arrays.sort(order, (first, second) -> {
+            int comparison = prefixes[first].compareTo(prefixes[second]);
+            if (comparison != 0 || prefixes[first].length() < SORT_PREFIX_LENGTH) {
+                return comparison;
+            }
+            if (keys[first] == null) {
+                keys[first] = operands.get(first).toString();
+            }
+            if (keys[second] == null) {
+                keys[second] = operands.get(second).toString();
+            }
+            return keys[first].compareTo(keys[second]);
+        });
+        Expression[] sorted = new Expression[order.length];
+        for (int i = 0; i < order.length; i++) {
+            sorted[i] = operands.get(order[i]);
+        }
+        for (int i = 0; i < sorted.length; i++) {
+            operands.set(i, sorted[i]);
+        }
+    }
+
+    /**
+     * Returns the estimated cost of combining the operands, one arithmetic operation per operand after
+     * the first.
+     *
+     * @return the estimated cost of the operator
+     */
+    @Override
+    protected int costSelf() {
+        return (operands.length - 1) * COST_ARITHMETIC;
+    }
+
+    /**
+     * Returns the text toString prints between the operands.
+     *
+     * @return the operator text
+     */
+    protected abstract String operatorSelf();
+
+    protected abstract double combineSelf(double accumulated, double operand);
+
+    /**
+     * Computes the partial derivative of the expression with respect to every operand.
+     *
+     * @param operandValues the values of the operands
+     * @param partials      the array the partial derivatives are written to, one per operand
+     */
+    protected abstract void partialsSelf(double[] operandValues, double[] partials);
+
+    protected abstract Expression assignSelf(List<Expression> operands);
+
+    protected abstract Expression differentiateSelf(List<Expression> operandDerivatives);
+
+    protected abstract Expression simplifySelf(List<Expression> operandsSimple);
+}
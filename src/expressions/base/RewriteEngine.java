@@ -0,0 +1,299 @@
+package expressions.base;
+
+import expressions.binary.Div;
+import expressions.binary.Log;
+import expressions.binary.Minus;
+import expressions.binary.Mult;
+import expressions.binary.Plus;
+import expressions.binary.Pow;
+import expressions.elements.Num;
+import expressions.elements.Var;
+import expressions.unary.Cos;
+import expressions.unary.Neg;
+import expressions.unary.Sin;
+import interfaces.Expression;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A class that simplifies expressions with a table of algebraic rewrite rules on top of simplify.
+ * The rules are indexed by the class of their root, so each node is only tried against the rules that can
+ * match it. The tree is rewritten bottom-up: every node is first simplified by its own class, then the rules
+ * for its class are applied until none makes it cheaper, and the replacements are rewritten in turn.
+ * A rewrite is kept only if it lowers the estimated evaluation cost of the subtree, the sum of the costs of
+ * its operators, so rewriting always terminates. Subtrees shared by reference are rewritten once, and whole
+ * passes are repeated while rules still apply. Since a cheaper subtree can keep its parent from
+ * simplifying as far, such as a factored sum whose terms no longer cancel with their neighbours, the result
+ * is compared with the plain simplified expression, and the cheaper of the two is returned.
+ * Like simplify, rules such as x / x = 1 assume the expression is defined; a rewritten expression can have
+ * a value where the original fails. An engine is immutable and safe to share between threads.
+ */
+public class RewriteEngine {
+    private static final int MAX_PASSES = 4;
+    private static final int MAX_NESTING = 32;
+    private static final RewriteEngine STANDARD = new RewriteEngine(standardRules());
+
+    private final List<RewriteRule> rules;
+    private final Map<Class<?>, List<RewriteRule>> rulesByRoot = new HashMap<>();
+
+    /**
+     * Constructs an engine with the given rules.
+     *
+     * @param rules the rewrite rules, tried in order
+     */
+    public RewriteEngine(List<RewriteRule> rules) {
+        this.rules = Collections.unmodifiableList(new ArrayList<>(rules));
+        for (RewriteRule rule : rules) {
+            rulesByRoot.computeIfAbsent(rule.getPattern().getClass(), root -> new ArrayList<>()).add(rule);
+            if (rule.flatClass() != null) {
+                rulesByRoot.computeIfAbsent(rule.flatClass(), root -> new ArrayList<>()).add(rule);
+            }
+        }
+    }
+
+    /**
+     * Returns the engine with the standard rules.
+     *
+     * @return the standard engine
+     */
+    public static RewriteEngine standard() {
+        return STANDARD;
+    }
+
+    /**
+     * Returns the standard rules: trigonometric and logarithmic identities, laws of exponents, cancelling
+     * negations, and factoring of common factors and denominators.
+     *
+     * @return a new list of the standard rules
+     */
+    public static List<RewriteRule> standardRules() {
+        Expression a = new Var("a");
+        Expression b = new Var("b");
+        Expression c = new Var("c");
+        Expression x = new Var("x");
+        Expression y = new Var("y");
+        Expression one = new Num(1);
+        Expression two = new Num(2);
+        List<RewriteRule> rules = new ArrayList<>();
+        rules.add(new RewriteRule("sin(a)^2 + cos(a)^2 = 1",
+                new Plus(new Pow(new Sin(a), two), new Pow(new Cos(a), two)), one));
+        rules.add(new RewriteRule("cos(a)^2 - sin(a)^2 = cos(2 * a)",
+                new Minus(new Pow(new Cos(a), two), new Pow(new Sin(a), two)), new Cos(new Mult(two, a))));
+        rules.add(new RewriteRule("cos(-a) = cos(a)", new Cos(new Neg(a)), new Cos(a)));
+        rules.add(new RewriteRule("log(b, b^x) = x", new Log(b, new Pow(b, x)), x));
+        rules.add(new RewriteRule("b^log(b, x) = x", new Pow(b, new Log(b, x)), x));
+        rules.add(new RewriteRule("log(b, x) + log(b, y) = log(b, x * y)",
+                new Plus(new Log(b, x), new Log(b, y)), new Log(b, new Mult(x, y))));
+        rules.add(new RewriteRule("log(b, x) - log(b, y) = log(b, x / y)",
+                new Minus(new Log(b, x), new Log(b, y)), new Log(b, new Div(x, y))));
+        rules.add(new RewriteRule("x^a * x^b = x^(a + b)",
+                new Mult(new Pow(x, a), new Pow(x, b)), new Pow(x, new Plus(a, b))));
+        rules.add(new RewriteRule("x * x^a = x^(a + 1)", new Mult(x, new Pow(x, a)), new Pow(x, new Plus(a, one))));
+        rules.add(new RewriteRule("x^a / x^b = x^(a - b)",
+                new Div(new Pow(x, a), new Pow(x, b)), new Pow(x, new Minus(a, b))));
+        rules.add(new RewriteRule("x^a / x = x^(a - 1)", new Div(new Pow(x, a), x), new Pow(x, new Minus(a, one))));
+        rules.add(new RewriteRule("a * b / b = a", new Div(new Mult(a, b), b), a));
+        rules.add(new RewriteRule("-(-a) = a", new Neg(new Neg(a)), a));
+        rules.add(new RewriteRule("-a * -b = a * b", new Mult(new Neg(a), new Neg(b)), new Mult(a, b)));
+        rules.add(new RewriteRule("-a / -b = a / b", new Div(new Neg(a), new Neg(b)), new Div(a, b)));
+        rules.add(new RewriteRule("a + -b = a - b", new Plus(a, new Neg(b)), new Minus(a, b)));
+        rules.add(new RewriteRule("a * b + a * c = a * (b + c)",
+                new Plus(new Mult(a, b), new Mult(a, c)), new Mult(a, new Plus(b, c))));
+        rules.add(new RewriteRule("a / c + b / c = (a + b) / c",
+                new Plus(new Div(a, c), new Div(b, c)), new Div(new Plus(a, b), c)));
+        return rules;
+    }
+
+    /**
+     * Returns the rules of the engine.
+     *
+     * @return an unmodifiable list of the rules, in the order they are tried
+     */
+    public List<RewriteRule> getRules() {
+        return rules;
+    }
+
+    /**
+     * Simplifies an expression and rewrites it with the rules of the engine until no rule applies.
+     *
+     * @param expression the expression to rewrite
+     * @return an equivalent expression that is no more expensive to evaluate than the simplified one
+     */
+    public Expression rewrite(Expression expression) {
+        Run run = new Run();
+        Expression current = run.rewrite(expression);
+        if (!run.applied) {
+            return current;
+        }
+        for (int pass = 1; pass < MAX_PASSES; pass++) {
+            run = new Run();
+            Expression next = run.rewrite(current);
+            if (!run.applied || next.equals(current)) {
+                break;
+            }
+            current = next;
+        }
+        Expression simplified = expression.simplify();
+        return cost(current) <= cost(simplified) ? current : simplified;
+    }
+
+    /**
+     * Returns the estimated cost of evaluating an expression: the sum of the costs of its operators, with
+     * subtrees counted every time they occur, as evaluate visits them.
+     *
+     * @param expression the expression
+     * @return the estimated cost, Long.MAX_VALUE if it overflows
+     */
+    public static long cost(Expression expression) {
+        return Traversal.fold(expression, new CostVisitor());
+    }
+
+    private static long add(long first, long second) {
+        long sum = first + second;
+        return sum < 0 ? Long.MAX_VALUE : sum;
+    }
+
+    /**
+     * The state of one rewriting pass: the rewritten form and the cost of every node seen so far.
+     */
+    private class Run implements Traversal.Visitor<Expression> {
+        private final Map<Expression, Expression> rewritten = new IdentityHashMap<>();
+        private final CostVisitor costs = new CostVisitor();
+        private int nesting;
+        private boolean applied;
+
+        private Expression rewrite(Expression expression) {
+            return Traversal.fold(expression, this);
+        }
+
+        @Override
+        public Expression skip(Expression node) {
+            return rewritten.get(node);
+        }
+
+        @Override
+        public Expression leaf(Expression leaf) {
+            Expression result;
+            Expression resolved = Traversal.resolve(leaf);
+            if (resolved != leaf) {
+                result = rewrite(resolved);
+            } else {
+                result = settle(leaf.simplify());
+            }
+            return remember(leaf, result);
+        }
+
+        @Override
+        public Expression binary(BinaryExpression binary, Expression leftOperandResult,
+                                 Expression rightOperandResult) {
+            return remember(binary, settle(binary.simplifySelf(leftOperandResult, rightOperandResult)));
+        }
+
+        @Override
+        public Expression unary(UnaryExpression unary, Expression operandResult) {
+            return remember(unary, settle(unary.simplifySelf(operandResult)));
+        }
+
+        @Override
+        public Expression nary(NaryExpression nary, List<Expression> operandResults) {
+            return remember(nary, settle(nary.simplifySelf(operandResults)));
+        }
+
+        private Expression remember(Expression node, Expression result) {
+            rewritten.put(node, result);
+            rewritten.put(result, result);
+            return result;
+        }
+
+        /**
+         * Applies the rules for the class of a node with rewritten operands, as long as one makes it cheaper.
+         */
+        private Expression settle(Expression node) {
+            if (nesting == MAX_NESTING) {
+                return node;
+            }
+            nesting++;
+            try {
+                boolean changed = true;
+                while (changed) {
+                    changed = false;
+                    List<RewriteRule> candidates = rulesByRoot.get(node.getClass());
+                    if (candidates == null) {
+                        break;
+                    }
+                    long nodeCost = Traversal.fold(node, costs);
+                    for (RewriteRule rule : candidates) {
+                        Expression candidate = rule.apply(node);
+                        if (candidate == null) {
+                            continue;
+                        }
+                        candidate = rewrite(candidate);
+                        if (Traversal.fold(candidate, costs) < nodeCost) {
+                            node = candidate;
+                            changed = true;
+                            applied = true;
+                            break;
+                        }
+                    }
+                }
+                return node;
+            } finally {
+                nesting--;
+            }
+        }
+    }
+
+    /**
+     * Sums the costs of the operators of a tree, remembering the cost of every node it has seen.
+     */
+    private static class CostVisitor implements Traversal.Visitor<Long> {
+        private final Map<Expression, Long> costs = new IdentityHashMap<>();
+
+        @Override
+        public Long skip(Expression node) {
+            return costs.get(node);
+        }
+
+        @Override
+        public Long leaf(Expression leaf) {
+            long cost = 0;
+            Expression resolved = Traversal.resolve(leaf);
+            if (resolved != leaf) {
+                cost = Traversal.fold(resolved, this);
+            } else if (leaf instanceof BaseExpression) {
+                cost = ((BaseExpression) leaf).costSelf();
+            }
+            costs.put(leaf, cost);
+            return cost;
+        }
+
+        @Override
+        public Long binary(BinaryExpression binary, Long leftOperandResult, Long rightOperandResult) {
+            long cost = add(add(leftOperandResult, rightOperandResult), binary.costSelf());
+            costs.put(binary, cost);
+            return cost;
+        }
+
+        @Override
+        public Long unary(UnaryExpression unary, Long operandResult) {
+            long cost = add(operandResult, unary.costSelf());
+            costs.put(unary, cost);
+            return cost;
+        }
+
+        @Override
+        public Long nary(NaryExpression nary, List<Long> operandResults) {
+            long cost = nary.costSelf();
+            for (long operandResult : operandResults) {
+                cost = add(cost, operandResult);
+            }
+            costs.put(nary, cost);
+            return cost;
+        }
+    }
+}
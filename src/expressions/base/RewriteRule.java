@@ -0,0 +1,213 @@
+package expressions.base;
+
+import expressions.binary.Mult;
+import expressions.binary.Plus;
+import expressions.elements.Var;
+import expressions.nary.Product;
+import expressions.nary.Sum;
+import interfaces.Expression;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A class that represents an algebraic identity the rewrite engine applies, from a pattern to a replacement.
+ * Patterns are ordinary expressions: every variable of a pattern is a placeholder that matches any subtree,
+ * and a placeholder used twice must match equal subtrees; a number matches an equal constant; and any other
+ * node matches a node of the same class whose operands match. Additions and multiplications also match
+ * with their operands swapped, and match any two terms of a sum or factors of a product, whose other
+ * operands are kept next to the replacement.
+ */
+public final class RewriteRule {
+    private final String name;
+    private final Expression pattern;
+    private final Expression replacement;
+
+    /**
+     * Constructs a rewrite rule.
+     *
+     * @param name        the name of the rule, such as "x^a * x^b = x^(a + b)"
+     * @param pattern     the operator expression the rule matches
+     * @param replacement the expression a match is replaced by, using only placeholders of the pattern
+     */
+    public RewriteRule(String name, Expression pattern, Expression replacement) {
+        if (!(pattern instanceof BaseExpression)) {
+            throw new IllegalArgumentException("A rewrite pattern must be an operator: " + pattern);
+        }
+        if (!pattern.getVariables().containsAll(replacement.getVariables())) {
+            throw new IllegalArgumentException("The replacement of " + name
+                    + " uses placeholders the pattern does not bind");
+        }
+        this.name = name;
+        this.pattern = pattern;
+        this.replacement = replacement;
+    }
+
+    /**
+     * Returns the name of the rule.
+     *
+     * @return the name of the rule
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the pattern of the rule.
+     *
+     * @return the pattern
+     */
+    public Expression getPattern() {
+        return pattern;
+    }
+
+    /**
+     * Returns the replacement of the rule.
+     *
+     * @return the replacement
+     */
+    public Expression getReplacement() {
+        return replacement;
+    }
+
+    /**
+     * Returns the name of the rule.
+     *
+     * @return the name of the rule
+     */
+    @Override
+    public String toString() {
+        return name;
+    }
+
+    /**
+     * Returns the class of the flat n-ary node whose operands the pattern can also match two at a time.
+     *
+     * @return the sum or product class, or null if the pattern is neither an addition nor a multiplication
+     */
+    Class<? extends Expression> flatClass() {
+        if (pattern instanceof Plus) {
+            return Sum.class;
+        }
+        if (pattern instanceof Mult) {
+            return Product.class;
+        }
+        return null;
+    }
+
+    /**
+     * Applies the rule at the root of an expression.
+     *
+     * @param subject the expression to rewrite
+     * @return the rewritten expression, or null if the pattern does not match
+     */
+    Expression apply(Expression subject) {
+        Map<String, Expression> bindings = new HashMap<>();
+        if (match(pattern, subject, bindings)) {
+            return substitute(replacement, bindings);
+        }
+        if (subject.getClass() != flatClass()) {
+            return null;
+        }
+        BinaryExpression binary = (BinaryExpression) pattern;
+        NaryExpression nary = (NaryExpression) subject;
+        List<Expression> operands = nary.getOperands();
+        for (int i = 0; i < operands.size(); i++) {
+            bindings.clear();
+            if (!match(binary.getLeftOperand(), operands.get(i), bindings)) {
+                continue;
+            }
+            Map<String, Expression> leftBindings = new HashMap<>(bindings);
+            for (int j = 0; j < operands.size(); j++) {
+                if (j == i) {
+                    continue;
+                }
+                if (match(binary.getRightOperand(), operands.get(j), bindings)) {
+                    List<Expression> rest = new ArrayList<>(operands.size() - 1);
+                    for (int k = 0; k < operands.size(); k++) {
+                        if (k != i && k != j) {
+                            rest.add(operands.get(k));
+                        }
+                    }
+                    rest.add(substitute(replacement, bindings));
+                    return nary.simplifySelf(rest);
+                }
+                bindings.clear();
+                bindings.putAll(leftBindings);
+            }
+        }
+        return null;
+    }
+
+    private static boolean match(Expression pattern, Expression subject, Map<String, Expression> bindings) {
+        if (pattern instanceof Var) {
+            Expression bound = bindings.putIfAbsent(((Var) pattern).getVariableName(), subject);
+            return bound == null || bound.equals(subject);
+        }
+        if (pattern.isConstant()) {
+            return subject.isConstant() && Double.compare(pattern.constantValue(), subject.constantValue()) == 0;
+        }
+        if (pattern.getClass() != subject.getClass()) {
+            return false;
+        }
+        if (pattern instanceof BinaryExpression) {
+            BinaryExpression binaryPattern = (BinaryExpression) pattern;
+            BinaryExpression binary = (BinaryExpression) subject;
+            Map<String, Expression> before = new HashMap<>(bindings);
+            if (match(binaryPattern.getLeftOperand(), binary.getLeftOperand(), bindings)
+                    && match(binaryPattern.getRightOperand(), binary.getRightOperand(), bindings)) {
+                return true;
+            }
+            if (!(pattern instanceof Plus) && !(pattern instanceof Mult)) {
+                return false;
+            }
+            bindings.clear();
+            bindings.putAll(before);
+            return match(binaryPattern.getLeftOperand(), binary.getRightOperand(), bindings)
+                    && match(binaryPattern.getRightOperand(), binary.getLeftOperand(), bindings);
+        }
+        if (pattern instanceof UnaryExpression) {
+            return match(((UnaryExpression) pattern).getOperand(), ((UnaryExpression) subject).getOperand(), bindings);
+        }
+        if (pattern instanceof NaryExpression) {
+            List<Expression> patternOperands = ((NaryExpression) pattern).getOperands();
+            List<Expression> operands = ((NaryExpression) subject).getOperands();
+            if (patternOperands.size() != operands.size()) {
+                return false;
+            }
+            for (int i = 0; i < operands.size(); i++) {
+                if (!match(patternOperands.get(i), operands.get(i), bindings)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return pattern.equals(subject);
+    }
+
+    private static Expression substitute(Expression replacement, Map<String, Expression> bindings) {
+        if (replacement instanceof Var) {
+            return bindings.get(((Var) replacement).getVariableName());
+        }
+        if (replacement instanceof BinaryExpression) {
+            BinaryExpression binary = (BinaryExpression) replacement;
+            return binary.assignSelf(substitute(binary.getLeftOperand(), bindings),
+                    substitute(binary.getRightOperand(), bindings));
+        }
+        if (replacement instanceof UnaryExpression) {
+            UnaryExpression unary = (UnaryExpression) replacement;
+            return unary.assignSelf(substitute(unary.getOperand(), bindings));
+        }
+        if (replacement instanceof NaryExpression) {
+            NaryExpression nary = (NaryExpression) replacement;
+            List<Expression> operands = new ArrayList<>(nary.getOperands().size());
+            for (Expression operand : nary.getOperands()) {
+                operands.add(substitute(operand, bindings));
+            }
+            return nary.assignSelf(operands);
+        }
+        return replacement;
+    }
+}
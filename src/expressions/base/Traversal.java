@@ -0,0 +1,991 @@
+package expressions.base;
+
+import expressions.elements.Num;
+import interfaces.CompiledExpression;
+import interfaces.Expression;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A class that walks expression trees without letting their depth overflow the call stack.
+ * Every walk recurses while the tree is shallow, which the JIT inlines best, and continue with
+ * explicit stacks below a fixed depth, so the depth of a tree is limited only by the heap.
+ * Operators are visited in post-order with their left operand first, the same order the recursive
+ * implementations used, so results and the first evaluation error are unchanged.
+ * The operands of n-ary expressions are walked on the same stacks, so a chain that alternates n-ary and
+ * binary nodes is as deep as any other. Other nodes are treated as leaves and handled by their own methods.
+ */
+final class Traversal {
+    private static final int INITIAL_DEPTH = 32;
+    private static final int MAX_RECURSION_DEPTH = 512;
+
+    /**
+     * Simplifies every operator node from its simplified operands.
+     */
+    static final Visitor<Expression> SIMPLIFY = new Visitor<Expression>() {
+        @Override
+        public Expression skip(Expression node) {
+            return null;
+        }
+
+        @Override
+        public Expression leaf(Expression leaf) {
+            return leaf.simplify();
+        }
+
+        @Override
+        public Expression binary(BinaryExpression binary, Expression leftOperandSimple,
+                                 Expression rightOperandSimple) {
+            return binary.simplifySelf(leftOperandSimple, rightOperandSimple);
+        }
+
+        @Override
+        public Expression unary(UnaryExpression unary, Expression operandSimple) {
+            return unary.simplifySelf(operandSimple);
+        }
+
+        @Override
+        public Expression nary(NaryExpression nary, List<Expression> operandsSimple) {
+            return nary.simplifySelf(operandsSimple);
+        }
+    };
+
+    private Traversal() {
+    }
+
+    /**
+     * Combines the results of the operands of every operator node into the result of the node.
+     *
+     * @param <T> the type of the results
+     */
+    interface Visitor<T> {
+        /**
+         * Returns the result of a node without visiting its operands, or null to visit them.
+         *
+         * @param node the node about to be visited
+         * @return the result of the node, or null
+         */
+        T skip(Expression node);
+
+        T leaf(Expression leaf);
+
+        T binary(BinaryExpression binary, T leftOperandResult, T rightOperandResult);
+
+        T unary(UnaryExpression unary, T operandResult);
+
+        /**
+         * Combines the results of the operands of an n-ary node.
+         *
+         * @param nary           the n-ary node
+         * @param operandResults the results of its operands, in order, in a list the visitor may keep
+         * @return the result of the node
+         */
+        T nary(NaryExpression nary, List<T> operandResults);
+    }
+
+    /**
+     * Folds a tree bottom-up with a visitor.
+     *
+     * @param root    the root of the tree
+     * @param visitor the visitor combining the results
+     * @param <T>     the type of the results
+     * @return the result of the root
+     */
+    static <T> T fold(Expression root, Visitor<T> visitor) {
+        return fold(root, visitor, 0);
+    }
+
+    private static <T> T fold(Expression node, Visitor<T> visitor, int depth) {
+        if (depth == MAX_RECURSION_DEPTH) {
+            return foldIteratively(node, visitor);
+        }
+        T skipped = visitor.skip(node);
+        if (skipped != null) {
+            return skipped;
+        }
+        if (node instanceof BinaryExpression) {
+            BinaryExpression binary = (BinaryExpression) node;
+            T leftOperandResult = fold(binary.getLeftOperand(), visitor, depth + 1);
+            T rightOperandResult = fold(binary.getRightOperand(), visitor, depth + 1);
+            return visitor.binary(binary, leftOperandResult, rightOperandResult);
+        }
+        if (node instanceof UnaryExpression) {
+            UnaryExpression unary = (UnaryExpression) node;
+            return visitor.unary(unary, fold(unary.getOperand(), visitor, depth + 1));
+        }
+        if (node instanceof NaryExpression) {
+            NaryExpression nary = (NaryExpression) node;
+            List<T> operandResults = new ArrayList<>(nary.getOperands().size());
+            for (Expression operand : nary.getOperands()) {
+                operandResults.add(fold(operand, visitor, depth + 1));
+            }
+            return visitor.nary(nary, operandResults);
+        }
+        return visitor.leaf(node);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T foldIteratively(Expression root, Visitor<T> visitor) {
+        Expression[] pending = new Expression[INITIAL_DEPTH];
+        boolean[] expanded = new boolean[INITIAL_DEPTH];
+        Object[] results = new Object[INITIAL_DEPTH];
+        int top = 0;
+        int resultTop = 0;
+        pending[top++] = root;
+        while (top > 0) {
+            Expression node = pending[--top];
+            if (expanded[top]) {
+                expanded[top] = false;
+                if (node instanceof BinaryExpression) {
+                    T rightOperandResult = (T) results[--resultTop];
+                    T leftOperandResult = (T) results[--resultTop];
+                    results[resultTop++] = visitor.binary((BinaryExpression) node, leftOperandResult,
+                            rightOperandResult);
+                } else if (node instanceof UnaryExpression) {
+                    T operandResult = (T) results[--resultTop];
+                    results[resultTop++] = visitor.unary((UnaryExpression) node, operandResult);
+                } else {
+                    int count = ((NaryExpression) node).getOperands().size();
+                    List<T> operandResults = new ArrayList<>(count);
+                    for (int i = resultTop - count; i < resultTop; i++) {
+                        operandResults.add((T) results[i]);
+                        results[i] = null;
+                    }
+                    resultTop -= count;
+                    results[resultTop++] = visitor.nary((NaryExpression) node, operandResults);
+                }
+                results[resultTop] = null;
+                continue;
+            }
+            int count = operandCount(node);
+            if (top + count + 1 > pending.length) {
+                int length = Math.max(pending.length * 2, top + count + 1);
+                pending = Arrays.copyOf(pending, length);
+                expanded = Arrays.copyOf(expanded, length);
+            }
+            T skipped = visitor.skip(node);
+            if (skipped == null && count > 0) {
+                expanded[top] = true;
+                pending[top++] = node;
+                for (int i = count - 1; i >= 0; i--) {
+                    pending[top++] = operand((BaseExpression) node, i);
+                }
+            } else {
+                if (resultTop == results.length) {
+                    results = Arrays.copyOf(results, results.length * 2);
+                }
+                results[resultTop++] = skipped != null ? skipped : visitor.leaf(node);
+            }
+        }
+        return (T) results[0];
+    }
+
+    /**
+     * Evaluates a tree, with evaluate(Map) semantics when an assignment is given and evaluate() semantics
+     * when it is null.
+     *
+     * @param root       the root of the tree
+     * @param assignment the variable assignment, or null to evaluate without one
+     * @return the value of the tree
+     * @throws Exception if evaluation encounters an error
+     */
+    static double evaluate(Expression root, Map<String, Double> assignment) throws Exception {
+        return evaluate(root, assignment, 0);
+    }
+
+    private static double evaluate(Expression node, Map<String, Double> assignment, int depth) throws Exception {
+        if (depth == MAX_RECURSION_DEPTH) {
+            return evaluateIteratively(node, assignment);
+        }
+        if (node instanceof BinaryExpression) {
+            BinaryExpression binary = (BinaryExpression) node;
+            double leftOperandValue = evaluate(binary.getLeftOperand(), assignment, depth + 1);
+            double rightOperandValue = evaluate(binary.getRightOperand(), assignment, depth + 1);
+            return assignment != null
+                    ? binary.evaluateSelf(leftOperandValue, rightOperandValue)
+                    : binary.evaluateCheckedSelf(leftOperandValue, rightOperandValue);
+        }
+        if (node instanceof UnaryExpression) {
+            UnaryExpression unary = (UnaryExpression) node;
+            return unary.evaluateSelf(evaluate(unary.getOperand(), assignment, depth + 1));
+        }
+        if (node instanceof NaryExpression) {
+            NaryExpression nary = (NaryExpression) node;
+            List<Expression> operands = nary.getOperands();
+            double value = evaluate(operands.get(0), assignment, depth + 1);
+            for (int i = 1; i < operands.size(); i++) {
+                value = nary.combineSelf(value, evaluate(operands.get(i), assignment, depth + 1));
+            }
+            return value;
+        }
+        return assignment != null ? node.evaluate(assignment) : node.evaluate();
+    }
+
+    private static double evaluateIteratively(Expression root, Map<String, Double> assignment) throws Exception {
+        Expression[] pending = new Expression[INITIAL_DEPTH];
+        boolean[] expanded = new boolean[INITIAL_DEPTH];
+        double[] results = new double[INITIAL_DEPTH];
+        int top = 0;
+        int resultTop = 0;
+        pending[top++] = root;
+        while (top > 0) {
+            Expression node = pending[--top];
+            if (expanded[top]) {
+                expanded[top] = false;
+                if (node instanceof BinaryExpression) {
+                    double rightOperandValue = results[--resultTop];
+                    double leftOperandValue = results[resultTop - 1];
+                    BinaryExpression binary = (BinaryExpression) node;
+                    results[resultTop - 1] = assignment != null
+                            ? binary.evaluateSelf(leftOperandValue, rightOperandValue)
+                            : binary.evaluateCheckedSelf(leftOperandValue, rightOperandValue);
+                } else if (node instanceof UnaryExpression) {
+                    results[resultTop - 1] = ((UnaryExpression) node).evaluateSelf(results[resultTop - 1]);
+                } else {
+                    NaryExpression nary = (NaryExpression) node;
+                    int first = resultTop - nary.getOperands().size();
+                    double value = results[first];
+                    for (int i = first + 1; i < resultTop; i++) {
+                        value = nary.combineSelf(value, results[i]);
+                    }
+                    resultTop = first;
+                    results[resultTop++] = value;
+                }
+                continue;
+            }
+            int count = operandCount(node);
+            if (top + count + 1 > pending.length) {
+                int length = Math.max(pending.length * 2, top + count + 1);
+                pending = Arrays.copyOf(pending, length);
+                expanded = Arrays.copyOf(expanded, length);
+            }
+            if (count > 0) {
+                expanded[top] = true;
+                pending[top++] = node;
+                for (int i = count - 1; i >= 0; i--) {
+                    pending[top++] = operand((BaseExpression) node, i);
+                }
+            } else {
+                if (resultTop == results.length) {
+                    results = Arrays.copyOf(results, results.length * 2);
+                }
+                results[resultTop++] = assignment != null ? node.evaluate(assignment) : node.evaluate();
+            }
+        }
+        return results[0];
+    }
+
+    /**
+     * Evaluates a tree over columns of variable values, one operator at a time over whole columns.
+     * Operators mark the rows they cannot evaluate in one mask shared by the whole tree, and those rows are set
+     * to NaN only at the end, so an operator that ignores one operand, such as a multiplication by zero or a
+     * power of zero, cannot turn a failed row back into a number.
+     *
+     * @param root    the root of the tree
+     * @param columns the values of each variable, one array per variable
+     * @param out     the array the results are written to, one value per row
+     * @throws Exception if a variable has no column or its column is too short
+     */
+    static void evaluateBatch(Expression root, Map<String, double[]> columns, double[] out) throws Exception {
+        boolean[] failed = new boolean[out.length];
+        double[] result;
+        try {
+            result = fold(root, new BatchVisitor(columns, out.length, failed));
+        } catch (FoldFailure failure) {
+            throw failure.error;
+        }
+        for (int i = 0; i < out.length; i++) {
+            out[i] = failed[i] ? Double.NaN : result[i];
+        }
+    }
+
+    /**
+     * Evaluates a tree and its directional derivative together, each node from the values and derivatives of
+     * its operands, with evaluateDual semantics.
+     *
+     * @param root       the root of the tree
+     * @param assignment a map of variable assignments
+     * @param direction  the derivative of each variable along the direction
+     * @param derivative a one-element array the directional derivative is written to
+     * @return the value of the tree
+     * @throws Exception if evaluation encounters an error
+     */
+    static double evaluateDual(Expression root, Map<String, Double> assignment, Map<String, Double> direction,
+                               double[] derivative) throws Exception {
+        double[] result;
+        try {
+            result = fold(root, new DualVisitor(assignment, direction));
+        } catch (FoldFailure failure) {
+            throw failure.error;
+        }
+        derivative[0] = result[1];
+        return result[0];
+    }
+
+    /**
+     * Compiles a tree into nested evaluators over a primitive array of variable values. The evaluators call
+     * each other as deep as the tree, so a tree deeper than the recursion limit is compiled into a tape
+     * instead, which evaluates its nodes in a loop.
+     *
+     * @param root          the root of the tree
+     * @param variableOrder the variable names, in the order their values appear in the evaluator's input
+     * @return the compiled expression
+     */
+    static CompiledExpression compile(Expression root, List<String> variableOrder) {
+        Compiled compiled = fold(root, new CompileVisitor(variableOrder));
+        if (compiled.evaluator == null) {
+            return new ExpressionTape(root, variableOrder)::evaluate;
+        }
+        return compiled.evaluator;
+    }
+
+    /**
+     * Returns whether two trees are structurally equal, comparing operator nodes by type and cached hash
+     * before their operands, and identical subtrees by reference.
+     *
+     * @param first  the first tree
+     * @param second the second tree
+     * @return true if the trees are structurally equal
+     */
+    static boolean equal(Expression first, Expression second) {
+        Expression[] pending = new Expression[INITIAL_DEPTH];
+        int top = 0;
+        pending[top++] = first;
+        pending[top++] = second;
+        while (top > 0) {
+            Expression b = pending[--top];
+            Expression a = pending[--top];
+            if (a == b) {
+                continue;
+            }
+            if (a == null || b == null || a.getClass() != b.getClass() || a.hashCode() != b.hashCode()) {
+                return false;
+            }
+            int count = operandCount(a);
+            if (top + 2 * count > pending.length) {
+                pending = Arrays.copyOf(pending, Math.max(pending.length * 2, top + 2 * count));
+            }
+            if (a instanceof BinaryExpression) {
+                pending[top++] = ((BinaryExpression) a).getRightOperand();
+                pending[top++] = ((BinaryExpression) b).getRightOperand();
+                pending[top++] = ((BinaryExpression) a).getLeftOperand();
+                pending[top++] = ((BinaryExpression) b).getLeftOperand();
+            } else if (a instanceof UnaryExpression) {
+                if (!((UnaryExpression) a).equalsSelf((UnaryExpression) b)) {
+                    return false;
+                }
+                pending[top++] = ((UnaryExpression) a).getOperand();
+                pending[top++] = ((UnaryExpression) b).getOperand();
+            } else if (a instanceof NaryExpression) {
+                if (count != operandCount(b)) {
+                    return false;
+                }
+                for (int i = count - 1; i >= 0; i--) {
+                    pending[top++] = operand((BaseExpression) a, i);
+                    pending[top++] = operand((BaseExpression) b, i);
+                }
+            } else if (!a.equals(b)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Appends the text of a tree to an output. Every operator node is written with its parentheses,
+     * as toString prints it, or, with minimal parentheses, only where precedence or grouping needs them.
+     *
+     * @param root               the root of the tree
+     * @param out                the output the text is appended to
+     * @param minimalParentheses whether to omit the parentheses that are not needed
+     * @throws IOException if appending to the output fails
+     */
+    static void write(Expression root, Appendable out, boolean minimalParentheses) throws IOException {
+        write(root, out, minimalParentheses, false, 0);
+    }
+
+    private static void write(Expression node, Appendable out, boolean minimalParentheses, boolean wrap, int depth)
+            throws IOException {
+        node = resolve(node);
+        if (depth == MAX_RECURSION_DEPTH) {
+            writeIteratively(node, out, minimalParentheses, wrap);
+            return;
+        }
+        if (node instanceof BinaryExpression && !minimalParentheses) {
+            BinaryExpression binary = (BinaryExpression) node;
+            out.append(binary.prefixSelf());
+            write(binary.getLeftOperand(), out, false, false, depth + 1);
+            out.append(binary.operatorSelf());
+            write(binary.getRightOperand(), out, false, false, depth + 1);
+            out.append(')');
+            return;
+        }
+        if (node instanceof UnaryExpression && !minimalParentheses) {
+            UnaryExpression unary = (UnaryExpression) node;
+            out.append(unary.prefixSelf());
+            write(unary.getOperand(), out, false, false, depth + 1);
+            out.append(')');
+            return;
+        }
+        int count = operandCount(node);
+        if (count == 0) {
+            node.appendTo(out, minimalParentheses);
+            return;
+        }
+        BaseExpression operator = (BaseExpression) node;
+        out.append(opening(operator, minimalParentheses, wrap));
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                out.append(separator(operator));
+            }
+            Expression operand = operand(operator, i);
+            write(operand, out, minimalParentheses, wrapOperand(operator, i, operand), depth + 1);
+        }
+        out.append(closing(operator, minimalParentheses, wrap));
+    }
+
+    private static void writeIteratively(Expression root, Appendable out, boolean minimalParentheses, boolean wrap)
+            throws IOException {
+        Object[] pending = new Object[INITIAL_DEPTH];
+        boolean[] wraps = new boolean[INITIAL_DEPTH];
+        int top = 0;
+        wraps[top] = wrap;
+        pending[top++] = root;
+        while (top > 0) {
+            Object item = pending[--top];
+            if (item instanceof String) {
+                out.append((String) item);
+                continue;
+            }
+            Expression node = resolve((Expression) item);
+            int count = operandCount(node);
+            if (count == 0) {
+                node.appendTo(out, minimalParentheses);
+                continue;
+            }
+            if (top + 2 * count + 1 > pending.length) {
+                int length = Math.max(pending.length * 2, top + 2 * count + 1);
+                pending = Arrays.copyOf(pending, length);
+                wraps = Arrays.copyOf(wraps, length);
+            }
+            BaseExpression operator = (BaseExpression) node;
+            boolean wrapped = wraps[top];
+            out.append(opening(operator, minimalParentheses, wrapped));
+            pending[top++] = closing(operator, minimalParentheses, wrapped);
+            for (int i = count - 1; i >= 0; i--) {
+                Expression operand = operand(operator, i);
+                wraps[top] = wrapOperand(operator, i, operand);
+                pending[top++] = operand;
+                if (i > 0) {
+                    pending[top++] = separator(operator);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns at most the given number of leading characters of the text of a tree, as toString prints it,
+     * writing no more of the tree than that.
+     *
+     * @param root   the root of the tree
+     * @param length the maximum number of characters
+     * @return the leading characters of the text
+     */
+    static String prefix(Expression root, int length) {
+        Prefix prefix = new Prefix(length);
+        try {
+            write(root, prefix, false);
+        } catch (IOException e) {
+            if (e != Prefix.FULL) {
+                throw new IllegalStateException(e);
+            }
+        }
+        return prefix.builder.toString();
+    }
+
+    /**
+     * Returns the tree a node stands for, such as the derivative a lazy derivative builds, so that it is written
+     * like that tree, or the node itself.
+     */
+    static Expression resolve(Expression node) {
+        while (node instanceof BaseExpression) {
+            Expression resolved = ((BaseExpression) node).resolvedSelf();
+            if (resolved == null) {
+                return node;
+            }
+            node = resolved;
+        }
+        return node;
+    }
+
+    private static int operandCount(Expression node) {
+        if (node instanceof BinaryExpression) {
+            return 2;
+        }
+        if (node instanceof UnaryExpression) {
+            return 1;
+        }
+        if (node instanceof NaryExpression) {
+            return ((NaryExpression) node).getOperands().size();
+        }
+        return 0;
+    }
+
+    private static Expression operand(BaseExpression operator, int i) {
+        if (operator instanceof BinaryExpression) {
+            BinaryExpression binary = (BinaryExpression) operator;
+            return i == 0 ? binary.getLeftOperand() : binary.getRightOperand();
+        }
+        if (operator instanceof UnaryExpression) {
+            return ((UnaryExpression) operator).getOperand();
+        }
+        return ((NaryExpression) operator).getOperands().get(i);
+    }
+
+    private static String separator(BaseExpression operator) {
+        return operator instanceof BinaryExpression
+                ? ((BinaryExpression) operator).operatorSelf()
+                : ((NaryExpression) operator).operatorSelf();
+    }
+
+    /**
+     * Returns the text before the first operand. Operators below function precedence print their own
+     * parentheses as the first character of their prefix, which minimal output keeps only when wrapped.
+     */
+    private static String opening(BaseExpression operator, boolean minimalParentheses, boolean wrap) {
+        String prefix;
+        if (operator instanceof BinaryExpression) {
+            prefix = ((BinaryExpression) operator).prefixSelf();
+        } else if (operator instanceof UnaryExpression) {
+            prefix = ((UnaryExpression) operator).prefixSelf();
+        } else {
+            prefix = "(";
+        }
+        if (!minimalParentheses || wrap || operator.precedenceSelf() == BaseExpression.PRECEDENCE_FUNCTION) {
+            return prefix;
+        }
+        return prefix.substring(1);
+    }
+
+    private static String closing(BaseExpression operator, boolean minimalParentheses, boolean wrap) {
+        if (!minimalParentheses || wrap || operator.precedenceSelf() == BaseExpression.PRECEDENCE_FUNCTION) {
+            return ")";
+        }
+        return "";
+    }
+
+    /**
+     * Returns whether the minimal text of an unwrapped node starts with a number, which a minus sign
+     * written right before it would turn into a negative number.
+     */
+    private static boolean startsWithNumber(Expression node) {
+        node = resolve(node);
+        while (node instanceof BaseExpression) {
+            BaseExpression operator = (BaseExpression) node;
+            if (operator.precedenceSelf() == BaseExpression.PRECEDENCE_FUNCTION
+                    || operator.precedenceSelf() == BaseExpression.PRECEDENCE_PREFIX) {
+                return false;
+            }
+            Expression first = operand(operator, 0);
+            if (wrapOperand(operator, 0, first)) {
+                return false;
+            }
+            node = resolve(first);
+        }
+        return node instanceof Num;
+    }
+
+    /**
+     * Returns whether minimal output needs parentheses around an operand, so that reading the text back
+     * groups it as in the tree. Operands of equal precedence are wrapped on the right, except under the
+     * right-associative power, and every operand after the first of an n-ary node is wrapped.
+     */
+    private static boolean wrapOperand(BaseExpression operator, int i, Expression operand) {
+        operand = resolve(operand);
+        int precedence = operator.precedenceSelf();
+        if (precedence == BaseExpression.PRECEDENCE_FUNCTION) {
+            return false;
+        }
+        int operandPrecedence = operand instanceof BaseExpression
+                ? ((BaseExpression) operand).precedenceSelf()
+                : BaseExpression.PRECEDENCE_FUNCTION;
+        if (operator instanceof UnaryExpression) {
+            return operandPrecedence < BaseExpression.PRECEDENCE_POWER || startsWithNumber(operand);
+        }
+        if (precedence == BaseExpression.PRECEDENCE_POWER) {
+            return i == 0 ? operandPrecedence <= precedence : operandPrecedence < precedence;
+        }
+        return i == 0 ? operandPrecedence < precedence : operandPrecedence <= precedence;
+    }
+
+    /**
+     * Assigns an expression to a variable in every leaf and rebuilds the operators above them.
+     */
+    static final class Assignment implements Visitor<Expression> {
+        private final String var;
+        private final Expression expression;
+
+        Assignment(String var, Expression expression) {
+            this.var = var;
+            this.expression = expression;
+        }
+
+        @Override
+        public Expression skip(Expression node) {
+            return null;
+        }
+
+        @Override
+        public Expression leaf(Expression leaf) {
+            return leaf.assign(var, expression);
+        }
+
+        @Override
+        public Expression binary(BinaryExpression binary, Expression leftOperandAssign,
+                                 Expression rightOperandAssign) {
+            return binary.assignSelf(leftOperandAssign, rightOperandAssign);
+        }
+
+        @Override
+        public Expression unary(UnaryExpression unary, Expression operandAssign) {
+            return unary.assignSelf(operandAssign);
+        }
+
+        @Override
+        public Expression nary(NaryExpression nary, List<Expression> operandsAssign) {
+            return nary.assignSelf(operandsAssign);
+        }
+    }
+
+    /**
+     * Differentiates every operator node from the derivatives of its operands. Subtrees that do not use the
+     * variable differentiate to a shared zero without being visited.
+     */
+    static final class Differentiation implements Visitor<Expression> {
+        private final String var;
+
+        Differentiation(String var) {
+            this.var = var;
+        }
+
+        @Override
+        public Expression skip(Expression node) {
+            return BaseExpression.dependsOn(node, var) ? null : BaseExpression.ZERO;
+        }
+
+        @Override
+        public Expression leaf(Expression leaf) {
+            return leaf.differentiate(var);
+        }
+
+        @Override
+        public Expression binary(BinaryExpression binary, Expression leftOperandDerivative,
+                                 Expression rightOperandDerivative) {
+            return binary.differentiateSelf(leftOperandDerivative, rightOperandDerivative);
+        }
+
+        @Override
+        public Expression unary(UnaryExpression unary, Expression operandDerivative) {
+            return unary.differentiateSelf(operandDerivative);
+        }
+
+        @Override
+        public Expression nary(NaryExpression nary, List<Expression> operandDerivatives) {
+            return nary.differentiateSelf(operandDerivatives);
+        }
+    }
+
+    /**
+     * Computes the column of every node from the columns of its operands, reusing an operand column for the
+     * result wherever it is no longer needed.
+     */
+    private static final class BatchVisitor implements Visitor<double[]> {
+        private final Map<String, double[]> columns;
+        private final int rows;
+        private final boolean[] failed;
+
+        private BatchVisitor(Map<String, double[]> columns, int rows, boolean[] failed) {
+            this.columns = columns;
+            this.rows = rows;
+            this.failed = failed;
+        }
+
+        @Override
+        public double[] skip(Expression node) {
+            return null;
+        }
+
+        @Override
+        public double[] leaf(Expression leaf) {
+            Expression resolved = resolve(leaf);
+            if (resolved != leaf) {
+                return fold(resolved, this);
+            }
+            double[] column = new double[rows];
+            try {
+                leaf.evaluateBatch(columns, column);
+            } catch (Exception error) {
+                throw new FoldFailure(error);
+            }
+            return column;
+        }
+
+        @Override
+        public double[] binary(BinaryExpression binary, double[] leftOperandResult, double[] rightOperandResult) {
+            binary.evaluateColumns(leftOperandResult, rightOperandResult, rightOperandResult, failed);
+            return rightOperandResult;
+        }
+
+        @Override
+        public double[] unary(UnaryExpression unary, double[] operandResult) {
+            unary.evaluateColumn(operandResult, operandResult, failed);
+            return operandResult;
+        }
+
+        @Override
+        public double[] nary(NaryExpression nary, List<double[]> operandResults) {
+            double[] column = operandResults.get(0);
+            for (int i = 1; i < operandResults.size(); i++) {
+                double[] operandColumn = operandResults.get(i);
+                for (int row = 0; row < rows; row++) {
+                    column[row] = nary.combineSelf(column[row], operandColumn[row]);
+                }
+            }
+            return column;
+        }
+    }
+
+    /**
+     * Computes the value and the directional derivative of every node, in an array of two that is reused for
+     * the result of the node.
+     */
+    private static final class DualVisitor implements Visitor<double[]> {
+        private final Map<String, Double> assignment;
+        private final Map<String, Double> direction;
+
+        private DualVisitor(Map<String, Double> assignment, Map<String, Double> direction) {
+            this.assignment = assignment;
+            this.direction = direction;
+        }
+
+        @Override
+        public double[] skip(Expression node) {
+            return null;
+        }
+
+        @Override
+        public double[] leaf(Expression leaf) {
+            Expression resolved = resolve(leaf);
+            if (resolved != leaf) {
+                return fold(resolved, this);
+            }
+            double[] dual = new double[2];
+            try {
+                double[] derivative = new double[1];
+                dual[0] = leaf.evaluateDual(assignment, direction, derivative);
+                dual[1] = derivative[0];
+            } catch (Exception error) {
+                throw new FoldFailure(error);
+            }
+            return dual;
+        }
+
+        @Override
+        public double[] binary(BinaryExpression binary, double[] leftOperandResult, double[] rightOperandResult) {
+            double leftOperandValue = leftOperandResult[0];
+            double rightOperandValue = rightOperandResult[0];
+            try {
+                leftOperandResult[0] = binary.evaluateSelf(leftOperandValue, rightOperandValue);
+            } catch (Exception error) {
+                throw new FoldFailure(error);
+            }
+            double result = 0;
+            if (leftOperandResult[1] != 0) {
+                result += leftOperandResult[1] * binary.leftPartialSelf(leftOperandValue, rightOperandValue);
+            }
+            if (rightOperandResult[1] != 0) {
+                result += rightOperandResult[1] * binary.rightPartialSelf(leftOperandValue, rightOperandValue);
+            }
+            leftOperandResult[1] = result;
+            return leftOperandResult;
+        }
+
+        @Override
+        public double[] unary(UnaryExpression unary, double[] operandResult) {
+            double operandValue = operandResult[0];
+            try {
+                operandResult[0] = unary.evaluateSelf(operandValue);
+            } catch (Exception error) {
+                throw new FoldFailure(error);
+            }
+            if (operandResult[1] != 0) {
+                operandResult[1] *= unary.partialSelf(operandValue);
+            }
+            return operandResult;
+        }
+
+        @Override
+        public double[] nary(NaryExpression nary, List<double[]> operandResults) {
+            double[] operandValues = new double[operandResults.size()];
+            double[] operandDerivatives = new double[operandResults.size()];
+            for (int i = 0; i < operandValues.length; i++) {
+                double[] operandResult = operandResults.get(i);
+                operandValues[i] = operandResult[0];
+                operandDerivatives[i] = operandResult[1];
+            }
+            double value = operandValues[0];
+            for (int i = 1; i < operandValues.length; i++) {
+                value = nary.combineSelf(value, operandValues[i]);
+            }
+            double[] partials = new double[operandValues.length];
+            nary.partialsSelf(operandValues, partials);
+            double result = 0;
+            for (int i = 0; i < operandValues.length; i++) {
+                if (operandDerivatives[i] != 0 && partials[i] != 0) {
+                    result += operandDerivatives[i] * partials[i];
+                }
+            }
+            double[] dual = operandResults.get(0);
+            dual[0] = value;
+            dual[1] = result;
+            return dual;
+        }
+    }
+
+    /**
+     * The evaluator of a subtree and its height, or no evaluator once the height exceeds the recursion limit.
+     */
+    private static final class Compiled {
+        private final CompiledExpression evaluator;
+        private final int height;
+
+        private Compiled(CompiledExpression evaluator, int height) {
+            this.evaluator = height > MAX_RECURSION_DEPTH ? null : evaluator;
+            this.height = height;
+        }
+    }
+
+    /**
+     * Compiles every node into an evaluator that calls the evaluators of its operands, until the tree gets
+     * too deep for them.
+     */
+    private static final class CompileVisitor implements Visitor<Compiled> {
+        private final List<String> variableOrder;
+
+        private CompileVisitor(List<String> variableOrder) {
+            this.variableOrder = variableOrder;
+        }
+
+        @Override
+        public Compiled skip(Expression node) {
+            return null;
+        }
+
+        @Override
+        public Compiled leaf(Expression leaf) {
+            Expression resolved = resolve(leaf);
+            if (resolved != leaf) {
+                return fold(resolved, this);
+            }
+            return new Compiled(leaf.compile(variableOrder), 1);
+        }
+
+        @Override
+        public Compiled binary(BinaryExpression binary, Compiled leftOperandResult, Compiled rightOperandResult) {
+            CompiledExpression leftOperandCompiled = leftOperandResult.evaluator;
+            CompiledExpression rightOperandCompiled = rightOperandResult.evaluator;
+            return new Compiled(values -> binary.evaluateSelf(leftOperandCompiled.evaluate(values),
+                    rightOperandCompiled.evaluate(values)),
+                    Math.max(leftOperandResult.height, rightOperandResult.height) + 1);
+        }
+
+        @Override
+        public Compiled unary(UnaryExpression unary, Compiled operandResult) {
+            CompiledExpression operandCompiled = operandResult.evaluator;
+            return new Compiled(values -> unary.evaluateSelf(operandCompiled.evaluate(values)),
+                    operandResult.height + 1);
+        }
+
+        @Override
+        public Compiled nary(NaryExpression nary, List<Compiled> operandResults) {
+            CompiledExpression[] operandsCompiled = new CompiledExpression[operandResults.size()];
+            int height = 0;
+            for (int i = 0; i < operandsCompiled.length; i++) {
+                operandsCompiled[i] = operandResults.get(i).evaluator;
+                height = Math.max(height, operandResults.get(i).height + 1);
+            }
+            return new Compiled(values -> {
+                double value = operandsCompiled[0].evaluate(values);
+                for (int i = 1; i < operandsCompiled.length; i++) {
+                    value = nary.combineSelf(value, operandsCompiled[i].evaluate(values));
+                }
+                return value;
+            }, height);
+        }
+    }
+
+    /**
+     * Collects text up to a fixed length, then stops the writer with a shared exception without a stack trace.
+     */
+    private static final class Prefix implements Appendable {
+        private static final IOException FULL = new IOException("prefix complete", null) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            public synchronized Throwable fillInStackTrace() {
+                return this;
+            }
+        };
+
+        private final StringBuilder builder;
+        private final int length;
+
+        private Prefix(int length) {
+            this.builder = new StringBuilder(length);
+            this.length = length;
+        }
+
+        @Override
+        public Appendable append(CharSequence text) throws IOException {
+            return append(text, 0, text.length());
+        }
+
+        @Override
+        public Appendable append(CharSequence text, int start, int end) throws IOException {
+            int count = Math.min(end - start, length - builder.length());
+            builder.append(text, start, start + count);
+            if (builder.length() == length) {
+                throw FULL;
+            }
+            return this;
+        }
+
+        @Override
+        public Appendable append(char c) throws IOException {
+            builder.append(c);
+            if (builder.length() == length) {
+                throw FULL;
+            }
+            return this;
+        }
+    }
+
+    /**
+     * Carries the error of a node that cannot be evaluated, such as a variable without a column, out of a fold,
+     * whose visitors cannot throw checked exceptions. It has no stack trace of its own, since the error has one.
+     */
+    static final class FoldFailure extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        final Exception error;
+
+        FoldFailure(Exception error) {
+            super(null, error, false, false);
+            this.error = error;
+        }
+    }
+}
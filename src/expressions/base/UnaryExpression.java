@@ -1,15 +1,21 @@
 package expressions.base;
 
+import expressions.elements.Num;
+import interfaces.CompiledExpression;
 import interfaces.Expression;
 
-import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 
 /**
  * An abstract class that represents a unary expression that extends the BaseExpression class.
+ * Its operand, hash code and variable list are final and computed in the constructor, so unary expressions
+ * are immutable and safe to share between threads once constructed. Subclasses must not add mutable state.
  */
 public abstract class UnaryExpression extends BaseExpression {
-    private Expression operand;
+    private final Expression operand;
+    private final int hash;
+    private final List<String> variables;
 
     /**
      * Constructs a unary expression with the given operand.
@@ -18,30 +24,146 @@ public abstract class UnaryExpression extends BaseExpression {
      */
     public UnaryExpression(Expression operand) {
         this.operand = operand;
+        this.hash = 31 * getClass().getName().hashCode() + operand.hashCode();
+        this.variables = operand.getVariables();
+    }
+
+    /**
+     * Returns whether the given object is a unary expression of the same type with an equal operand.
+     * An identical operand is recognized by reference first, so interned trees compare in constant time,
+     * and the operands are compared with an explicit stack, so deep trees cannot overflow the call stack.
+     *
+     * @param other the object to compare with
+     * @return true if the expressions are structurally equal
+     */
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (other == null || getClass() != other.getClass()) {
+            return false;
+        }
+        UnaryExpression that = (UnaryExpression) other;
+        return hash == that.hash && Traversal.equal(this, that);
+    }
+
+    /**
+     * Returns the structural hash code of the unary expression, computed once on construction.
+     *
+     * @return the hash code
+     */
+    @Override
+    public int hashCode() {
+        return hash;
     }
 
 
     /**
      * Return's the variables used in the unary expression.
+     * The list is built once when the expression is constructed and shared, not copied, on every call.
      *
-     * @return a list of variable names used in the expression
+     * @return an unmodifiable sorted list of the distinct variable names used in the expression
      */
     public List<String> getVariables() {
-        List<String> var = operand.getVariables();
-        HashSet<String> varSet = new HashSet<>(var);
-        var.clear();
-        var.addAll(varSet);
-        return var;
+        return variables;
+    }
+
+    /**
+     * Evaluates the unary expression with the given variable assignments.
+     *
+     * @param assignment a map of variable assignments
+     * @return the result of the evaluation
+     * @throws Exception if an error occurs during evaluation
+     */
+    @Override
+    public double evaluate(Map<String, Double> assignment) throws Exception {
+        return Traversal.evaluate(this, assignment);
+    }
+
+    /**
+     * Evaluates the unary expression without a variable assignments.
+     *
+     * @return the result of the evaluation
+     * @throws Exception if an error occurs during evaluation
+     */
+    @Override
+    public double evaluate() throws Exception {
+        return Traversal.evaluate(this, null);
+    }
+
+    /**
+     * Assigns a new expression to a variable within the unary expression.
+     *
+     * @param var        the variable to assign the expression to
+     * @param expression the expression to assign
+     * @return a new expression with the assigned variable
+     */
+    @Override
+    public final Expression assign(String var, Expression expression) {
+        return Traversal.fold(this, new Traversal.Assignment(var, expression));
+    }
+
+    /**
+     * Computes the derivative of the unary expression with respect to a variable,
+     * from the derivative of its operand.
+     * Subtrees that do not use the variable differentiate to a shared zero without being visited.
+     *
+     * @param var the variable to differentiate by
+     * @return the derivative expression
+     */
+    @Override
+    public final Expression differentiate(String var) {
+        return Traversal.fold(this, new Traversal.Differentiation(var));
+    }
+
+    /**
+     * Simplifies the unary expression bottom-up: the operand is simplified once,
+     * then the expression's own rules are applied to the simplified operand.
+     *
+     * @return the simplified expression
+     */
+    @Override
+    public final Expression simplify() {
+        return Traversal.fold(this, Traversal.SIMPLIFY);
+    }
+
+    /**
+     * Evaluates the unary expression and its directional derivative together.
+     *
+     * @param assignment a map of variable assignments
+     * @param direction  the derivative of each variable along the direction
+     * @param derivative a one-element array the directional derivative is written to
+     * @return the result of the evaluation
+     * @throws Exception if an error occurs during evaluation
+     */
+    @Override
+    public double evaluateDual(Map<String, Double> assignment, Map<String, Double> direction, double[] derivative)
+            throws Exception {
+        return Traversal.evaluateDual(this, assignment, direction, derivative);
+    }
+
+    /**
+     * Compiles the unary expression into an evaluator over a primitive array of variable values.
+     *
+     * @param variableOrder the variable names, in the order their values appear in the evaluator's input
+     * @return the compiled expression
+     */
+    @Override
+    public CompiledExpression compile(List<String> variableOrder) {
+        return Traversal.compile(this, variableOrder);
     }
 
     /**
-     * Returns a string representation of the unary expression.
+     * Evaluates the unary expression over columns of variable values.
      *
-     * @return the string representation of the expression
+     * @param columns the values of each variable, one array per variable
+     * @param out     the array the results are written to, one value per row
+     * @throws Exception if a variable has no column or its column is too short
      */
     @Override
-    public String toString() {
-        return "(" + operand.toString() + ")";
+    public void evaluateBatch(Map<String, double[]> columns, double[] out) throws Exception {
+        Traversal.evaluateBatch(this, columns, out);
     }
 
     /**
@@ -52,4 +174,68 @@ public abstract class UnaryExpression extends BaseExpression {
     public Expression getOperand() {
         return operand;
     }
+
+    /**
+     * Returns the text toString prints before the operand.
+     *
+     * @return the prefix text, such as "sin("
+     */
+    protected abstract String prefixSelf();
+
+    protected abstract Expression assignSelf(Expression operand);
+
+    protected abstract double evaluateSelf(double operand) throws Exception;
+
+    protected abstract double partialSelf(double operand);
+
+    protected abstract Expression differentiateSelf(Expression operandDerivative);
+
+    protected abstract Expression simplifySelf(Expression operandSimple);
+
+    /**
+     * Returns whether the state a subclass holds besides its operand, such as the coefficients of a polynomial,
+     * equals that of another expression of the same class. Structural comparison checks it for every node.
+     *
+     * @param other an expression of the same class
+     * @return true unless overridden
+     */
+    protected boolean equalsSelf(UnaryExpression other) {
+        return true;
+    }
+
+    /**
+     * Folds the operator over a simplified operand when it is a literal constant.
+     *
+     * @param operandSimple the simplified operand
+     * @return the folded number, or null if the operand is not a constant or the operator is undefined for it
+     */
+    protected Expression foldSelf(Expression operandSimple) {
+        if (!operandSimple.isConstant()) {
+            return null;
+        }
+        try {
+            return new Num(evaluateSelf(operandSimple.constantValue()));
+        } catch (Exception undefinedError) {
+            return null;
+        }
+    }
+
+    /**
+     * Applies the operator to a whole column of operand values, row by row.
+     * Rows the operator cannot evaluate are marked in the failure mask.
+     *
+     * @param operand the values of the operand
+     * @param out     the array the results are written to, may be the operand array
+     * @param failed  the failure mask of the rows, set for every row the operator cannot evaluate
+     */
+    protected void evaluateColumn(double[] operand, double[] out, boolean[] failed) {
+        for (int i = 0; i < out.length; i++) {
+            try {
+                out[i] = evaluateSelf(operand[i]);
+            } catch (Exception evalError) {
+                out[i] = Double.NaN;
+                failed[i] = true;
+            }
+        }
+    }
 }
@@ -0,0 +1,55 @@
+package expressions.binary;
+
+import interfaces.Expression;
+
+/**
+ * A class that represents a logarithm to a constant base, evaluated as one natural logarithm divided by the
+ * precomputed logarithm of the base, instead of two logarithms and a division.
+ * It evaluates to exactly the value of the logarithm expression it replaces, so log(e, e) stays 1, and it
+ * prints, differentiates and simplifies like it as well.
+ */
+public class ConstantBaseLog extends Log {
+    private final double logBase;
+
+    /**
+     * Constructs a logarithm to a constant base.
+     *
+     * @param leftOperand  the base, a positive constant other than one
+     * @param rightOperand the expression inside the logarithm
+     */
+    public ConstantBaseLog(Expression leftOperand, Expression rightOperand) {
+        super(leftOperand, rightOperand);
+        if (!leftOperand.isConstant() || !(leftOperand.constantValue() > 0) || leftOperand.constantValue() == 1) {
+            throw new IllegalArgumentException("The base is not a valid constant: " + leftOperand);
+        }
+        this.logBase = Math.log(leftOperand.constantValue());
+    }
+
+    /**
+     * Returns the estimated cost of evaluating the logarithm once its operand is known, a single library
+     * logarithm and a division.
+     *
+     * @return the estimated cost of the operator
+     */
+    @Override
+    protected int costSelf() {
+        return COST_FUNCTION + COST_DIVISION;
+    }
+
+    @Override
+    protected double evaluateSelf(double leftOperand, double rightOperand) throws Exception {
+        if (rightOperand <= 0) {
+            throw new ArithmeticException("The Expression inside the Log is Undefined!");
+        }
+        return Math.log(rightOperand) / logBase;
+    }
+
+    @Override
+    protected void evaluateColumns(double[] leftOperand, double[] rightOperand, double[] out, boolean[] failed) {
+        for (int i = 0; i < out.length; i++) {
+            double argument = rightOperand[i];
+            failed[i] |= argument <= 0;
+            out[i] = Math.log(argument) / logBase;
+        }
+    }
+}
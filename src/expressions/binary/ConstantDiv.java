@@ -0,0 +1,49 @@
+package expressions.binary;
+
+import interfaces.Expression;
+
+/**
+ * A class that represents a division by a nonzero constant, evaluated as a multiplication by the
+ * precomputed reciprocal of the divisor. It prints, differentiates and simplifies like the division
+ * expression it replaces.
+ */
+public class ConstantDiv extends Div {
+    private final double reciprocal;
+
+    /**
+     * Constructs a division by a constant.
+     *
+     * @param leftOperand  the dividend
+     * @param rightOperand the divisor, a nonzero constant whose reciprocal is finite
+     */
+    public ConstantDiv(Expression leftOperand, Expression rightOperand) {
+        super(leftOperand, rightOperand);
+        if (!rightOperand.isConstant() || rightOperand.constantValue() == 0
+                || !Double.isFinite(1 / rightOperand.constantValue())) {
+            throw new IllegalArgumentException("The divisor is not a valid constant: " + rightOperand);
+        }
+        this.reciprocal = 1 / rightOperand.constantValue();
+    }
+
+    /**
+     * Returns the estimated cost of evaluating the division once its dividend is known, a single multiplication.
+     *
+     * @return the estimated cost of the operator
+     */
+    @Override
+    protected int costSelf() {
+        return COST_ARITHMETIC;
+    }
+
+    @Override
+    protected double evaluateSelf(double leftOperand, double rightOperand) {
+        return leftOperand * reciprocal;
+    }
+
+    @Override
+    protected void evaluateColumns(double[] leftOperand, double[] rightOperand, double[] out, boolean[] failed) {
+        for (int i = 0; i < out.length; i++) {
+            out[i] = leftOperand[i] * reciprocal;
+        }
+    }
+}
@@ -19,77 +19,83 @@ public class Div extends BinaryExpression {
     }
 
     /**
-     * Returns a string representation of the division expression.
+     * Returns the operator text toString prints between the operands of the division expression.
      *
-     * @return the string representation of the expression
+     * @return the operator text
      */
     @Override
-    public String toString() {
-        return "(" + super.getLeftOperand().toString() + " / " + super.getRightOperand().toString() + ")";
+    protected String operatorSelf() {
+        return " / ";
     }
 
     /**
-     * Computes the derivative of the division expression with respect to the given variable.
+     * Returns the precedence of the division expression, which minimal output uses to place parentheses.
      *
-     * @param var the variable to differentiate by
+     * @return the precedence of the operator
+     */
+    @Override
+    protected int precedenceSelf() {
+        return PRECEDENCE_MULTIPLICATIVE;
+    }
+
+    /**
+     * Returns the estimated cost of evaluating the division expression once its operands are known.
+     *
+     * @return the estimated cost of the operator
+     */
+    @Override
+    protected int costSelf() {
+        return COST_DIVISION;
+    }
+
+    /**
+     * Computes the derivative of the division expression from the derivatives of its operands.
+     *
+     * @param leftOperandDerivative  the derivative of the left operand
+     * @param rightOperandDerivative the derivative of the right operand
      * @return the derivative of the expression
      */
     @Override
-    public Expression differentiate(String var) {
-        return new Div(new Minus(new Mult(super.getLeftOperand().differentiate(var), super.getRightOperand()),
-                new Mult(super.getLeftOperand(), super.getRightOperand().differentiate(var))),
+    protected Expression differentiateSelf(Expression leftOperandDerivative, Expression rightOperandDerivative) {
+        return new Div(new Minus(new Mult(leftOperandDerivative, super.getRightOperand()),
+                new Mult(super.getLeftOperand(), rightOperandDerivative)),
                 new Pow(super.getRightOperand(), new Num(2)));
     }
 
     /**
-     * Simplifies the division expression by evaluating it if possible.
-     * If evaluation is not possible, the left and right operands are simplified instead.
+     * Simplifies the division of two simplified operands by folding constants or applying simplification rules.
+     * A division by zero is kept as is.
      *
+     * @param leftOperandSimple  the simplified left operand
+     * @param rightOperandSimple the simplified right operand
      * @return the simplified expression
      */
     @Override
-    public Expression simplify() {
-        Expression leftOperandSimple, rightOperandSimple;
-        double evalLOperand, evalROperand;
-        try {
-            double evaluated = this.evaluate();
-            return new Num(evaluated);
-        } catch (Exception evalExpError) {
-            leftOperandSimple = super.getLeftOperand().simplify();
-            rightOperandSimple = super.getRightOperand().simplify();
-            if (leftOperandSimple.toString().equals(rightOperandSimple.toString())) {
-                return new Num(1);
+    protected Expression simplifySelf(Expression leftOperandSimple, Expression rightOperandSimple) {
+        Expression folded = foldSelf(leftOperandSimple, rightOperandSimple);
+        if (folded != null) {
+            return folded;
+        }
+        if (leftOperandSimple.equals(rightOperandSimple)) {
+            return new Num(1);
+        }
+        if (rightOperandSimple.isConstant()) {
+            double evalROperand = rightOperandSimple.constantValue();
+            if (evalROperand == 0) {
+                return new Div(leftOperandSimple, new Num(0));
+            } else if (evalROperand == 1) {
+                return leftOperandSimple;
             }
-            try {
-                evalLOperand = leftOperandSimple.evaluate();
-                try {
-                    evalROperand = rightOperandSimple.evaluate();
-                    if (evalROperand == 1) {
-                        return new Num(evalLOperand);
-                    } else if (evalROperand == 0) {
-                        return new Div(leftOperandSimple, new Num(0));
-                    }
-                    return new Num(evalLOperand / evalROperand);
-                } catch (Exception evalROperandError) {
-                    if (evalLOperand == 0) {
-                        return new Num(0);
-                    }
-                    return new Div(new Num(evalLOperand), rightOperandSimple);
-                }
-            } catch (Exception evalLOperandError) {
-                try {
-                    evalROperand = rightOperandSimple.evaluate();
-                    if (evalROperand == 1) {
-                        return leftOperandSimple;
-                    } else if (evalROperand == 0) {
-                        return new Div(leftOperandSimple, new Num(0));
-                    }
-                    return new Div(leftOperandSimple, new Num(evalROperand));
-                } catch (Exception evalROperandError) {
-                    return new Div(leftOperandSimple, rightOperandSimple);
-                }
+            return new Div(leftOperandSimple, new Num(evalROperand));
+        }
+        if (leftOperandSimple.isConstant()) {
+            double evalLOperand = leftOperandSimple.constantValue();
+            if (evalLOperand == 0) {
+                return new Num(0);
             }
+            return new Div(new Num(evalLOperand), rightOperandSimple);
         }
+        return new Div(leftOperandSimple, rightOperandSimple);
     }
 
     @Override
@@ -104,4 +110,22 @@ public class Div extends BinaryExpression {
     protected Expression assignSelf(Expression leftOperand, Expression rightOperand) {
         return new Div(leftOperand, rightOperand);
     }
-}
\ No newline at end of file
+
+    @Override
+    protected void evaluateColumns(double[] leftOperand, double[] rightOperand, double[] out, boolean[] failed) {
+        for (int i = 0; i < out.length; i++) {
+            failed[i] |= rightOperand[i] == 0;
+            out[i] = leftOperand[i] / rightOperand[i];
+        }
+    }
+
+    @Override
+    protected double leftPartialSelf(double leftOperand, double rightOperand) {
+        return 1 / rightOperand;
+    }
+
+    @Override
+    protected double rightPartialSelf(double leftOperand, double rightOperand) {
+        return -leftOperand / (rightOperand * rightOperand);
+    }
+}
@@ -0,0 +1,88 @@
+package expressions.binary;
+
+import interfaces.Expression;
+
+/**
+ * A class that represents a power with a constant integer exponent, evaluated by repeated squaring instead
+ * of Math.pow. It prints, differentiates and simplifies like the power expression it replaces.
+ * Its result differs from Math.pow by at most one rounding per multiplication, which the optimizer bounds.
+ */
+public class IntegerPow extends Pow {
+    private final int exponent;
+
+    /**
+     * Constructs a power with a constant integer exponent.
+     *
+     * @param leftOperand  the base
+     * @param rightOperand the exponent, a constant with an integer value
+     */
+    public IntegerPow(Expression leftOperand, Expression rightOperand) {
+        super(leftOperand, rightOperand);
+        if (!rightOperand.isConstant() || rightOperand.constantValue() != (int) rightOperand.constantValue()) {
+            throw new IllegalArgumentException("The exponent is not a constant integer: " + rightOperand);
+        }
+        this.exponent = (int) rightOperand.constantValue();
+    }
+
+    /**
+     * Returns the number of multiplications repeated squaring takes for an exponent.
+     *
+     * @param exponent the exponent
+     * @return the number of multiplications, not counting the reciprocal of a negative exponent
+     */
+    public static int multiplications(int exponent) {
+        long magnitude = Math.abs((long) exponent);
+        if (magnitude == 0) {
+            return 0;
+        }
+        return 63 - Long.numberOfLeadingZeros(magnitude) + Long.bitCount(magnitude) - 1;
+    }
+
+    /**
+     * Returns the estimated cost of evaluating the power once its base is known, one arithmetic operation
+     * per multiplication and a division for a negative exponent.
+     *
+     * @return the estimated cost of the operator
+     */
+    @Override
+    protected int costSelf() {
+        return multiplications(exponent) * COST_ARITHMETIC + (exponent < 0 ? COST_DIVISION : 0);
+    }
+
+    @Override
+    protected double evaluateSelf(double leftOperand, double rightOperand) {
+        return power(leftOperand);
+    }
+
+    @Override
+    protected double evaluateCheckedSelf(double leftOperand, double rightOperand) {
+        return power(leftOperand);
+    }
+
+    @Override
+    protected void evaluateColumns(double[] leftOperand, double[] rightOperand, double[] out, boolean[] failed) {
+        for (int i = 0; i < out.length; i++) {
+            out[i] = power(leftOperand[i]);
+        }
+    }
+
+    private double power(double base) {
+        long remaining = Math.abs((long) exponent);
+        double result = 1;
+        double square = base;
+        while (remaining != 0) {
+            if ((remaining & 1) != 0) {
+                result *= square;
+            }
+            remaining >>= 1;
+            if (remaining != 0) {
+                square *= square;
+            }
+        }
+        if (exponent >= 0) {
+            return result;
+        }
+        // A reciprocal of an overflowed or subnormal power would lose the result, so Math.pow takes over.
+        return Double.isFinite(result) && Math.abs(result) >= Double.MIN_NORMAL ? 1 / result : Math.pow(base, exponent);
+    }
+}
@@ -22,78 +22,84 @@ public class Log extends BinaryExpression {
     }
 
     /**
-     * Returns a string representation of the logarithm expression.
+     * Returns the text toString prints before the base of the logarithm expression.
      *
-     * @return the string representation of the expression
+     * @return the function name and opening parenthesis
      */
     @Override
-    public String toString() {
-        return "log(" + super.getLeftOperand().toString() + ", " + super.getRightOperand().toString() + ")";
+    protected String prefixSelf() {
+        return "log(";
     }
 
     /**
-     * Computes the derivative of the logarithm expression with respect to the given variable.
+     * Returns the estimated cost of evaluating the logarithm expression once its operands are known,
+     * which takes two library logarithms.
      *
-     * @param var the variable to differentiate by
+     * @return the estimated cost of the operator
+     */
+    @Override
+    protected int costSelf() {
+        return 2 * COST_FUNCTION;
+    }
+
+    /**
+     * Returns the operator text toString prints between the operands of the logarithm expression.
+     *
+     * @return the operator text
+     */
+    @Override
+    protected String operatorSelf() {
+        return ", ";
+    }
+
+    /**
+     * Computes the derivative of the logarithm expression from the derivatives of its operands.
+     *
+     * @param leftOperandDerivative  the derivative of the left operand
+     * @param rightOperandDerivative the derivative of the right operand
      * @return the derivative of the expression
      */
     @Override
-    public Expression differentiate(String var) {
+    protected Expression differentiateSelf(Expression leftOperandDerivative, Expression rightOperandDerivative) {
         Expression fx = super.getLeftOperand();
         Expression gx = super.getRightOperand();
-        Expression dDxfx = super.getLeftOperand().differentiate(var);
-        Expression dDxgx = super.getRightOperand().differentiate(var);
-        return new Div(new Minus(new Mult(new Mult(new Log(new Const("e", 2.71), fx), fx), dDxgx),
-                new Mult(new Mult(new Log(new Const("e", 2.71), gx), gx), dDxfx)),
-                new Mult(new Mult(gx, fx), new Pow(new Log(new Const("e", 2.71), fx), new Num(2))));
+        Expression lnFx = new Log(new Const("e", 2.71), fx);
+        return new Div(new Minus(new Mult(new Mult(lnFx, fx), rightOperandDerivative),
+                new Mult(new Mult(new Log(new Const("e", 2.71), gx), gx), leftOperandDerivative)),
+                new Mult(new Mult(gx, fx), new Pow(lnFx, new Num(2))));
     }
 
     /**
-     * Simplifies the division expression by evaluating it if possible.
-     * If evaluation is not possible, the left and right operands are simplified instead.
+     * Simplifies the logarithm of two simplified operands by folding constants or applying simplification rules.
+     * A logarithm that is undefined for its constant operands is kept as is.
      *
+     * @param leftOperandSimple  the simplified base
+     * @param rightOperandSimple the simplified expression inside the logarithm
      * @return the simplified expression
      */
     @Override
-    public Expression simplify() {
-        Expression leftOperandSimple, rightOperandSimple;
-        double evalLOperand, evalROperand;
-        try {
-            double evaluated = this.evaluate();
-            return new Num(evaluated);
-        } catch (Exception evalExpError) {
-            leftOperandSimple = super.getLeftOperand().simplify();
-            rightOperandSimple = super.getRightOperand().simplify();
-            if (leftOperandSimple.toString().equals(rightOperandSimple.toString())) {
-                return new Num(1);
-            }
-            try {
-                evalLOperand = leftOperandSimple.evaluate();
-                try {
-                    evalROperand = rightOperandSimple.evaluate();
-                    if (evalROperand == 1) {
-                        return new Num(0);
-                    }
-                    return new Num(Math.log(evalROperand) / Math.log(evalLOperand));
-                } catch (ArithmeticException e) {
-                    return new Log(leftOperandSimple, rightOperandSimple);
-                } catch (Exception evalROperandError) {
-                    return new Log(new Num(evalLOperand), rightOperandSimple);
-                }
-            } catch (ArithmeticException e) {
-                return new Log(leftOperandSimple, rightOperandSimple);
-            } catch (Exception evalLOperandError) {
-                try {
-                    evalROperand = rightOperandSimple.evaluate();
-                    if (evalROperand == 1) {
-                        return new Num(0);
-                    }
-                    return new Log(leftOperandSimple, new Num(evalROperand));
-                } catch (Exception evalROperandError) {
-                    return new Log(leftOperandSimple, rightOperandSimple);
-                }
+    protected Expression simplifySelf(Expression leftOperandSimple, Expression rightOperandSimple) {
+        Expression folded = foldSelf(leftOperandSimple, rightOperandSimple);
+        if (folded != null) {
+            return folded;
+        }
+        if (leftOperandSimple.equals(rightOperandSimple)) {
+            return new Num(1);
+        }
+        if (leftOperandSimple.isConstant() && rightOperandSimple.isConstant()) {
+            return new Log(leftOperandSimple, rightOperandSimple);
+        }
+        if (leftOperandSimple.isConstant()) {
+            return new Log(new Num(leftOperandSimple.constantValue()), rightOperandSimple);
+        }
+        if (rightOperandSimple.isConstant()) {
+            double evalROperand = rightOperandSimple.constantValue();
+            if (evalROperand == 1) {
+                return new Num(0);
             }
+            return new Log(leftOperandSimple, new Num(evalROperand));
         }
+        return new Log(leftOperandSimple, rightOperandSimple);
     }
 
     @Override
@@ -111,4 +117,28 @@ public class Log extends BinaryExpression {
     protected Expression assignSelf(Expression leftOperand, Expression rightOperand) {
         return new Log(leftOperand, rightOperand);
     }
-}
\ No newline at end of file
+
+    @Override
+    protected void evaluateColumns(double[] leftOperand, double[] rightOperand, double[] out, boolean[] failed) {
+        for (int i = 0; i < out.length; i++) {
+            double base = leftOperand[i];
+            double argument = rightOperand[i];
+            failed[i] |= base == 1 || base <= 0 || argument <= 0;
+            out[i] = Math.log(argument) / Math.log(base);
+        }
+    }
+
+    // the partials follow differentiate(), which takes the natural logarithm with base e = 2.71
+    @Override
+    protected double leftPartialSelf(double leftOperand, double rightOperand) {
+        double logBase = Math.log(leftOperand) / Math.log(2.71);
+        double logArgument = Math.log(rightOperand) / Math.log(2.71);
+        return -logArgument / (leftOperand * logBase * logBase);
+    }
+
+    @Override
+    protected double rightPartialSelf(double leftOperand, double rightOperand) {
+        double logBase = Math.log(leftOperand) / Math.log(2.71);
+        return 1 / (rightOperand * logBase);
+    }
+}
@@ -20,71 +20,83 @@ public class Minus extends BinaryExpression {
     }
 
     /**
-     * Returns a string representation of the logarithm expression.
+     * Returns the operator text toString prints between the operands of the subtraction expression.
      *
-     * @return the string representation of the expression
+     * @return the operator text
      */
     @Override
-    public String toString() {
-        return "(" + super.getLeftOperand().toString() + " - " + super.getRightOperand().toString() + ")";
+    protected String operatorSelf() {
+        return " - ";
     }
 
 
     /**
-     * Computes the derivative of the subtraction expression with respect to the given variable.
+     * Returns the precedence of the subtraction expression, which minimal output uses to place parentheses.
      *
-     * @param var the variable to differentiate by
+     * @return the precedence of the operator
+     */
+    @Override
+    protected int precedenceSelf() {
+        return PRECEDENCE_ADDITIVE;
+    }
+
+    /**
+     * Returns the estimated cost of evaluating the subtraction expression once its operands are known.
+     *
+     * @return the estimated cost of the operator
+     */
+    @Override
+    protected int costSelf() {
+        return COST_ARITHMETIC;
+    }
+
+    /**
+     * Computes the derivative of the subtraction expression from the derivatives of its operands.
+     *
+     * @param leftOperandDerivative  the derivative of the left operand
+     * @param rightOperandDerivative the derivative of the right operand
      * @return the derivative of the expression
      */
     @Override
-    public Expression differentiate(String var) {
-        return new Minus(super.getLeftOperand().differentiate(var), super.getRightOperand().differentiate(var));
+    protected Expression differentiateSelf(Expression leftOperandDerivative, Expression rightOperandDerivative) {
+        return new Minus(leftOperandDerivative, rightOperandDerivative);
     }
 
     /**
-     * Simplifies the subtraction expression by evaluating it if possible.
+     * Simplifies the subtraction of two simplified operands by folding constants or applying simplification rules.
      *
+     * @param leftOperandSimple  the simplified left operand
+     * @param rightOperandSimple the simplified right operand
      * @return the simplified expression
      */
     @Override
-    public Expression simplify() {
-        Expression leftOperandSimple, rightOperandSimple;
-        double evalLOperand, evalROperand;
-        try {
-            double evaluated = this.evaluate();
-            return new Num(evaluated);
-        } catch (Exception evalExpError) {
-            leftOperandSimple = super.getLeftOperand().simplify();
-            rightOperandSimple = super.getRightOperand().simplify();
-            if (rightOperandSimple instanceof Neg) {
-                return (new Plus(leftOperandSimple, ((Neg) rightOperandSimple).getOperand())).simplify();
-            }
-            if (leftOperandSimple.toString().equals(rightOperandSimple.toString())) {
-                return new Num(0);
+    protected Expression simplifySelf(Expression leftOperandSimple, Expression rightOperandSimple) {
+        Expression folded = foldSelf(leftOperandSimple, rightOperandSimple);
+        if (folded != null) {
+            return folded;
+        }
+        if (rightOperandSimple instanceof Neg) {
+            Expression negated = ((Neg) rightOperandSimple).getOperand();
+            return new Plus(leftOperandSimple, negated).simplifySelf(leftOperandSimple, negated);
+        }
+        if (leftOperandSimple.equals(rightOperandSimple)) {
+            return new Num(0);
+        }
+        if (leftOperandSimple.isConstant()) {
+            double evalLOperand = leftOperandSimple.constantValue();
+            if (evalLOperand == 0) {
+                return new Neg(rightOperandSimple);
             }
-            try {
-                evalLOperand = leftOperandSimple.evaluate();
-                try {
-                    evalROperand = rightOperandSimple.evaluate();
-                    return new Num(evalLOperand - evalROperand);
-                } catch (Exception evalROperandError) {
-                    if (evalLOperand == 0) {
-                        return new Neg(rightOperandSimple);
-                    }
-                    return new Minus(new Num(evalLOperand), rightOperandSimple);
-                }
-            } catch (Exception evalLOperandError) {
-                try {
-                    evalROperand = rightOperandSimple.evaluate();
-                    if (evalROperand == 0) {
-                        return leftOperandSimple;
-                    }
-                    return new Minus(leftOperandSimple, new Num(evalROperand));
-                } catch (Exception evalROperandError) {
-                    return new Minus(leftOperandSimple, rightOperandSimple);
-                }
+            return new Minus(new Num(evalLOperand), rightOperandSimple);
+        }
+        if (rightOperandSimple.isConstant()) {
+            double evalROperand = rightOperandSimple.constantValue();
+            if (evalROperand == 0) {
+                return leftOperandSimple;
             }
+            return new Minus(leftOperandSimple, new Num(evalROperand));
         }
+        return new Minus(leftOperandSimple, rightOperandSimple);
     }
 
     @Override
@@ -96,4 +108,21 @@ public class Minus extends BinaryExpression {
     protected double evaluateSelf(double leftOperand, double rightOperand) {
         return leftOperand - rightOperand;
     }
-}
\ No newline at end of file
+
+    @Override
+    protected void evaluateColumns(double[] leftOperand, double[] rightOperand, double[] out, boolean[] failed) {
+        for (int i = 0; i < out.length; i++) {
+            out[i] = leftOperand[i] - rightOperand[i];
+        }
+    }
+
+    @Override
+    protected double leftPartialSelf(double leftOperand, double rightOperand) {
+        return 1;
+    }
+
+    @Override
+    protected double rightPartialSelf(double leftOperand, double rightOperand) {
+        return -1;
+    }
+}
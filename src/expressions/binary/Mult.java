@@ -20,72 +20,83 @@ public class Mult extends BinaryExpression {
     }
 
     /**
-     * Returns a string representation of the multiplication expression.
+     * Returns the operator text toString prints between the operands of the multiplication expression.
      *
-     * @return the string representation of the expression
+     * @return the operator text
      */
     @Override
-    public String toString() {
-        return "(" + super.getLeftOperand().toString() + " * " + super.getRightOperand().toString() + ")";
+    protected String operatorSelf() {
+        return " * ";
     }
 
     /**
-     * Computes the derivative of the multiplication expression with respect to the given variable.
+     * Returns the precedence of the multiplication expression, which minimal output uses to place parentheses.
      *
-     * @param var the variable to differentiate by
+     * @return the precedence of the operator
+     */
+    @Override
+    protected int precedenceSelf() {
+        return PRECEDENCE_MULTIPLICATIVE;
+    }
+
+    /**
+     * Returns the estimated cost of evaluating the multiplication expression once its operands are known.
+     *
+     * @return the estimated cost of the operator
+     */
+    @Override
+    protected int costSelf() {
+        return COST_ARITHMETIC;
+    }
+
+    /**
+     * Computes the derivative of the multiplication expression from the derivatives of its operands.
+     *
+     * @param leftOperandDerivative  the derivative of the left operand
+     * @param rightOperandDerivative the derivative of the right operand
      * @return the derivative of the expression
      */
     @Override
-    public Expression differentiate(String var) {
-        return new Plus(new Mult(super.getLeftOperand().differentiate(var), super.getRightOperand()),
-                new Mult(super.getLeftOperand(), super.getRightOperand().differentiate(var)));
+    protected Expression differentiateSelf(Expression leftOperandDerivative, Expression rightOperandDerivative) {
+        return new Plus(new Mult(leftOperandDerivative, super.getRightOperand()),
+                new Mult(super.getLeftOperand(), rightOperandDerivative));
     }
 
     /**
-     * Simplifies the multiplication expression by evaluating it if possible or applying simplification rules.
+     * Simplifies the multiplication of two simplified operands by folding constants or applying simplification rules.
      *
+     * @param leftOperandSimple  the simplified left operand
+     * @param rightOperandSimple the simplified right operand
      * @return the simplified expression
      */
     @Override
-    public Expression simplify() {
-        Expression leftOperandSimple, rightOperandSimple;
-        double evalLOperand, evalROperand;
-        try {
-            double evaluated = this.evaluate();
-            return new Num(evaluated);
-        } catch (Exception evalExpError) {
-            leftOperandSimple = super.getLeftOperand().simplify();
-            rightOperandSimple = super.getRightOperand().simplify();
-            if (leftOperandSimple.toString().equals(rightOperandSimple.toString())) {
-                return new Pow(leftOperandSimple, new Num(2));
+    protected Expression simplifySelf(Expression leftOperandSimple, Expression rightOperandSimple) {
+        Expression folded = foldSelf(leftOperandSimple, rightOperandSimple);
+        if (folded != null) {
+            return folded;
+        }
+        if (leftOperandSimple.equals(rightOperandSimple)) {
+            return new Pow(leftOperandSimple, new Num(2));
+        }
+        if (leftOperandSimple.isConstant()) {
+            double evalLOperand = leftOperandSimple.constantValue();
+            if (evalLOperand == 0) {
+                return new Num(0);
+            } else if (evalLOperand == 1) {
+                return rightOperandSimple;
             }
-            try {
-                evalLOperand = leftOperandSimple.evaluate();
-                try {
-                    evalROperand = rightOperandSimple.evaluate();
-                    return new Num(evalROperand * evalLOperand);
-                } catch (Exception evalROperandError) {
-                    if (evalLOperand == 0) {
-                        return new Num(0);
-                    } else if (evalLOperand == 1) {
-                        return rightOperandSimple;
-                    }
-                    return new Mult(new Num(evalLOperand), rightOperandSimple);
-                }
-            } catch (Exception evalLOperandError) {
-                try {
-                    evalROperand = rightOperandSimple.evaluate();
-                    if (evalROperand == 0) {
-                        return new Num(0);
-                    } else if (evalROperand == 1) {
-                        return leftOperandSimple;
-                    }
-                    return new Mult(leftOperandSimple, new Num(evalROperand));
-                } catch (Exception evalROperandError) {
-                    return new Mult(leftOperandSimple, rightOperandSimple);
-                }
+            return new Mult(new Num(evalLOperand), rightOperandSimple);
+        }
+        if (rightOperandSimple.isConstant()) {
+            double evalROperand = rightOperandSimple.constantValue();
+            if (evalROperand == 0) {
+                return new Num(0);
+            } else if (evalROperand == 1) {
+                return leftOperandSimple;
             }
+            return new Mult(leftOperandSimple, new Num(evalROperand));
         }
+        return new Mult(leftOperandSimple, rightOperandSimple);
     }
 
     @Override
@@ -100,4 +111,21 @@ public class Mult extends BinaryExpression {
         }
         return leftOperand * rightOperand;
     }
+
+    @Override
+    protected void evaluateColumns(double[] leftOperand, double[] rightOperand, double[] out, boolean[] failed) {
+        for (int i = 0; i < out.length; i++) {
+            out[i] = leftOperand[i] == 0 || rightOperand[i] == 0 ? 0 : leftOperand[i] * rightOperand[i];
+        }
+    }
+
+    @Override
+    protected double leftPartialSelf(double leftOperand, double rightOperand) {
+        return rightOperand;
+    }
+
+    @Override
+    protected double rightPartialSelf(double leftOperand, double rightOperand) {
+        return leftOperand;
+    }
 }
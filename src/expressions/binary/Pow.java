@@ -20,77 +20,75 @@ public class Pow extends BinaryExpression {
     }
 
     /**
-     * Returns a string representation of the power expression.
+     * Returns the operator text toString prints between the operands of the power expression.
      *
-     * @return the string representation of the expression
+     * @return the operator text
      */
     @Override
-    public String toString() {
-        return "(" + super.getLeftOperand().toString() + "^" + super.getRightOperand().toString() + ")";
+    protected String operatorSelf() {
+        return "^";
     }
 
     /**
-     * Computes the derivative of the power expression with respect to the given variable.
+     * Returns the precedence of the power expression, which minimal output uses to place parentheses.
      *
-     * @param var the variable to differentiate by
+     * @return the precedence of the operator
+     */
+    @Override
+    protected int precedenceSelf() {
+        return PRECEDENCE_POWER;
+    }
+
+    /**
+     * Computes the derivative of the power expression from the derivatives of its operands.
+     *
+     * @param leftOperandDerivative  the derivative of the left operand
+     * @param rightOperandDerivative the derivative of the right operand
      * @return the derivative of the expression
      */
     @Override
-    public Expression differentiate(String var) {
-        return new Mult(new Pow(super.getLeftOperand(), super.getRightOperand()),
-                new Plus(new Mult(super.getLeftOperand().differentiate(var),
-                        new Div(super.getRightOperand(), super.getLeftOperand())),
-                        new Mult(super.getRightOperand().differentiate(var),
-                                new Log(new Const("e", 2.71), super.getLeftOperand()))));
+    protected Expression differentiateSelf(Expression leftOperandDerivative, Expression rightOperandDerivative) {
+        return new Mult(this,
+                new Plus(new Mult(leftOperandDerivative, new Div(super.getRightOperand(), super.getLeftOperand())),
+                        new Mult(rightOperandDerivative, new Log(new Const("e", 2.71), super.getLeftOperand()))));
     }
 
 
     /**
-     * Simplifies the power expression by evaluating it if possible or applying simplification rules.
+     * Simplifies the power of two simplified operands by folding constants or applying simplification rules.
+     * An illegal power of constant operands is kept as is.
      *
+     * @param leftOperandSimple  the simplified base
+     * @param rightOperandSimple the simplified exponent
      * @return the simplified expression
      */
     @Override
-    public Expression simplify() {
-        Expression leftOperandSimple, rightOperandSimple;
-        double evalLOperand, evalROperand;
-        try {
-            double evaluated = this.evaluate();
-            return new Num(evaluated);
-        } catch (Exception evalExpError) {
-            leftOperandSimple = super.getLeftOperand().simplify();
-            rightOperandSimple = super.getRightOperand().simplify();
-            try {
-                evalLOperand = leftOperandSimple.evaluate();
-                try {
-                    evalROperand = rightOperandSimple.evaluate();
-                    if (evalLOperand < 0 && (evalROperand > 0
-                            && evalROperand < 1 && Math.pow(evalROperand, -1) % 2 == 0)) {
-                        return new Pow(leftOperandSimple, rightOperandSimple);
-                    }
-                    return new Num(Math.pow(evalROperand, evalLOperand));
-                } catch (Exception evalROperandError) {
-                    if (evalLOperand == 0) {
-                        return new Num(0);
-                    } else if (evalLOperand == 1) {
-                        return new Num(1);
-                    }
-                    return new Pow(new Num(evalLOperand), rightOperandSimple);
-                }
-            } catch (Exception evalLOperandError) {
-                try {
-                    evalROperand = rightOperandSimple.evaluate();
-                    if (evalROperand == 0) {
-                        return new Num(1);
-                    } else if (evalROperand == 1) {
-                        return leftOperandSimple;
-                    }
-                    return new Pow(leftOperandSimple, new Num(evalROperand));
-                } catch (Exception evalROperandError) {
-                    return new Pow(leftOperandSimple, rightOperandSimple);
-                }
+    protected Expression simplifySelf(Expression leftOperandSimple, Expression rightOperandSimple) {
+        if (leftOperandSimple.isConstant() && rightOperandSimple.isConstant()) {
+            if (isIllegalPower(leftOperandSimple.constantValue(), rightOperandSimple.constantValue())) {
+                return new Pow(leftOperandSimple, rightOperandSimple);
             }
+            return foldSelf(leftOperandSimple, rightOperandSimple);
         }
+        if (leftOperandSimple.isConstant()) {
+            double evalLOperand = leftOperandSimple.constantValue();
+            if (evalLOperand == 0) {
+                return new Num(0);
+            } else if (evalLOperand == 1) {
+                return new Num(1);
+            }
+            return new Pow(new Num(evalLOperand), rightOperandSimple);
+        }
+        if (rightOperandSimple.isConstant()) {
+            double evalROperand = rightOperandSimple.constantValue();
+            if (evalROperand == 0) {
+                return new Num(1);
+            } else if (evalROperand == 1) {
+                return leftOperandSimple;
+            }
+            return new Pow(leftOperandSimple, new Num(evalROperand));
+        }
+        return new Pow(leftOperandSimple, rightOperandSimple);
     }
 
     @Override
@@ -104,14 +102,32 @@ public class Pow extends BinaryExpression {
     }
 
     @Override
-    public double evaluate() throws Exception {
-        double leftOperandValue = getLeftOperand().evaluate();
-        double rightOperandValue = getRightOperand().evaluate();
-        if (leftOperandValue < 0 && (rightOperandValue > 0
-                && rightOperandValue < 1 && Math.pow(rightOperandValue, -1) % 2 == 0)) {
+    protected double evaluateCheckedSelf(double leftOperand, double rightOperand) throws Exception {
+        if (isIllegalPower(leftOperand, rightOperand)) {
             throw new ArithmeticException("illegal power evaluation");
         }
-        return Math.pow(leftOperandValue, rightOperandValue);
+        return Math.pow(leftOperand, rightOperand);
+    }
+
+    private static boolean isIllegalPower(double base, double exponent) {
+        return base < 0 && (exponent > 0 && exponent < 1 && Math.pow(exponent, -1) % 2 == 0);
+    }
+
+    @Override
+    protected void evaluateColumns(double[] leftOperand, double[] rightOperand, double[] out, boolean[] failed) {
+        for (int i = 0; i < out.length; i++) {
+            out[i] = Math.pow(leftOperand[i], rightOperand[i]);
+        }
+    }
 
+    // the partials follow differentiate(), which takes the natural logarithm with base e = 2.71
+    @Override
+    protected double leftPartialSelf(double leftOperand, double rightOperand) {
+        return Math.pow(leftOperand, rightOperand) * (rightOperand / leftOperand);
+    }
+
+    @Override
+    protected double rightPartialSelf(double leftOperand, double rightOperand) {
+        return Math.pow(leftOperand, rightOperand) * Math.log(leftOperand) / Math.log(2.71);
     }
 }
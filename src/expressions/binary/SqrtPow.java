@@ -0,0 +1,65 @@
+package expressions.binary;
+
+import interfaces.Expression;
+
+/**
+ * A class that represents a power with the exponent 0.5, evaluated by Math.sqrt instead of Math.pow.
+ * It prints, differentiates and simplifies like the power expression it replaces, and rejects
+ * negative bases during evaluate() the same way.
+ */
+public class SqrtPow extends Pow {
+
+    /**
+     * Constructs a square root power.
+     *
+     * @param leftOperand  the base
+     * @param rightOperand the exponent, a constant with the value 0.5
+     */
+    public SqrtPow(Expression leftOperand, Expression rightOperand) {
+        super(leftOperand, rightOperand);
+        if (!rightOperand.isConstant() || rightOperand.constantValue() != 0.5) {
+            throw new IllegalArgumentException("The exponent is not the constant 0.5: " + rightOperand);
+        }
+    }
+
+    /**
+     * Returns the estimated cost of evaluating the square root once its base is known, about that of a division.
+     *
+     * @return the estimated cost of the operator
+     */
+    @Override
+    protected int costSelf() {
+        return COST_DIVISION;
+    }
+
+    @Override
+    protected double evaluateSelf(double leftOperand, double rightOperand) {
+        return squareRoot(leftOperand);
+    }
+
+    @Override
+    protected double evaluateCheckedSelf(double leftOperand, double rightOperand) throws Exception {
+        if (leftOperand < 0) {
+            throw new ArithmeticException("illegal power evaluation");
+        }
+        return squareRoot(leftOperand);
+    }
+
+    @Override
+    protected void evaluateColumns(double[] leftOperand, double[] rightOperand, double[] out, boolean[] failed) {
+        for (int i = 0; i < out.length; i++) {
+            out[i] = squareRoot(leftOperand[i]);
+        }
+    }
+
+    /**
+     * Math.sqrt, except for the two bases where Math.pow with 0.5 differs: -0.0 gives 0.0 and negative
+     * infinity gives positive infinity.
+     */
+    private static double squareRoot(double base) {
+        if (base == Double.NEGATIVE_INFINITY) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return Math.sqrt(base) + 0.0;
+    }
+}
@@ -1,18 +1,21 @@
 package expressions.elements;
 
+import interfaces.CompiledExpression;
 import interfaces.Expression;
 
+import java.io.IOException;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
 /**
- * A class that represents a constant value in an expression.
+ * A class that represents a constant value in an expression. Constants are immutable and thread-safe.
  */
 
 public class Const implements Expression {
-    private String symbol;
-    private double value;
+    private final String symbol;
+    private final double value;
 
     /**
      * Constructs a constant expression with the given symbol and value.
@@ -25,6 +28,43 @@ public class Const implements Expression {
         this.value = value;
     }
 
+    /**
+     * Returns the symbol of the constant.
+     *
+     * @return the symbol of the constant
+     */
+    public String getSymbol() {
+        return symbol;
+    }
+
+    /**
+     * Returns whether the given object is a constant expression with the same symbol and value.
+     *
+     * @param other the object to compare with
+     * @return true if the expressions are equal
+     */
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof Const)) {
+            return false;
+        }
+        Const that = (Const) other;
+        return symbol.equals(that.symbol) && Double.doubleToLongBits(value) == Double.doubleToLongBits(that.value);
+    }
+
+    /**
+     * Returns the hash code of the constant expression.
+     *
+     * @return the hash code
+     */
+    @Override
+    public int hashCode() {
+        return 31 * symbol.hashCode() + Double.hashCode(value);
+    }
+
     /**
      * Evaluates the constant expression by returning its value.
      *
@@ -48,6 +88,20 @@ public class Const implements Expression {
         return value;
     }
 
+    /**
+     * Evaluates the constant expression together with its directional derivative, which is always 0.
+     *
+     * @param assignment a map of variable assignments (not used in constant evaluation)
+     * @param direction  the derivative of each variable along the direction (not used in constant evaluation)
+     * @param derivative a one-element array the directional derivative is written to
+     * @return the value of the constant expression
+     */
+    @Override
+    public double evaluateDual(Map<String, Double> assignment, Map<String, Double> direction, double[] derivative) {
+        derivative[0] = 0;
+        return value;
+    }
+
     /**
      * Return's the variables used in the Const expression. Will always return an empty list.
      *
@@ -92,6 +146,29 @@ public class Const implements Expression {
         return symbol;
     }
 
+    /**
+     * Writes the string representation of the constant expression to an output.
+     *
+     * @param out the output the text is appended to
+     * @throws IOException if appending to the output fails
+     */
+    @Override
+    public void appendTo(Appendable out) throws IOException {
+        out.append(symbol);
+    }
+
+    /**
+     * Writes the string representation of the constant expression to an output; it needs no parentheses.
+     *
+     * @param out                the output the text is appended to
+     * @param minimalParentheses ignored
+     * @throws IOException if appending to the output fails
+     */
+    @Override
+    public void appendTo(Appendable out, boolean minimalParentheses) throws IOException {
+        appendTo(out);
+    }
+
 
     /**
      * Simplifies the constant expression by returning the constant itself.
@@ -102,4 +179,46 @@ public class Const implements Expression {
     public Expression simplify() {
         return this;
     }
+
+    /**
+     * Compiles the constant expression into an evaluator that always returns its value.
+     *
+     * @param variableOrder the variable order (not used in constant evaluation)
+     * @return the compiled expression
+     */
+    @Override
+    public CompiledExpression compile(List<String> variableOrder) {
+        return values -> value;
+    }
+
+    /**
+     * Evaluates the constant expression over columns by filling the output with its value.
+     *
+     * @param columns the values of each variable (not used in constant evaluation)
+     * @param out     the array the results are written to
+     */
+    @Override
+    public void evaluateBatch(Map<String, double[]> columns, double[] out) {
+        Arrays.fill(out, value);
+    }
+
+    /**
+     * Returns whether the constant expression is a literal constant, which it always is.
+     *
+     * @return true
+     */
+    @Override
+    public boolean isConstant() {
+        return true;
+    }
+
+    /**
+     * Returns the value of the constant expression.
+     *
+     * @return the value
+     */
+    @Override
+    public double constantValue() {
+        return value;
+    }
 }
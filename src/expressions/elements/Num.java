@@ -1,16 +1,19 @@
 package expressions.elements;
 
+import interfaces.CompiledExpression;
 import interfaces.Expression;
 
+import java.io.IOException;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
 /**
- * A class that represents a numerical value in an expression.
+ * A class that represents a numerical value in an expression. Numbers are immutable and thread-safe.
  */
 public class Num implements Expression {
-    private double num;
+    private final double num;
 
     /**
      * Constructs a numerical expression with the given value.
@@ -21,6 +24,33 @@ public class Num implements Expression {
         this.num = num;
     }
 
+    /**
+     * Returns whether the given object is a numerical expression with the same value.
+     *
+     * @param other the object to compare with
+     * @return true if the expressions are equal
+     */
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof Num)) {
+            return false;
+        }
+        return Double.doubleToLongBits(num) == Double.doubleToLongBits(((Num) other).num);
+    }
+
+    /**
+     * Returns the hash code of the numerical expression.
+     *
+     * @return the hash code
+     */
+    @Override
+    public int hashCode() {
+        return Double.hashCode(num);
+    }
+
     /**
      * Evaluates the numerical expression by returning its value.
      *
@@ -44,6 +74,20 @@ public class Num implements Expression {
         return num;
     }
 
+    /**
+     * Evaluates the numerical expression together with its directional derivative, which is always 0.
+     *
+     * @param assignment a map of variable assignments (not used in numerical evaluation)
+     * @param direction  the derivative of each variable along the direction (not used in numerical evaluation)
+     * @param derivative a one-element array the directional derivative is written to
+     * @return the value of the numerical expression
+     */
+    @Override
+    public double evaluateDual(Map<String, Double> assignment, Map<String, Double> direction, double[] derivative) {
+        derivative[0] = 0;
+        return num;
+    }
+
     /**
      * Returns a list of variables of the expression (an empty list).
      *
@@ -64,6 +108,29 @@ public class Num implements Expression {
         return String.valueOf(num);
     }
 
+    /**
+     * Writes the string representation of the numerical expression to an output.
+     *
+     * @param out the output the text is appended to
+     * @throws IOException if appending to the output fails
+     */
+    @Override
+    public void appendTo(Appendable out) throws IOException {
+        out.append(String.valueOf(num));
+    }
+
+    /**
+     * Writes the string representation of the numerical expression to an output; it needs no parentheses.
+     *
+     * @param out                the output the text is appended to
+     * @param minimalParentheses ignored
+     * @throws IOException if appending to the output fails
+     */
+    @Override
+    public void appendTo(Appendable out, boolean minimalParentheses) throws IOException {
+        appendTo(out);
+    }
+
     /**
      * Assigns a new expression to the given variable in the numerical expression.
      *
@@ -96,4 +163,46 @@ public class Num implements Expression {
     public Expression simplify() {
         return this;
     }
+
+    /**
+     * Compiles the numerical expression into an evaluator that always returns its value.
+     *
+     * @param variableOrder the variable order (not used in numerical evaluation)
+     * @return the compiled expression
+     */
+    @Override
+    public CompiledExpression compile(List<String> variableOrder) {
+        return values -> num;
+    }
+
+    /**
+     * Evaluates the numerical expression over columns by filling the output with its value.
+     *
+     * @param columns the values of each variable (not used in numerical evaluation)
+     * @param out     the array the results are written to
+     */
+    @Override
+    public void evaluateBatch(Map<String, double[]> columns, double[] out) {
+        Arrays.fill(out, num);
+    }
+
+    /**
+     * Returns whether the numerical expression is a literal constant, which it always is.
+     *
+     * @return true
+     */
+    @Override
+    public boolean isConstant() {
+        return true;
+    }
+
+    /**
+     * Returns the value of the numerical expression.
+     *
+     * @return the value
+     */
+    @Override
+    public double constantValue() {
+        return num;
+    }
 }
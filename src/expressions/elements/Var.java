@@ -1,16 +1,18 @@
 package expressions.elements;
 
+import interfaces.CompiledExpression;
 import interfaces.Expression;
 
-import java.util.ArrayList;
+import java.io.IOException;
 import java.util.List;
 import java.util.Map;
 
 /**
- * A class that represents a variable in an expression.
+ * A class that represents a variable in an expression. Variables are immutable and thread-safe.
  */
 public class Var implements Expression {
-    private String variableName;
+    private final String variableName;
+    private final List<String> variables;
 
     /**
      * Constructs a variable expression with the given variable name.
@@ -19,6 +21,40 @@ public class Var implements Expression {
      */
     public Var(String variableName) {
         this.variableName = variableName;
+        this.variables = List.of(variableName);
+    }
+
+    /**
+     * Returns the name of the variable.
+     *
+     * @return the name of the variable
+     */
+    public String getVariableName() {
+        return variableName;
+    }
+
+    /**
+     * Returns whether the given object is a variable expression with the same name.
+     *
+     * @param other the object to compare with
+     * @return true if the expressions are equal
+     */
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        return other instanceof Var && variableName.equals(((Var) other).variableName);
+    }
+
+    /**
+     * Returns the hash code of the variable expression.
+     *
+     * @return the hash code
+     */
+    @Override
+    public int hashCode() {
+        return variableName.hashCode();
     }
 
     /**
@@ -52,15 +88,32 @@ public class Var implements Expression {
     }
 
     /**
-     * Returns a list containing the variable name.
+     * Evaluates the variable expression together with its directional derivative,
+     * which is the variable's component of the direction.
      *
-     * @return a list containing the variable name
+     * @param assignment a map of variable assignments
+     * @param direction  the derivative of each variable along the direction; a missing variable has derivative 0
+     * @param derivative a one-element array the directional derivative is written to
+     * @return the value of the variable from the assignment map
+     * @throws Exception if the variable is not found in the assignment map
+     */
+    @Override
+    public double evaluateDual(Map<String, Double> assignment, Map<String, Double> direction, double[] derivative)
+            throws Exception {
+        double value = evaluate(assignment);
+        Double variableDerivative = direction.get(variableName);
+        derivative[0] = variableDerivative == null ? 0 : variableDerivative;
+        return value;
+    }
+
+    /**
+     * Returns a list containing the variable name, created once with the variable.
+     *
+     * @return an unmodifiable list containing the variable name
      */
     @Override
     public List<String> getVariables() {
-        List<String> var = new ArrayList<>();
-        var.add(variableName);
-        return var;
+        return variables;
     }
 
     /**
@@ -73,6 +126,29 @@ public class Var implements Expression {
         return variableName;
     }
 
+    /**
+     * Writes the string representation of the variable expression to an output.
+     *
+     * @param out the output the text is appended to
+     * @throws IOException if appending to the output fails
+     */
+    @Override
+    public void appendTo(Appendable out) throws IOException {
+        out.append(variableName);
+    }
+
+    /**
+     * Writes the string representation of the variable expression to an output; it needs no parentheses.
+     *
+     * @param out                the output the text is appended to
+     * @param minimalParentheses ignored
+     * @throws IOException if appending to the output fails
+     */
+    @Override
+    public void appendTo(Appendable out, boolean minimalParentheses) throws IOException {
+        appendTo(out);
+    }
+
     /**
      * Assigns a new expression to the given variable in the variable expression.
      *
@@ -112,4 +188,63 @@ public class Var implements Expression {
     public Expression simplify() {
         return this;
     }
-}
\ No newline at end of file
+
+    /**
+     * Compiles the variable expression by resolving it to its index in the variable order.
+     * If the variable is not part of the order, the compiled expression fails on evaluation,
+     * just like evaluating with an assignment that is missing the variable.
+     *
+     * @param variableOrder the variable names, in the order their values appear in the evaluator's input
+     * @return the compiled expression
+     */
+    @Override
+    public CompiledExpression compile(List<String> variableOrder) {
+        int index = variableOrder.indexOf(variableName);
+        if (index < 0) {
+            return values -> {
+                throw new Exception("Symbol not found in assignment: " + variableName);
+            };
+        }
+        return values -> values[index];
+    }
+
+    /**
+     * Evaluates the variable expression over columns by copying its column into the output.
+     *
+     * @param columns the values of each variable, one array per variable
+     * @param out     the array the results are written to
+     * @throws Exception if the variable has no column or its column is shorter than the output
+     */
+    @Override
+    public void evaluateBatch(Map<String, double[]> columns, double[] out) throws Exception {
+        double[] column = columns.get(variableName);
+        if (column == null) {
+            throw new Exception("Symbol not found in assignment: " + variableName);
+        }
+        if (column.length < out.length) {
+            throw new Exception("Column too short for variable: " + variableName);
+        }
+        System.arraycopy(column, 0, out, 0, out.length);
+    }
+
+    /**
+     * Returns whether the variable expression is a literal constant, which it never is.
+     *
+     * @return false
+     */
+    @Override
+    public boolean isConstant() {
+        return false;
+    }
+
+    /**
+     * A variable has no constant value.
+     *
+     * @return never returns normally
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public double constantValue() {
+        throw new UnsupportedOperationException("Not a constant: " + variableName);
+    }
+}
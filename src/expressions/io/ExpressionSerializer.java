@@ -0,0 +1,397 @@
+package expressions.io;
+
+import expressions.base.BaseExpression;
+import expressions.base.BinaryExpression;
+import expressions.base.NaryExpression;
+import expressions.base.UnaryExpression;
+import expressions.binary.Div;
+import expressions.binary.Log;
+import expressions.binary.Minus;
+import expressions.binary.Mult;
+import expressions.binary.Plus;
+import expressions.binary.Pow;
+import expressions.elements.Const;
+import expressions.elements.Num;
+import expressions.elements.Var;
+import expressions.nary.Product;
+import expressions.nary.Sum;
+import expressions.unary.Cos;
+import expressions.unary.Neg;
+import expressions.unary.Sin;
+import interfaces.Expression;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A class that stores expressions in a compact binary format and reads them back.
+ * <p>
+ * An encoded expression is a header, a constant pool, a name pool and an opcode stream:
+ * <pre>
+ *   magic "EXPR", version byte
+ *   varint constant count, then per constant: tag byte (number or named constant), 8-byte double,
+ *       and for named constants a varint-length UTF-8 symbol
+ *   varint name count, then per name: varint-length UTF-8 variable name
+ *   varint node count, then per node: opcode byte followed by varint operands
+ * </pre>
+ * Leaf opcodes refer to an entry of the constant or name pool. Operator opcodes refer to their operands by
+ * their distance back in the node stream, sums and products after a varint operand count, so every operand
+ * precedes its users and the last node is the root. Trees are encoded with an explicit stack, so their depth
+ * is limited only by the heap.
+ * Structurally equal subtrees are written once and shared on reading, values keep their full precision,
+ * and named constants keep their values, which toString does not print. Expressions that stand for another
+ * tree, such as polynomials and lazy derivatives, are written as the tree they resolve to.
+ */
+public class ExpressionSerializer {
+    private static final int MAGIC = 0x45585052;
+    private static final int VERSION = 1;
+
+    private static final int TAG_NUM = 0;
+    private static final int TAG_CONST = 1;
+
+    private static final int OP_CONSTANT = 0;
+    private static final int OP_VAR = 1;
+    private static final int OP_PLUS = 2;
+    private static final int OP_MINUS = 3;
+    private static final int OP_MULT = 4;
+    private static final int OP_DIV = 5;
+    private static final int OP_POW = 6;
+    private static final int OP_LOG = 7;
+    private static final int OP_SIN = 8;
+    private static final int OP_COS = 9;
+    private static final int OP_NEG = 10;
+    private static final int OP_SUM = 11;
+    private static final int OP_PRODUCT = 12;
+
+    private static final int INITIAL_DEPTH = 32;
+
+    /**
+     * Writes the binary encoding of an expression to a stream.
+     *
+     * @param expression the expression to write
+     * @param out        the stream to write to; it is flushed but not closed
+     * @throws IOException if writing fails or the expression contains a node type the format does not support
+     */
+    public void writeTo(Expression expression, OutputStream out) throws IOException {
+        Encoder encoder = new Encoder();
+        encoder.add(expression);
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+        data.writeInt(MAGIC);
+        data.writeByte(VERSION);
+        writeVarint(data, encoder.constants.size());
+        for (Expression constant : encoder.constants) {
+            if (constant instanceof Const) {
+                data.writeByte(TAG_CONST);
+                data.writeDouble(constant.constantValue());
+                writeString(data, ((Const) constant).getSymbol());
+            } else {
+                data.writeByte(TAG_NUM);
+                data.writeDouble(constant.constantValue());
+            }
+        }
+        writeVarint(data, encoder.names.size());
+        for (String name : encoder.names) {
+            writeString(data, name);
+        }
+        writeVarint(data, encoder.nodes.size());
+        for (int i = 0; i < encoder.nodes.size(); i++) {
+            int[] node = encoder.nodes.get(i);
+            data.writeByte(node[0]);
+            for (int operand = 1; operand < node.length; operand++) {
+                writeVarint(data, node[operand]);
+            }
+        }
+        data.flush();
+    }
+
+    /**
+     * Reads one expression from a buffer, starting at its position.
+     * The position is advanced past the expression, so consecutive expressions can be read from one buffer.
+     *
+     * @param in the buffer to read from, such as a memory-mapped file
+     * @return the expression that was read
+     * @throws IOException if the buffer does not hold a valid encoded expression
+     */
+    public Expression readFrom(ByteBuffer in) throws IOException {
+        try {
+            if (in.getInt() != MAGIC) {
+                throw new IOException("Not an encoded expression");
+            }
+            int version = in.get();
+            if (version != VERSION) {
+                throw new IOException("Unsupported encoding version: " + version);
+            }
+            Expression[] constants = new Expression[readCount(in)];
+            for (int i = 0; i < constants.length; i++) {
+                int tag = in.get();
+                double value = in.getDouble();
+                if (tag == TAG_CONST) {
+                    constants[i] = new Const(readString(in), value);
+                } else if (tag == TAG_NUM) {
+                    constants[i] = new Num(value);
+                } else {
+                    throw new IOException("Unknown constant tag: " + tag);
+                }
+            }
+            Expression[] variables = new Expression[readCount(in)];
+            for (int i = 0; i < variables.length; i++) {
+                variables[i] = new Var(readString(in));
+            }
+            Expression[] nodes = new Expression[readCount(in)];
+            if (nodes.length == 0) {
+                throw new IOException("Empty expression");
+            }
+            for (int i = 0; i < nodes.length; i++) {
+                nodes[i] = readNode(in, i, nodes, constants, variables);
+            }
+            return nodes[nodes.length - 1];
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated expression", e);
+        }
+    }
+
+    private Expression readNode(ByteBuffer in, int index, Expression[] nodes, Expression[] constants,
+                                Expression[] variables) throws IOException {
+        int opcode = in.get();
+        switch (opcode) {
+            case OP_CONSTANT:
+                return poolEntry(constants, readVarint(in));
+            case OP_VAR:
+                return poolEntry(variables, readVarint(in));
+            case OP_SIN:
+                return new Sin(operand(in, index, nodes));
+            case OP_COS:
+                return new Cos(operand(in, index, nodes));
+            case OP_NEG:
+                return new Neg(operand(in, index, nodes));
+            case OP_SUM:
+                return new Sum(operands(in, index, nodes));
+            case OP_PRODUCT:
+                return new Product(operands(in, index, nodes));
+            default:
+                Expression leftOperand = operand(in, index, nodes);
+                Expression rightOperand = operand(in, index, nodes);
+                switch (opcode) {
+                    case OP_PLUS:
+                        return new Plus(leftOperand, rightOperand);
+                    case OP_MINUS:
+                        return new Minus(leftOperand, rightOperand);
+                    case OP_MULT:
+                        return new Mult(leftOperand, rightOperand);
+                    case OP_DIV:
+                        return new Div(leftOperand, rightOperand);
+                    case OP_POW:
+                        return new Pow(leftOperand, rightOperand);
+                    case OP_LOG:
+                        return new Log(leftOperand, rightOperand);
+                    default:
+                        throw new IOException("Unknown opcode: " + opcode);
+                }
+        }
+    }
+
+    private static Expression operand(ByteBuffer in, int index, Expression[] nodes) throws IOException {
+        int distance = readVarint(in);
+        if (distance < 1 || distance > index) {
+            throw new IOException("Invalid operand reference at node " + index);
+        }
+        return nodes[index - distance];
+    }
+
+    private static List<Expression> operands(ByteBuffer in, int index, Expression[] nodes) throws IOException {
+        int count = readVarint(in);
+        if (count < 2 || count > in.remaining()) {
+            throw new IOException("Invalid operand count at node " + index);
+        }
+        Expression[] operands = new Expression[count];
+        for (int i = 0; i < count; i++) {
+            operands[i] = operand(in, index, nodes);
+        }
+        return Arrays.asList(operands);
+    }
+
+    private static Expression poolEntry(Expression[] pool, int index) throws IOException {
+        if (index < 0 || index >= pool.length) {
+            throw new IOException("Invalid pool reference: " + index);
+        }
+        return pool[index];
+    }
+
+    private static void writeVarint(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarint(ByteBuffer in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.get();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    private static int readCount(ByteBuffer in) throws IOException {
+        int count = readVarint(in);
+        if (count < 0 || count > in.remaining()) {
+            throw new IOException("Invalid count: " + count);
+        }
+        return count;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarint(out, bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) throws IOException {
+        byte[] bytes = new byte[readCount(in)];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Collects the pools and the opcode stream of an expression, writing each distinct subtree once.
+     */
+    private static class Encoder {
+        private final List<Expression> constants = new ArrayList<>();
+        private final Map<Expression, Integer> constantIndices = new HashMap<>();
+        private final List<String> names = new ArrayList<>();
+        private final Map<String, Integer> nameIndices = new HashMap<>();
+        private final List<int[]> nodes = new ArrayList<>();
+        private final Map<Expression, Integer> nodeIndices = new HashMap<>();
+
+        private int add(Expression root) throws IOException {
+            Expression[] pending = new Expression[INITIAL_DEPTH];
+            boolean[] expanded = new boolean[INITIAL_DEPTH];
+            int top = 0;
+            pending[top++] = root;
+            while (top > 0) {
+                Expression expression = pending[--top];
+                if (expanded[top]) {
+                    expanded[top] = false;
+                    Expression resolved = resolve(expression);
+                    if (resolved != expression) {
+                        nodeIndices.put(expression, nodeIndices.get(resolved));
+                    } else {
+                        nodeIndices.put(expression, nodes.size());
+                        nodes.add(encode(expression));
+                    }
+                    continue;
+                }
+                if (nodeIndices.containsKey(expression)) {
+                    continue;
+                }
+                List<Expression> operands = operands(expression);
+                if (top + operands.size() + 1 > pending.length) {
+                    int length = Math.max(pending.length * 2, top + operands.size() + 1);
+                    pending = Arrays.copyOf(pending, length);
+                    expanded = Arrays.copyOf(expanded, length);
+                }
+                expanded[top] = true;
+                pending[top++] = expression;
+                for (int i = operands.size() - 1; i >= 0; i--) {
+                    pending[top++] = operands.get(i);
+                }
+            }
+            return nodeIndices.get(root);
+        }
+
+        // an expression that stands for another tree, such as a polynomial, has that tree written in its place
+        private static List<Expression> operands(Expression expression) {
+            Expression resolved = resolve(expression);
+            if (resolved != expression) {
+                return Collections.singletonList(resolved);
+            }
+            if (expression instanceof BinaryExpression) {
+                BinaryExpression binary = (BinaryExpression) expression;
+                return Arrays.asList(binary.getLeftOperand(), binary.getRightOperand());
+            }
+            if (expression instanceof UnaryExpression) {
+                return Collections.singletonList(((UnaryExpression) expression).getOperand());
+            }
+            if (expression instanceof NaryExpression) {
+                return ((NaryExpression) expression).getOperands();
+            }
+            return Collections.emptyList();
+        }
+
+        private static Expression resolve(Expression expression) {
+            return expression instanceof BaseExpression ? ((BaseExpression) expression).resolve() : expression;
+        }
+
+        private int[] encode(Expression expression) throws IOException {
+            if (expression instanceof Num || expression instanceof Const) {
+                return new int[]{OP_CONSTANT, constantIndices.computeIfAbsent(expression, key -> {
+                    constants.add(key);
+                    return constants.size() - 1;
+                })};
+            } else if (expression instanceof Var) {
+                return new int[]{OP_VAR, nameIndices.computeIfAbsent(((Var) expression).getVariableName(), key -> {
+                    names.add(key);
+                    return names.size() - 1;
+                })};
+            } else if (expression instanceof Sin) {
+                return unary(OP_SIN, ((Sin) expression).getOperand());
+            } else if (expression instanceof Cos) {
+                return unary(OP_COS, ((Cos) expression).getOperand());
+            } else if (expression instanceof Neg) {
+                return unary(OP_NEG, ((Neg) expression).getOperand());
+            } else if (expression instanceof Plus) {
+                return binary(OP_PLUS, ((Plus) expression).getLeftOperand(), ((Plus) expression).getRightOperand());
+            } else if (expression instanceof Minus) {
+                return binary(OP_MINUS, ((Minus) expression).getLeftOperand(), ((Minus) expression).getRightOperand());
+            } else if (expression instanceof Mult) {
+                return binary(OP_MULT, ((Mult) expression).getLeftOperand(), ((Mult) expression).getRightOperand());
+            } else if (expression instanceof Div) {
+                return binary(OP_DIV, ((Div) expression).getLeftOperand(), ((Div) expression).getRightOperand());
+            } else if (expression instanceof Pow) {
+                return binary(OP_POW, ((Pow) expression).getLeftOperand(), ((Pow) expression).getRightOperand());
+            } else if (expression instanceof Log) {
+                return binary(OP_LOG, ((Log) expression).getLeftOperand(), ((Log) expression).getRightOperand());
+            } else if (expression instanceof Sum) {
+                return nary(OP_SUM, ((Sum) expression).getOperands());
+            } else if (expression instanceof Product) {
+                return nary(OP_PRODUCT, ((Product) expression).getOperands());
+            }
+            throw new IOException("Unsupported expression type: " + expression.getClass().getName());
+        }
+
+        private int[] unary(int opcode, Expression operand) {
+            return new int[]{opcode, nodes.size() - nodeIndices.get(operand)};
+        }
+
+        private int[] binary(int opcode, Expression leftOperand, Expression rightOperand) {
+            return new int[]{opcode, nodes.size() - nodeIndices.get(leftOperand),
+                    nodes.size() - nodeIndices.get(rightOperand)};
+        }
+
+        private int[] nary(int opcode, List<Expression> operands) {
+            int[] node = new int[operands.size() + 2];
+            node[0] = opcode;
+            node[1] = operands.size();
+            for (int i = 0; i < operands.size(); i++) {
+                node[i + 2] = nodes.size() - nodeIndices.get(operands.get(i));
+            }
+            return node;
+        }
+    }
+}
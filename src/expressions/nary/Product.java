@@ -0,0 +1,174 @@
+package expressions.nary;
+
+import expressions.base.NaryExpression;
+import expressions.binary.Mult;
+import expressions.binary.Pow;
+import expressions.elements.Num;
+import expressions.unary.Neg;
+import interfaces.Expression;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A class that represents the product of any number of expressions.
+ * Simplifying a product flattens nested products, multiplications and negations into one list of factors,
+ * folds the constant factors into one leading coefficient, collects powers of the same base by adding their
+ * exponents, and orders the factors canonically, so products of the same factors in any order and grouping
+ * simplify to equal expressions.
+ */
+public class Product extends NaryExpression {
+
+    /**
+     * Constructs a product of the given factors.
+     *
+     * @param operands the factors, at least two
+     */
+    public Product(List<Expression> operands) {
+        super(operands);
+    }
+
+    /**
+     * Returns the operator text toString prints between the factors of the product.
+     *
+     * @return the operator text
+     */
+    @Override
+    protected String operatorSelf() {
+        return " * ";
+    }
+
+    /**
+     * Returns the precedence of the product expression, which minimal output uses to place parentheses.
+     *
+     * @return the precedence of the operator
+     */
+    @Override
+    protected int precedenceSelf() {
+        return PRECEDENCE_MULTIPLICATIVE;
+    }
+
+    /**
+     * Computes the derivative of the product by the product rule: the sum, over every factor, of the product
+     * with that factor replaced by its derivative.
+     *
+     * @param operandDerivatives the derivatives of the factors
+     * @return the derivative of the expression
+     */
+    @Override
+    protected Expression differentiateSelf(List<Expression> operandDerivatives) {
+        List<Expression> factors = getOperands();
+        List<Expression> terms = new ArrayList<>(factors.size());
+        for (int i = 0; i < factors.size(); i++) {
+            List<Expression> term = new ArrayList<>(factors);
+            term.set(i, operandDerivatives.get(i));
+            terms.add(new Product(term));
+        }
+        return new Sum(terms);
+    }
+
+    /**
+     * Simplifies the product of simplified factors by flattening, folding constants and collecting powers.
+     * The result is a number, a single factor, a multiplication of two factors, or a product of more.
+     *
+     * @param operandsSimple the simplified factors
+     * @return the simplified expression
+     */
+    @Override
+    protected Expression simplifySelf(List<Expression> operandsSimple) {
+        Map<Expression, double[]> exponents = new LinkedHashMap<>();
+        double[] coefficient = {1};
+        for (Expression operand : operandsSimple) {
+            collect(operand, exponents, coefficient);
+        }
+        if (coefficient[0] == 0) {
+            return new Num(0);
+        }
+        List<Expression> factors = new ArrayList<>(exponents.size() + 1);
+        for (Map.Entry<Expression, double[]> entry : exponents.entrySet()) {
+            double exponent = entry.getValue()[0];
+            if (exponent == 1) {
+                factors.add(entry.getKey());
+            } else if (exponent != 0) {
+                factors.add(new Pow(entry.getKey(), new Num(exponent)));
+            }
+        }
+        sortCanonically(factors);
+        if (coefficient[0] != 1 || factors.isEmpty()) {
+            factors.add(0, new Num(coefficient[0]));
+        }
+        if (factors.size() == 1) {
+            return factors.get(0);
+        }
+        if (factors.size() == 2) {
+            return new Mult(factors.get(0), factors.get(1));
+        }
+        return new Product(factors);
+    }
+
+    @Override
+    protected Expression assignSelf(List<Expression> operands) {
+        return new Product(operands);
+    }
+
+    @Override
+    protected double combineSelf(double accumulated, double operand) {
+        if (accumulated == 0 || operand == 0) {
+            return 0;
+        }
+        return accumulated * operand;
+    }
+
+    // the partials multiply the other factors with the zero rule of combineSelf, like the terms differentiate
+    // builds, so a zero factor absorbs an infinite or NaN factor next to it
+    @Override
+    protected void partialsSelf(double[] operandValues, double[] partials) {
+        double prefix = 1;
+        for (int i = 0; i < operandValues.length; i++) {
+            partials[i] = prefix;
+            prefix = combineSelf(prefix, operandValues[i]);
+        }
+        double suffix = 1;
+        for (int i = operandValues.length - 1; i >= 0; i--) {
+            partials[i] = combineSelf(partials[i], suffix);
+            suffix = combineSelf(suffix, operandValues[i]);
+        }
+    }
+
+    /**
+     * Multiplies a simplified factor into the collected coefficient and exponents, flattening nested
+     * products, multiplications and negations. The nested factors are kept on an explicit stack, so a long
+     * chain of multiplications cannot overflow the call stack, and are collected from left to right.
+     */
+    private static void collect(Expression factor, Map<Expression, double[]> exponents, double[] coefficient) {
+        Deque<Expression> pending = new ArrayDeque<>();
+        pending.push(factor);
+        while (!pending.isEmpty()) {
+            factor = pending.pop();
+            if (factor.isConstant()) {
+                coefficient[0] *= factor.constantValue();
+            } else if (factor instanceof Product) {
+                List<Expression> operands = ((Product) factor).getOperands();
+                for (int i = operands.size() - 1; i >= 0; i--) {
+                    pending.push(operands.get(i));
+                }
+            } else if (factor instanceof Mult) {
+                pending.push(((Mult) factor).getRightOperand());
+                pending.push(((Mult) factor).getLeftOperand());
+            } else if (factor instanceof Neg) {
+                coefficient[0] = -coefficient[0];
+                pending.push(((Neg) factor).getOperand());
+            } else if (factor instanceof Pow && ((Pow) factor).getRightOperand().isConstant()) {
+                Pow pow = (Pow) factor;
+                exponents.computeIfAbsent(pow.getLeftOperand(), key -> new double[1])[0]
+                        += pow.getRightOperand().constantValue();
+            } else {
+                exponents.computeIfAbsent(factor, key -> new double[1])[0] += 1;
+            }
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package expressions.nary;
+
+import expressions.base.NaryExpression;
+import expressions.binary.Minus;
+import expressions.binary.Mult;
+import expressions.binary.Plus;
+import expressions.elements.Num;
+import expressions.unary.Neg;
+import interfaces.Expression;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A class that represents the sum of any number of expressions.
+ * Simplifying a sum flattens nested sums, additions, subtractions and negations into one list of terms,
+ * folds the constant terms into one number, collects like terms by adding their coefficients, and orders
+ * the terms canonically, so sums of the same terms in any order and grouping simplify to equal expressions.
+ */
+public class Sum extends NaryExpression {
+
+    /**
+     * Constructs a sum of the given terms.
+     *
+     * @param operands the terms, at least two
+     */
+    public Sum(List<Expression> operands) {
+        super(operands);
+    }
+
+    /**
+     * Returns the operator text toString prints between the terms of the sum.
+     *
+     * @return the operator text
+     */
+    @Override
+    protected String operatorSelf() {
+        return " + ";
+    }
+
+    /**
+     * Returns the precedence of the sum expression, which minimal output uses to place parentheses.
+     *
+     * @return the precedence of the operator
+     */
+    @Override
+    protected int precedenceSelf() {
+        return PRECEDENCE_ADDITIVE;
+    }
+
+    /**
+     * Computes the derivative of the sum, the sum of the derivatives of its terms.
+     *
+     * @param operandDerivatives the derivatives of the terms
+     * @return the derivative of the expression
+     */
+    @Override
+    protected Expression differentiateSelf(List<Expression> operandDerivatives) {
+        return new Sum(operandDerivatives);
+    }
+
+    /**
+     * Simplifies the sum of simplified terms by flattening, folding constants and collecting like terms.
+     * The result is a number, a single term, an addition of two terms, or a sum of more.
+     *
+     * @param operandsSimple the simplified terms
+     * @return the simplified expression
+     */
+    @Override
+    protected Expression simplifySelf(List<Expression> operandsSimple) {
+        Map<Expression, double[]> coefficients = new LinkedHashMap<>();
+        double[] constant = new double[1];
+        for (Expression operand : operandsSimple) {
+            collect(operand, 1, coefficients, constant);
+        }
+        List<Expression> terms = new ArrayList<>(coefficients.size() + 1);
+        for (Map.Entry<Expression, double[]> entry : coefficients.entrySet()) {
+            double coefficient = entry.getValue()[0];
+            if (coefficient == 1) {
+                terms.add(entry.getKey());
+            } else if (coefficient == -1) {
+                terms.add(new Neg(entry.getKey()));
+            } else if (coefficient != 0) {
+                terms.add(new Mult(new Num(coefficient), entry.getKey()));
+            }
+        }
+        sortCanonically(terms);
+        if (constant[0] != 0 || terms.isEmpty()) {
+            terms.add(new Num(constant[0]));
+        }
+        if (terms.size() == 1) {
+            return terms.get(0);
+        }
+        if (terms.size() == 2) {
+            return new Plus(terms.get(0), terms.get(1));
+        }
+        return new Sum(terms);
+    }
+
+    @Override
+    protected Expression assignSelf(List<Expression> operands) {
+        return new Sum(operands);
+    }
+
+    @Override
+    protected double combineSelf(double accumulated, double operand) {
+        return accumulated + operand;
+    }
+
+    @Override
+    protected void partialsSelf(double[] operandValues, double[] partials) {
+        Arrays.fill(partials, 1);
+    }
+
+    /**
+     * Adds a simplified term, multiplied by a sign, to the collected coefficients, flattening nested sums,
+     * additions, subtractions and negations. The nested terms are kept on an explicit stack, so a long chain
+     * of additions cannot overflow the call stack, and are collected from left to right.
+     */
+    private static void collect(Expression term, double sign, Map<Expression, double[]> coefficients,
+                                double[] constant) {
+        Deque<Expression> pending = new ArrayDeque<>();
+        Deque<Double> signs = new ArrayDeque<>();
+        pending.push(term);
+        signs.push(sign);
+        while (!pending.isEmpty()) {
+            term = pending.pop();
+            sign = signs.pop();
+            if (term.isConstant()) {
+                constant[0] += sign * term.constantValue();
+            } else if (term instanceof Sum) {
+                List<Expression> operands = ((Sum) term).getOperands();
+                for (int i = operands.size() - 1; i >= 0; i--) {
+                    pending.push(operands.get(i));
+                    signs.push(sign);
+                }
+            } else if (term instanceof Plus) {
+                pending.push(((Plus) term).getRightOperand());
+                signs.push(sign);
+                pending.push(((Plus) term).getLeftOperand());
+                signs.push(sign);
+            } else if (term instanceof Minus) {
+                pending.push(((Minus) term).getRightOperand());
+                signs.push(-sign);
+                pending.push(((Minus) term).getLeftOperand());
+                signs.push(sign);
+            } else if (term instanceof Neg) {
+                pending.push(((Neg) term).getOperand());
+                signs.push(-sign);
+            } else if (term instanceof Mult && ((Mult) term).getLeftOperand().isConstant()) {
+                Mult mult = (Mult) term;
+                addTerm(mult.getRightOperand(), sign * mult.getLeftOperand().constantValue(), coefficients);
+            } else if (term instanceof Mult && ((Mult) term).getRightOperand().isConstant()) {
+                Mult mult = (Mult) term;
+                addTerm(mult.getLeftOperand(), sign * mult.getRightOperand().constantValue(), coefficients);
+            } else if (term instanceof Product && ((Product) term).getOperands().get(0).isConstant()) {
+                List<Expression> factors = ((Product) term).getOperands();
+                Expression rest = factors.size() == 3
+                        ? new Mult(factors.get(1), factors.get(2))
+                        : new Product(factors.subList(1, factors.size()));
+                addTerm(rest, sign * factors.get(0).constantValue(), coefficients);
+            } else {
+                addTerm(term, sign, coefficients);
+            }
+        }
+    }
+
+    private static void addTerm(Expression term, double coefficient, Map<Expression, double[]> coefficients) {
+        coefficients.computeIfAbsent(term, key -> new double[1])[0] += coefficient;
+    }
+}
@@ -0,0 +1,516 @@
+package expressions.parser;
+
+import expressions.base.BinaryExpression;
+import expressions.base.JitCompiler;
+import expressions.base.NaryExpression;
+import expressions.base.UnaryExpression;
+import interfaces.CompiledExpression;
+import interfaces.Expression;
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A class that caches, for each formula, its parsed and simplified tree, a compiled evaluator and its
+ * derivatives, so a formula that is seen again costs a single lookup instead of parsing, simplifying and
+ * compiling it again.
+ * Formulas are keyed by their tokens, so formulas that differ only in spacing, such as x+y and x + y, share
+ * one entry; the key of each recently seen text is remembered, so a text is only scanned for its tokens the
+ * first time. Expressions are keyed by structural equality.
+ * Every entry is weighed by the number of distinct nodes it holds, derivatives included, and the cache evicts
+ * the least recently used entries first to stay within a maximum total weight and a maximum number of entries;
+ * an entry heavier than the maximum weight is returned but not kept, and evicts no other entry. Entries may
+ * also be held through soft or weak references, so the garbage collector can reclaim them sooner.
+ * Failed parses are not cached. All methods are thread-safe; misses are loaded outside the lock, so a
+ * slow formula does not block lookups of others. Loads are recorded as JFR events.
+ */
+public class ExpressionCache {
+    private static final ExpressionCache SHARED = new ExpressionCache(Collections.emptyMap(), 10_000, 1_000_000,
+            Retention.STRONG);
+
+    private final Map<String, Double> constants;
+    private final int maximumSize;
+    private final long maximumWeight;
+    private final Retention retention;
+    private final LinkedHashMap<Object, Slot> slots = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<String, String> keys = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+            return size() > maximumSize;
+        }
+    };
+    private final ReferenceQueue<Entry> collected = new ReferenceQueue<>();
+    private long weight;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long collections;
+
+    /**
+     * How a cache holds its entries.
+     */
+    public enum Retention {
+        /**
+         * Entries stay until they are evicted.
+         */
+        STRONG,
+        /**
+         * Entries may also be reclaimed by the garbage collector when memory runs low.
+         */
+        SOFT,
+        /**
+         * Entries may also be reclaimed by the garbage collector once no caller holds them.
+         */
+        WEAK
+    }
+
+    /**
+     * Constructs an empty cache that holds its entries strongly and reads every name as a variable.
+     *
+     * @param maximumSize   the maximum number of entries the cache holds
+     * @param maximumWeight the maximum total number of nodes the entries of the cache hold
+     */
+    public ExpressionCache(int maximumSize, long maximumWeight) {
+        this(Collections.emptyMap(), maximumSize, maximumWeight, Retention.STRONG);
+    }
+
+    /**
+     * Constructs an empty cache.
+     *
+     * @param constants     the values of the named constants formulas are parsed with, by symbol
+     * @param maximumSize   the maximum number of entries the cache holds
+     * @param maximumWeight the maximum total number of nodes the entries of the cache hold
+     * @param retention     how the cache holds its entries
+     */
+    public ExpressionCache(Map<String, Double> constants, int maximumSize, long maximumWeight, Retention retention) {
+        if (maximumSize < 1) {
+            throw new IllegalArgumentException("Cache size must be positive: " + maximumSize);
+        }
+        if (maximumWeight < 1) {
+            throw new IllegalArgumentException("Cache weight must be positive: " + maximumWeight);
+        }
+        this.constants = constants;
+        this.maximumSize = maximumSize;
+        this.maximumWeight = maximumWeight;
+        this.retention = retention;
+    }
+
+    /**
+     * Returns the process-wide cache, which holds up to 10,000 formulas of up to 1,000,000 nodes in total
+     * strongly, and reads every name as a variable.
+     *
+     * @return the shared cache
+     */
+    public static ExpressionCache shared() {
+        return SHARED;
+    }
+
+    /**
+     * Returns the cached entry of a formula, parsing, simplifying and compiling it on a miss.
+     *
+     * @param formula the text of the formula
+     * @return the entry of the formula
+     * @throws Exception if the text is not a valid expression
+     */
+    public Entry get(String formula) throws Exception {
+        String key = key(formula);
+        Entry entry = lookup(key);
+        if (entry == null) {
+            LoadEvent event = new LoadEvent();
+            event.begin();
+            entry = store(key, new Entry(this, key, new ExpressionParser(constants).parse(formula)), event);
+        }
+        return entry;
+    }
+
+    /**
+     * Returns the cached entry of an expression, simplifying and compiling it on a miss.
+     *
+     * @param expression the expression
+     * @return the entry of the expression
+     */
+    public Entry get(Expression expression) {
+        Entry entry = lookup(expression);
+        if (entry == null) {
+            LoadEvent event = new LoadEvent();
+            event.begin();
+            entry = store(expression, new Entry(this, expression, expression), event);
+        }
+        return entry;
+    }
+
+    /**
+     * Removes every entry. The hit, miss, eviction and collection counts are kept.
+     */
+    public synchronized void clear() {
+        slots.clear();
+        keys.clear();
+        weight = 0;
+    }
+
+    /**
+     * Returns the number of entries currently cached.
+     *
+     * @return the number of entries
+     */
+    public synchronized int size() {
+        purge();
+        return slots.size();
+    }
+
+    /**
+     * Returns the total number of nodes the cached entries hold.
+     *
+     * @return the total weight of the entries
+     */
+    public synchronized long weight() {
+        purge();
+        return weight;
+    }
+
+    /**
+     * Returns the number of lookups that found a cached entry.
+     *
+     * @return the number of cache hits
+     */
+    public synchronized long hitCount() {
+        return hits;
+    }
+
+    /**
+     * Returns the number of lookups that had to load an entry.
+     *
+     * @return the number of cache misses
+     */
+    public synchronized long missCount() {
+        return misses;
+    }
+
+    /**
+     * Returns the number of entries removed to keep the cache within its maximum size and weight.
+     *
+     * @return the number of evictions
+     */
+    public synchronized long evictionCount() {
+        return evictions;
+    }
+
+    /**
+     * Returns the number of entries the garbage collector reclaimed through soft or weak references.
+     *
+     * @return the number of collected entries
+     */
+    public synchronized long collectionCount() {
+        return collections;
+    }
+
+    private synchronized Entry lookup(Object key) {
+        purge();
+        Slot slot = slots.get(key);
+        Entry entry = slot == null ? null : slot.get();
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry;
+    }
+
+    /**
+     * Adds a loaded entry, unless another thread loaded the same key first, in which case its entry is
+     * returned instead. An entry heavier than the maximum weight is returned without touching the other
+     * entries.
+     */
+    private synchronized Entry store(Object key, Entry entry, LoadEvent event) {
+        purge();
+        Slot existing = slots.get(key);
+        Entry current = existing == null ? null : existing.get();
+        if (current != null) {
+            return current;
+        }
+        if (existing != null) {
+            remove(key, existing);
+        }
+        Slot slot = new Slot(entry);
+        if (slot.weight <= maximumWeight) {
+            slots.put(key, slot);
+            weight += slot.weight;
+            evict();
+        }
+        if (event.shouldCommit()) {
+            event.key = key.toString();
+            event.weight = slot.weight;
+            event.commit();
+        }
+        return entry;
+    }
+
+    /**
+     * Adds the weight of a derivative computed for an entry, if the entry is still cached. An entry that
+     * grows heavier than the maximum weight is evicted alone.
+     */
+    private synchronized void grow(Entry entry, long added) {
+        Slot slot = slots.get(entry.key);
+        if (slot != null && slot.get() == entry) {
+            slot.weight += added;
+            weight += added;
+            if (slot.weight > maximumWeight) {
+                slots.remove(entry.key);
+                weight -= slot.weight;
+                evictions++;
+            }
+            evict();
+        }
+    }
+
+    private void evict() {
+        Iterator<Slot> eldest = slots.values().iterator();
+        while ((weight > maximumWeight || slots.size() > maximumSize) && eldest.hasNext()) {
+            weight -= eldest.next().weight;
+            eldest.remove();
+            evictions++;
+        }
+    }
+
+    /**
+     * Removes the entries the garbage collector has reclaimed.
+     */
+    private void purge() {
+        if (collected.poll() == null) {
+            return;
+        }
+        while (collected.poll() != null) {
+            // drain the queue, the slots are found by scanning below
+        }
+        Iterator<Slot> all = slots.values().iterator();
+        while (all.hasNext()) {
+            Slot slot = all.next();
+            if (slot.get() == null) {
+                weight -= slot.weight;
+                all.remove();
+                collections++;
+            }
+        }
+    }
+
+    private void remove(Object key, Slot slot) {
+        slots.remove(key);
+        weight -= slot.weight;
+        collections++;
+    }
+
+    /**
+     * Returns the key of a formula, remembered from the last time the same text was seen, or found by scanning
+     * it outside the lock.
+     */
+    private String key(String formula) throws Exception {
+        String key;
+        synchronized (this) {
+            key = keys.get(formula);
+        }
+        if (key == null) {
+            key = normalize(formula);
+            synchronized (this) {
+                keys.put(formula, key);
+            }
+        }
+        return key;
+    }
+
+    /**
+     * Returns the tokens of a formula separated by single spaces, the key of its entry. A minus sign written
+     * against a number literal stays joined to it, as the parser reads that as a negative number rather than
+     * a negation, so two formulas have the same key only if they parse alike.
+     */
+    private static String normalize(String formula) throws Exception {
+        ExpressionTokenizer tokens = new ExpressionTokenizer(formula, null);
+        StringBuilder key = new StringBuilder(formula.length());
+        boolean joined = true;
+        for (tokens.next(); tokens.type() != ExpressionTokenizer.END; tokens.next()) {
+            if (!joined) {
+                key.append(' ');
+            }
+            joined = tokens.type() == ExpressionTokenizer.MINUS && tokens.numberFollows();
+            key.append(formula, tokens.start(), tokens.end());
+        }
+        return key.toString();
+    }
+
+    /**
+     * Returns the number of distinct node instances of one or more expressions, visiting shared subtrees once.
+     */
+    private static long nodeCount(Set<Expression> visited, Expression... expressions) {
+        Deque<Expression> pending = new ArrayDeque<>();
+        for (Expression expression : expressions) {
+            pending.push(expression);
+        }
+        long count = 0;
+        while (!pending.isEmpty()) {
+            Expression node = pending.pop();
+            if (!visited.add(node)) {
+                continue;
+            }
+            count++;
+            if (node instanceof BinaryExpression) {
+                pending.push(((BinaryExpression) node).getLeftOperand());
+                pending.push(((BinaryExpression) node).getRightOperand());
+            } else if (node instanceof UnaryExpression) {
+                pending.push(((UnaryExpression) node).getOperand());
+            } else if (node instanceof NaryExpression) {
+                for (Expression operand : ((NaryExpression) node).getOperands()) {
+                    pending.push(operand);
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * The cached forms of one formula or expression. An entry is immutable apart from its derivatives,
+     * which are computed once per variable on first use, and is safe to share between threads.
+     */
+    public static final class Entry {
+        private final ExpressionCache cache;
+        private final Object key;
+        private final Expression expression;
+        private final Expression simplified;
+        private final List<String> variables;
+        private final CompiledExpression compiled;
+        private final ConcurrentMap<String, Expression> derivatives = new ConcurrentHashMap<>();
+        private final Set<Expression> counted = Collections.newSetFromMap(new IdentityHashMap<>());
+        private final long weight;
+
+        private Entry(ExpressionCache cache, Object key, Expression expression) {
+            this.cache = cache;
+            this.key = key;
+            this.expression = expression;
+            this.simplified = expression.simplify();
+            this.variables = expression.getVariables();
+            this.compiled = new JitCompiler(variables).compile(simplified);
+            this.weight = nodeCount(counted, expression, simplified);
+        }
+
+        /**
+         * Returns the expression as parsed or given.
+         *
+         * @return the expression
+         */
+        public Expression getExpression() {
+            return expression;
+        }
+
+        /**
+         * Returns the simplified expression.
+         *
+         * @return the simplified expression
+         */
+        public Expression getSimplified() {
+            return simplified;
+        }
+
+        /**
+         * Returns the variables of the expression, which is the order of the values the compiled
+         * evaluator reads.
+         *
+         * @return an unmodifiable sorted list of the distinct variable names used in the expression
+         */
+        public List<String> getVariables() {
+            return variables;
+        }
+
+        /**
+         * Returns the compiled evaluator of the simplified expression.
+         *
+         * @return the compiled expression, over the values of getVariables in order
+         */
+        public CompiledExpression getCompiled() {
+            return compiled;
+        }
+
+        /**
+         * Returns the simplified derivative of the expression with respect to a variable, computing it
+         * on first use and counting its new nodes towards the weight of the entry.
+         *
+         * @param var the variable to differentiate by
+         * @return the simplified derivative
+         */
+        public Expression derivative(String var) {
+            Expression derivative = derivatives.get(var);
+            if (derivative == null) {
+                Expression computed = simplified.differentiate(var).simplify();
+                derivative = derivatives.putIfAbsent(var, computed);
+                if (derivative == null) {
+                    derivative = computed;
+                    long added;
+                    synchronized (counted) {
+                        added = nodeCount(counted, computed);
+                    }
+                    cache.grow(this, added);
+                }
+            }
+            return derivative;
+        }
+    }
+
+    /**
+     * The place of one entry in the cache. It holds the entry strongly or through a reference, and
+     * remembers its weight, so the weight of a reclaimed entry can still be subtracted.
+     */
+    private final class Slot {
+        private final Entry strong;
+        private final Reference<Entry> reference;
+        private long weight;
+
+        private Slot(Entry entry) {
+            this.weight = entry.weight;
+            switch (retention) {
+                case SOFT:
+                    this.strong = null;
+                    this.reference = new SoftReference<>(entry, collected);
+                    break;
+                case WEAK:
+                    this.strong = null;
+                    this.reference = new WeakReference<>(entry, collected);
+                    break;
+                default:
+                    this.strong = entry;
+                    this.reference = null;
+            }
+        }
+
+        private Entry get() {
+            return strong != null ? strong : reference.get();
+        }
+    }
+
+    /**
+     * A JFR event recorded when a formula or expression is loaded into a cache.
+     */
+    @Name("expressions.ExpressionCacheLoad")
+    @Label("Expression Cache Load")
+    @Category("Expressions")
+    private static final class LoadEvent extends Event {
+        @Label("Key")
+        private String key;
+
+        @Label("Weight")
+        private long weight;
+    }
+}
@@ -0,0 +1,324 @@
+package expressions.parser;
+
+import expressions.binary.Div;
+import expressions.binary.Log;
+import expressions.binary.Minus;
+import expressions.binary.Mult;
+import expressions.binary.Plus;
+import expressions.binary.Pow;
+import expressions.elements.Const;
+import expressions.elements.Num;
+import expressions.elements.Var;
+import expressions.nary.Product;
+import expressions.nary.Sum;
+import expressions.unary.Cos;
+import expressions.unary.Neg;
+import expressions.unary.Sin;
+import interfaces.Expression;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A class that parses text into expressions.
+ * It accepts the output of toString, so parsing a printed expression gives back an equal expression,
+ * as well as ordinary infix text where +, -, *, / and ^ follow the usual precedence (^ is right-associative),
+ * unary minus negates, and sin(a), cos(a) and log(base, a) are functions.
+ * A run of three or more operands joined by + alone, or by * alone, such as a + b + c, is read as one
+ * flat sum or product; two operands are read as an addition or multiplication.
+ * Input is read from any CharSequence, such as a String or a CharBuffer, without copying it.
+ * A parser reuses its name table between calls, so it is not thread-safe; use one parser per thread.
+ */
+public class ExpressionParser {
+    private static final int ADDITIVE = 1;
+    private static final int MULTIPLICATIVE = 2;
+    private static final int POWER = 3;
+
+    private final Map<String, Double> constants;
+    private final NameTable names = new NameTable();
+
+    /**
+     * Constructs a parser that reads every name as a variable.
+     */
+    public ExpressionParser() {
+        this(Collections.emptyMap());
+    }
+
+    /**
+     * Constructs a parser that reads the given names as named constants instead of variables.
+     *
+     * @param constants the values of the named constants, by symbol
+     */
+    public ExpressionParser(Map<String, Double> constants) {
+        this.constants = constants;
+    }
+
+    /**
+     * Parses an expression.
+     * Nesting is kept on an explicit stack of frames rather than the call stack, so parentheses, negations and
+     * function calls may nest to any depth, such as in the output of toString for a very deep tree.
+     *
+     * @param input the text of the expression
+     * @return the parsed expression
+     * @throws Exception if the text is not a valid expression
+     */
+    public Expression parse(CharSequence input) throws Exception {
+        ExpressionTokenizer tokens = new ExpressionTokenizer(input, names);
+        tokens.next();
+        Deque<Frame> frames = new ArrayDeque<>();
+        frames.push(new Frame(ADDITIVE, Frame.INPUT));
+        Expression operand = null;
+        while (true) {
+            if (operand == null) {
+                operand = parseOperand(tokens, frames);
+                continue;
+            }
+            Frame frame = frames.peek();
+            if (frame.leftOperand == null) {
+                frame.leftOperand = operand;
+            } else {
+                int next = tokens.type();
+                if (precedence(next) > precedence(frame.operator)
+                        || (next == ExpressionTokenizer.POWER && frame.operator == next)) {
+                    // the operator after the right operand binds tighter, so the right operand is its left one
+                    frame = new Frame(precedence(next), Frame.RIGHT_OPERAND);
+                    frame.leftOperand = operand;
+                    frames.push(frame);
+                } else {
+                    frame.add(operand);
+                }
+            }
+            operand = null;
+            int operator = tokens.type();
+            if (precedence(operator) >= frame.minPrecedence) {
+                frame.operator = operator;
+                tokens.next();
+                continue;
+            }
+            frames.pop();
+            Expression result = frame.finish();
+            switch (frame.end) {
+                case Frame.INPUT:
+                    if (tokens.type() != ExpressionTokenizer.END) {
+                        throw new Exception("Unexpected input at position " + tokens.start());
+                    }
+                    return result;
+                case Frame.RIGHT_OPERAND:
+                    operand = result;
+                    break;
+                case Frame.NEGATION:
+                    operand = new Neg(result);
+                    break;
+                case Frame.PARENTHESES:
+                    expect(tokens, ExpressionTokenizer.RIGHT, "')'");
+                    operand = result;
+                    break;
+                case Frame.SIN:
+                    expect(tokens, ExpressionTokenizer.RIGHT, "')'");
+                    operand = new Sin(result);
+                    break;
+                case Frame.COS:
+                    expect(tokens, ExpressionTokenizer.RIGHT, "')'");
+                    operand = new Cos(result);
+                    break;
+                case Frame.LOG_BASE:
+                    expect(tokens, ExpressionTokenizer.COMMA, "','");
+                    Frame argument = new Frame(ADDITIVE, Frame.LOG_ARGUMENT);
+                    argument.base = result;
+                    frames.push(argument);
+                    break;
+                default:
+                    expect(tokens, ExpressionTokenizer.RIGHT, "')'");
+                    operand = new Log(frame.base, result);
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Reads an operand, or the start of one: a negation, an opening parenthesis or a function call pushes a frame
+     * for what it encloses instead.
+     *
+     * @return the operand, or null if a frame was pushed and its operand is read next
+     */
+    private Expression parseOperand(ExpressionTokenizer tokens, Deque<Frame> frames) throws Exception {
+        switch (tokens.type()) {
+            case ExpressionTokenizer.MINUS:
+                if (tokens.numberFollows()) {
+                    tokens.next();
+                    double value = -tokens.number();
+                    tokens.next();
+                    return new Num(value);
+                }
+                tokens.next();
+                // a negation binds looser than ^ only, so -x^2 is -(x^2) and -x * y is (-x) * y
+                frames.push(new Frame(POWER, Frame.NEGATION));
+                return null;
+            case ExpressionTokenizer.NUMBER:
+                double value = tokens.number();
+                tokens.next();
+                return new Num(value);
+            case ExpressionTokenizer.NAME:
+                return parseName(tokens, frames);
+            case ExpressionTokenizer.LEFT:
+                tokens.next();
+                if (tokens.type() == ExpressionTokenizer.MINUS && tokens.numberFollows()) {
+                    // toString prints a negated number as (-3.0) and a negative number operand as (-3.0 + x)
+                    tokens.next();
+                    double number = tokens.number();
+                    tokens.next();
+                    if (tokens.type() == ExpressionTokenizer.RIGHT) {
+                        tokens.next();
+                        return new Neg(new Num(number));
+                    }
+                    frames.push(new Frame(ADDITIVE, Frame.PARENTHESES));
+                    return new Num(-number);
+                }
+                frames.push(new Frame(ADDITIVE, Frame.PARENTHESES));
+                return null;
+            default:
+                throw new Exception("Expected an operand at position " + tokens.start());
+        }
+    }
+
+    private Expression parseName(ExpressionTokenizer tokens, Deque<Frame> frames) throws Exception {
+        String name = tokens.name();
+        tokens.next();
+        if (tokens.type() == ExpressionTokenizer.LEFT) {
+            switch (name) {
+                case "sin":
+                    frames.push(new Frame(ADDITIVE, Frame.SIN));
+                    break;
+                case "cos":
+                    frames.push(new Frame(ADDITIVE, Frame.COS));
+                    break;
+                case "log":
+                    frames.push(new Frame(ADDITIVE, Frame.LOG_BASE));
+                    break;
+                default:
+                    throw new Exception("Unknown function '" + name + "' at position " + tokens.start());
+            }
+            tokens.next();
+            return null;
+        }
+        Double constant = constants.get(name);
+        if (constant != null) {
+            return new Const(name, constant);
+        }
+        return new Var(name);
+    }
+
+    private static void expect(ExpressionTokenizer tokens, int type, String description) throws Exception {
+        if (tokens.type() != type) {
+            throw new Exception("Expected " + description + " at position " + tokens.start());
+        }
+        tokens.next();
+    }
+
+    private static int precedence(int operator) {
+        switch (operator) {
+            case ExpressionTokenizer.PLUS:
+            case ExpressionTokenizer.MINUS:
+                return ADDITIVE;
+            case ExpressionTokenizer.TIMES:
+            case ExpressionTokenizer.DIVIDE:
+                return MULTIPLICATIVE;
+            case ExpressionTokenizer.POWER:
+                return POWER;
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * Combines the operands of a run of one associative operator, and empties the run.
+     *
+     * @return the combined run, or the given left operand if there is no run
+     */
+    private static Expression combineRun(int operator, List<Expression> run, Expression leftOperand) {
+        if (run.isEmpty()) {
+            return leftOperand;
+        }
+        Expression combined;
+        if (run.size() == 2) {
+            combined = combine(operator, run.get(0), run.get(1));
+        } else if (operator == ExpressionTokenizer.PLUS) {
+            combined = new Sum(run);
+        } else {
+            combined = new Product(run);
+        }
+        run.clear();
+        return combined;
+    }
+
+    private static Expression combine(int operator, Expression leftOperand, Expression rightOperand) {
+        switch (operator) {
+            case ExpressionTokenizer.PLUS:
+                return new Plus(leftOperand, rightOperand);
+            case ExpressionTokenizer.MINUS:
+                return new Minus(leftOperand, rightOperand);
+            case ExpressionTokenizer.TIMES:
+                return new Mult(leftOperand, rightOperand);
+            case ExpressionTokenizer.DIVIDE:
+                return new Div(leftOperand, rightOperand);
+            default:
+                return new Pow(leftOperand, rightOperand);
+        }
+    }
+
+    /**
+     * The operators read so far at one level of nesting, and what ends the level.
+     * A frame reads operators of at least its minimum precedence, collecting runs of + alone or * alone;
+     * an operator that binds tighter than the one before it starts a frame of its own.
+     */
+    private static final class Frame {
+        static final int INPUT = 0;
+        static final int RIGHT_OPERAND = 1;
+        static final int NEGATION = 2;
+        static final int PARENTHESES = 3;
+        static final int SIN = 4;
+        static final int COS = 5;
+        static final int LOG_BASE = 6;
+        static final int LOG_ARGUMENT = 7;
+
+        private final int minPrecedence;
+        private final int end;
+        private final List<Expression> run = new ArrayList<>();
+        private int runOperator = ExpressionTokenizer.END;
+        private int operator = ExpressionTokenizer.END;
+        private Expression leftOperand;
+        private Expression base;
+
+        private Frame(int minPrecedence, int end) {
+            this.minPrecedence = minPrecedence;
+            this.end = end;
+        }
+
+        /**
+         * Applies the pending operator to the operands read so far and the given right operand.
+         */
+        private void add(Expression rightOperand) {
+            if (operator != runOperator) {
+                leftOperand = combineRun(runOperator, run, leftOperand);
+                runOperator = operator == ExpressionTokenizer.PLUS || operator == ExpressionTokenizer.TIMES
+                        ? operator : ExpressionTokenizer.END;
+            }
+            if (runOperator != ExpressionTokenizer.END) {
+                if (run.isEmpty()) {
+                    run.add(leftOperand);
+                }
+                run.add(rightOperand);
+            } else {
+                leftOperand = combine(operator, leftOperand, rightOperand);
+            }
+        }
+
+        private Expression finish() {
+            return combineRun(runOperator, run, leftOperand);
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package expressions.parser;
+
+/**
+ * A class that splits a character sequence into expression tokens without copying it.
+ * The tokenizer keeps only the type and bounds of the current token; numbers are converted in place and
+ * names are looked up in a shared name table, so scanning allocates nothing for names it has seen before.
+ */
+class ExpressionTokenizer {
+    static final int END = 0;
+    static final int NUMBER = 1;
+    static final int NAME = 2;
+    static final int PLUS = 3;
+    static final int MINUS = 4;
+    static final int TIMES = 5;
+    static final int DIVIDE = 6;
+    static final int POWER = 7;
+    static final int LEFT = 8;
+    static final int RIGHT = 9;
+    static final int COMMA = 10;
+
+    private static final int MAX_FAST_DIGITS = 15;
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private final CharSequence input;
+    private final NameTable names;
+    private int position;
+    private int type;
+    private int start;
+    private double number;
+
+    /**
+     * Constructs a tokenizer over the given input.
+     *
+     * @param input the characters to tokenize
+     * @param names the table names are looked up in, or null if names are never read
+     */
+    ExpressionTokenizer(CharSequence input, NameTable names) {
+        this.input = input;
+        this.names = names;
+    }
+
+    int type() {
+        return type;
+    }
+
+    int start() {
+        return start;
+    }
+
+    int end() {
+        return position;
+    }
+
+    double number() {
+        return number;
+    }
+
+    String name() {
+        return names.get(input, start, position);
+    }
+
+    /**
+     * Returns whether a number literal starts right after the current token, with no whitespace in between.
+     * This tells a negative number literal apart from a negation. Infinity and NaN only count as a whole name,
+     * so a name that merely starts with them, such as NaNa, is negated instead.
+     *
+     * @return true if a number literal follows the current token
+     */
+    boolean numberFollows() {
+        if (position >= input.length()) {
+            return false;
+        }
+        char c = input.charAt(position);
+        return isDigit(c) || c == '.' || wordMatches(position, "Infinity") || wordMatches(position, "NaN");
+    }
+
+    /**
+     * Advances to the next token.
+     *
+     * @throws Exception if the input contains a character that does not start a token
+     */
+    void next() throws Exception {
+        while (position < input.length() && Character.isWhitespace(input.charAt(position))) {
+            position++;
+        }
+        start = position;
+        if (position >= input.length()) {
+            type = END;
+            return;
+        }
+        char c = input.charAt(position);
+        if (isDigit(c) || c == '.') {
+            scanNumber();
+            return;
+        }
+        if (Character.isLetter(c) || c == '_') {
+            scanName();
+            return;
+        }
+        position++;
+        switch (c) {
+            case '+':
+                type = PLUS;
+                break;
+            case '-':
+                type = MINUS;
+                break;
+            case '*':
+                type = TIMES;
+                break;
+            case '/':
+                type = DIVIDE;
+                break;
+            case '^':
+                type = POWER;
+                break;
+            case '(':
+                type = LEFT;
+                break;
+            case ')':
+                type = RIGHT;
+                break;
+            case ',':
+                type = COMMA;
+                break;
+            default:
+                throw new Exception("Unexpected character '" + c + "' at position " + start);
+        }
+    }
+
+    private void scanName() {
+        while (position < input.length() && isNameCharacter(input.charAt(position))) {
+            position++;
+        }
+        if (regionEquals("NaN")) {
+            type = NUMBER;
+            number = Double.NaN;
+        } else if (regionEquals("Infinity")) {
+            type = NUMBER;
+            number = Double.POSITIVE_INFINITY;
+        } else {
+            type = NAME;
+        }
+    }
+
+    private void scanNumber() throws Exception {
+        long mantissa = 0;
+        int digits = 0;
+        int exponent = 0;
+        boolean seenPoint = false;
+        boolean seenDigit = false;
+        for (; position < input.length(); position++) {
+            char c = input.charAt(position);
+            if (isDigit(c)) {
+                seenDigit = true;
+                if (digits < MAX_FAST_DIGITS + 1 && (mantissa != 0 || c != '0')) {
+                    mantissa = mantissa * 10 + (c - '0');
+                    digits++;
+                    if (seenPoint) {
+                        exponent--;
+                    }
+                } else if (mantissa == 0) {
+                    if (seenPoint) {
+                        exponent--;
+                    }
+                } else {
+                    digits++;
+                    if (!seenPoint) {
+                        exponent++;
+                    }
+                }
+            } else if (c == '.' && !seenPoint) {
+                seenPoint = true;
+            } else {
+                break;
+            }
+        }
+        if (!seenDigit) {
+            throw new Exception("Malformed number at position " + start);
+        }
+        if (position < input.length() && (input.charAt(position) == 'E' || input.charAt(position) == 'e')) {
+            int exponentStart = position + 1;
+            if (exponentStart < input.length()
+                    && (input.charAt(exponentStart) == '+' || input.charAt(exponentStart) == '-')) {
+                exponentStart++;
+            }
+            if (exponentStart < input.length() && isDigit(input.charAt(exponentStart))) {
+                boolean negative = input.charAt(position + 1) == '-';
+                int written = 0;
+                for (position = exponentStart; position < input.length() && isDigit(input.charAt(position));
+                     position++) {
+                    written = Math.min(written * 10 + (input.charAt(position) - '0'), 100_000);
+                }
+                exponent += negative ? -written : written;
+            }
+        }
+        type = NUMBER;
+        if (digits <= MAX_FAST_DIGITS && Math.abs(exponent) < POWERS_OF_TEN.length) {
+            // both the mantissa and the power of ten are exact doubles, so one operation rounds correctly
+            number = exponent >= 0 ? mantissa * POWERS_OF_TEN[exponent] : mantissa / POWERS_OF_TEN[-exponent];
+        } else {
+            number = Double.parseDouble(input.subSequence(start, position).toString());
+        }
+    }
+
+    private boolean regionEquals(String text) {
+        return position - start == text.length() && regionMatches(start, text);
+    }
+
+    private boolean wordMatches(int offset, String text) {
+        int end = offset + text.length();
+        return regionMatches(offset, text)
+                && (end == input.length() || !isNameCharacter(input.charAt(end)));
+    }
+
+    private boolean regionMatches(int offset, String text) {
+        if (offset + text.length() > input.length()) {
+            return false;
+        }
+        for (int i = 0; i < text.length(); i++) {
+            if (input.charAt(offset + i) != text.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isNameCharacter(char c) {
+        return Character.isLetterOrDigit(c) || c == '_';
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+}
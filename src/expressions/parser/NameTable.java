@@ -0,0 +1,68 @@
+package expressions.parser;
+
+/**
+ * A class that maps regions of a character sequence to canonical name strings.
+ * A name is only copied out of the input the first time it is seen; later occurrences are matched
+ * in place against the stored string, so repeated variable and function names cost no allocation.
+ */
+class NameTable {
+    private String[] names = new String[64];
+    private int size;
+
+    /**
+     * Returns the canonical string for the characters between start and end.
+     *
+     * @param input the characters the name is read from
+     * @param start the index of the first character of the name
+     * @param end   the index after the last character of the name
+     * @return the canonical string of the name
+     */
+    String get(CharSequence input, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + input.charAt(i);
+        }
+        int mask = names.length - 1;
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            String name = names[slot];
+            if (name == null) {
+                name = input.subSequence(start, end).toString();
+                names[slot] = name;
+                if (++size * 2 > names.length) {
+                    grow();
+                }
+                return name;
+            }
+            if (name.hashCode() == hash && matches(name, input, start, end)) {
+                return name;
+            }
+        }
+    }
+
+    private void grow() {
+        String[] old = names;
+        names = new String[old.length * 2];
+        int mask = names.length - 1;
+        for (String name : old) {
+            if (name != null) {
+                int slot = name.hashCode() & mask;
+                while (names[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                names[slot] = name;
+            }
+        }
+    }
+
+    private static boolean matches(String name, CharSequence input, int start, int end) {
+        if (name.length() != end - start) {
+            return false;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            if (name.charAt(i) != input.charAt(start + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -5,8 +5,6 @@ import expressions.binary.Mult;
 import expressions.elements.Num;
 import interfaces.Expression;
 
-import java.util.Map;
-
 /**
  * A class that represents a Cosine operation.
  */
@@ -21,81 +19,55 @@ public class Cos extends UnaryExpression {
     }
 
     /**
-     * Evaluates the cosine expression with the given variable assignments.
+     * Returns the text toString prints before the operand of the cosine expression.
      *
-     * @param assignment a map of variable assignments
-     * @return the cosine of the operand value
-     * @throws Exception if evaluation encounters an error
+     * @return the prefix text
      */
     @Override
-    public double evaluate(Map<String, Double> assignment) throws Exception {
-        double operandValue = getOperand().evaluate(assignment);
-        return Math.cos(Math.toRadians(operandValue));
+    protected String prefixSelf() {
+        return "cos(";
     }
 
+
     /**
-     * Evaluates the cosine expression without any variable assignments.
+     * Computes the derivative of the cosine expression from the derivative of its operand.
      *
-     * @return the cosine of the operand value
-     * @throws Exception if evaluation encounters an error
+     * @param operandDerivative the derivative of the operand
+     * @return the derivative expression of the cosine expression
      */
     @Override
-    public double evaluate() throws Exception {
-        double operandValue = getOperand().evaluate();
-        return Math.cos(Math.toRadians(operandValue));
+    protected Expression differentiateSelf(Expression operandDerivative) {
+        return new Neg(new Mult(new Sin(super.getOperand()), operandDerivative));
     }
 
     /**
-     * Returns a string representation of the cosine expression.
+     * Simplifies the cosine of a simplified operand by folding it if it is a constant.
      *
-     * @return a string representation of the cosine expression
+     * @param operandSimple the simplified operand
+     * @return the simplified expression
      */
-    public String toString() {
-        return "cos(" + super.getOperand().toString() + ")";
+    @Override
+    protected Expression simplifySelf(Expression operandSimple) {
+        Expression folded = foldSelf(operandSimple);
+        if (folded != null) {
+            return folded;
+        }
+        return new Cos(operandSimple);
     }
 
-    /**
-     * Assigns a new expression to the variable in the cosine expression.
-     *
-     * @param var        the variable to assign the expression to
-     * @param expression the expression to assign
-     * @return a new cosine expression with the updated operand
-     */
     @Override
-    public Expression assign(String var, Expression expression) {
-        return new Cos(super.getOperand().assign(var, expression));
+    protected double evaluateSelf(double operand) {
+        return Math.cos(Math.toRadians(operand));
     }
 
-    /**
-     * Computes the derivative of the cosine expression with respect to the given variable.
-     *
-     * @param var the variable to differentiate by
-     * @return the derivative expression of the cosine expression
-     */
     @Override
-    public Expression differentiate(String var) {
-        return new Neg(new Mult(new Sin(super.getOperand()), getOperand().differentiate(var)));
+    protected Expression assignSelf(Expression operand) {
+        return new Cos(operand);
     }
 
-    /**
-     * Simplifies the unary expression by evaluating it if possible.
-     *
-     * @return the simplified expression
-     */
+    // the partial follows differentiate(), which maps cos to -sin without the degree conversion factor
     @Override
-    public Expression simplify() {
-        Expression simple;
-        try {
-            double evaluated = this.evaluate();
-            return new Num(evaluated);
-        } catch (Exception evalExpError) {
-            simple = super.getOperand().simplify();
-            try {
-                double simpleEvaluation = simple.evaluate();
-                return new Num(simpleEvaluation);
-            } catch (Exception evalSimpleError) {
-                return new Cos(simple);
-            }
-        }
+    protected double partialSelf(double operand) {
+        return -Math.sin(Math.toRadians(operand));
     }
 }
@@ -4,8 +4,6 @@ import expressions.base.UnaryExpression;
 import expressions.elements.Num;
 import interfaces.Expression;
 
-import java.util.Map;
-
 /**
  * A class that represents a negation operation.
  */
@@ -20,81 +18,85 @@ public class Neg extends UnaryExpression {
     }
 
     /**
-     * Evaluates the negation expression with the given variable assignments.
+     * Returns the text toString prints before the operand of the negation expression.
      *
-     * @param assignment a map of variable assignments
-     * @return the negation of the operand value
-     * @throws Exception if evaluation encounters an error
+     * @return the prefix text
      */
     @Override
-    public double evaluate(Map<String, Double> assignment) throws Exception {
-        double operandValue = getOperand().evaluate(assignment);
-        return -operandValue;
+    protected String prefixSelf() {
+        return "(-";
     }
 
-    /**
-     * Evaluates the negation expression without any variable assignments.
-     *
-     * @return the negation of the operand value
-     * @throws Exception if evaluation encounters an error
-     */
-    @Override
-    public double evaluate() throws Exception {
-        double operandValue = getOperand().evaluate();
-        return -operandValue;
-    }
 
     /**
-     * Returns a string representation of the negation expression.
+     * Returns the precedence of the negation expression, which minimal output uses to place parentheses.
      *
-     * @return a string representation of the negation expression
+     * @return the precedence of the operator
      */
-    public String toString() {
-        return "(-" + super.getOperand().toString() + ")";
+    @Override
+    protected int precedenceSelf() {
+        return PRECEDENCE_PREFIX;
     }
 
     /**
-     * Assigns a new expression to the variable in the negation expression.
+     * Returns the estimated cost of evaluating the negation expression once its operands are known.
      *
-     * @param var        the variable to assign the expression to
-     * @param expression the expression to assign
-     * @return a new negation expression with the updated operand
+     * @return the estimated cost of the operator
      */
     @Override
-    public Expression assign(String var, Expression expression) {
-        return new Neg(super.getOperand().assign(var, expression));
+    protected int costSelf() {
+        return COST_ARITHMETIC;
     }
 
     /**
-     * Computes the derivative of the negation expression with respect to the given variable.
+     * Computes the derivative of the negation expression from the derivative of its operand.
      *
-     * @param var the variable to differentiate by
+     * @param operandDerivative the derivative of the operand
      * @return the derivative expression of the negation expression
      */
     @Override
-    public Expression differentiate(String var) {
-        return new Neg(super.getOperand().differentiate(var));
+    protected Expression differentiateSelf(Expression operandDerivative) {
+        return new Neg(operandDerivative);
     }
 
     /**
-     * Simplifies the unary expression by evaluating it if possible.
+     * Simplifies the negation of a simplified operand by folding it if it is a constant,
+     * or cancelling a double negation.
      *
+     * @param operandSimple the simplified operand
      * @return the simplified expression
      */
     @Override
-    public Expression simplify() {
-        Expression simple;
-        try {
-            double evaluated = this.evaluate();
-            return new Num(evaluated);
-        } catch (Exception evalExpError) {
-            simple = super.getOperand().simplify();
-            if (simple instanceof Neg) {
-                Neg insideNeg = (Neg) super.getOperand();
-                return insideNeg.getOperand().simplify();
-            } else {
-                return new Neg(simple);
-            }
+    protected Expression simplifySelf(Expression operandSimple) {
+        Expression folded = foldSelf(operandSimple);
+        if (folded != null) {
+            return folded;
+        }
+        if (operandSimple instanceof Neg) {
+            return ((Neg) operandSimple).getOperand();
         }
+        return new Neg(operandSimple);
+    }
+
+    @Override
+    protected double evaluateSelf(double operand) {
+        return -operand;
+    }
+
+    @Override
+    protected void evaluateColumn(double[] operand, double[] out, boolean[] failed) {
+        for (int i = 0; i < out.length; i++) {
+            out[i] = -operand[i];
+        }
+    }
+
+    @Override
+    protected Expression assignSelf(Expression operand) {
+        return new Neg(operand);
+    }
+
+    @Override
+    protected double partialSelf(double operand) {
+        return -1;
     }
 }
@@ -0,0 +1,238 @@
+package expressions.unary;
+
+import expressions.base.UnaryExpression;
+import expressions.binary.Mult;
+import expressions.binary.Pow;
+import expressions.elements.Num;
+import expressions.nary.Sum;
+import interfaces.Expression;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A class that represents a polynomial in its operand with constant coefficients, held densely in order of
+ * increasing degree and evaluated by Horner's scheme instead of one power per term.
+ * From degree 8 on, the even and odd coefficients are evaluated as two independent Horner chains in the square
+ * of the operand, which the processor overlaps, and combined at the end.
+ * A polynomial prints, and is serialized, as the sum of monomials that expand returns, so reading it back
+ * gives an equal value, not a polynomial node.
+ */
+public class Polynomial extends UnaryExpression {
+    private static final int SPLIT_DEGREE = 8;
+
+    private final double[] coefficients;
+    private final int hash;
+
+    /**
+     * Constructs a polynomial in an operand.
+     *
+     * @param operand      the expression the polynomial is evaluated at
+     * @param coefficients the coefficients in order of increasing degree, the constant term first
+     */
+    public Polynomial(Expression operand, double[] coefficients) {
+        super(operand);
+        if (coefficients.length == 0) {
+            throw new IllegalArgumentException("A polynomial needs at least one coefficient");
+        }
+        this.coefficients = coefficients.clone();
+        this.hash = 31 * super.hashCode() + Arrays.hashCode(this.coefficients);
+    }
+
+    /**
+     * Returns the coefficients of the polynomial.
+     *
+     * @return a copy of the coefficients in order of increasing degree
+     */
+    public double[] getCoefficients() {
+        return coefficients.clone();
+    }
+
+    /**
+     * Returns the degree of the polynomial, the index of its last coefficient.
+     *
+     * @return the degree
+     */
+    public int getDegree() {
+        return coefficients.length - 1;
+    }
+
+    /**
+     * Returns the structural hash code of the polynomial, which includes its coefficients.
+     *
+     * @return the hash code
+     */
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    /**
+     * Returns the sum of monomials the polynomial stands for, skipping zero coefficients.
+     *
+     * @return the expanded expression
+     */
+    public Expression expand() {
+        Expression operand = getOperand();
+        List<Expression> terms = new ArrayList<>();
+        for (int i = 0; i < coefficients.length; i++) {
+            if (coefficients[i] == 0) {
+                continue;
+            }
+            Expression power = i == 1 ? operand : new Pow(operand, new Num(i));
+            if (i == 0) {
+                terms.add(new Num(coefficients[i]));
+            } else if (coefficients[i] == 1) {
+                terms.add(power);
+            } else {
+                terms.add(new Mult(new Num(coefficients[i]), power));
+            }
+        }
+        if (terms.isEmpty()) {
+            return new Num(0);
+        }
+        return terms.size() == 1 ? terms.get(0) : new Sum(terms);
+    }
+
+    /**
+     * Returns the sum of monomials, which the polynomial is printed as.
+     *
+     * @return the expanded expression
+     */
+    @Override
+    protected Expression resolvedSelf() {
+        return expand();
+    }
+
+    /**
+     * Returns the text toString would print before the operand. Polynomials are written as the sum expand
+     * returns, so it is never printed.
+     *
+     * @return the prefix text
+     */
+    @Override
+    protected String prefixSelf() {
+        return "(";
+    }
+
+    /**
+     * Returns whether another polynomial has the same coefficients.
+     *
+     * @param other a polynomial of the same class
+     * @return true if the coefficients are equal
+     */
+    @Override
+    protected boolean equalsSelf(UnaryExpression other) {
+        return Arrays.equals(coefficients, ((Polynomial) other).coefficients);
+    }
+
+    /**
+     * Returns the estimated cost of evaluating the polynomial once its operand is known, a multiplication and an
+     * addition per degree.
+     *
+     * @return the estimated cost of the operator
+     */
+    @Override
+    protected int costSelf() {
+        return 2 * getDegree() * COST_ARITHMETIC;
+    }
+
+    /**
+     * Computes the derivative of the polynomial from the derivative of its operand, the derivative polynomial
+     * multiplied by the derivative of the operand.
+     *
+     * @param operandDerivative the derivative of the operand
+     * @return the derivative expression of the polynomial
+     */
+    @Override
+    protected Expression differentiateSelf(Expression operandDerivative) {
+        if (coefficients.length == 1) {
+            return ZERO;
+        }
+        double[] derivative = new double[coefficients.length - 1];
+        for (int i = 0; i < derivative.length; i++) {
+            derivative[i] = coefficients[i + 1] * (i + 1);
+        }
+        return new Mult(new Polynomial(getOperand(), derivative), operandDerivative);
+    }
+
+    /**
+     * Simplifies the polynomial of a simplified operand by folding it if it is a constant, dropping zero
+     * coefficients of the highest degrees, and replacing a polynomial of degree zero by its constant and
+     * the identity polynomial by its operand.
+     *
+     * @param operandSimple the simplified operand
+     * @return the simplified expression
+     */
+    @Override
+    protected Expression simplifySelf(Expression operandSimple) {
+        Expression folded = foldSelf(operandSimple);
+        if (folded != null) {
+            return folded;
+        }
+        int length = coefficients.length;
+        while (length > 1 && coefficients[length - 1] == 0) {
+            length--;
+        }
+        if (length == 1) {
+            return new Num(coefficients[0]);
+        }
+        if (length == 2 && coefficients[0] == 0 && coefficients[1] == 1) {
+            return operandSimple;
+        }
+        return new Polynomial(operandSimple, Arrays.copyOf(coefficients, length));
+    }
+
+    @Override
+    protected double evaluateSelf(double operand) {
+        return getDegree() >= SPLIT_DEGREE ? evaluateSplit(operand) : evaluateHorner(operand);
+    }
+
+    @Override
+    protected void evaluateColumn(double[] operand, double[] out, boolean[] failed) {
+        for (int i = 0; i < out.length; i++) {
+            out[i] = evaluateSelf(operand[i]);
+        }
+    }
+
+    @Override
+    protected Expression assignSelf(Expression operand) {
+        return new Polynomial(operand, coefficients);
+    }
+
+    // Horner's scheme for the value and the derivative at once
+    @Override
+    protected double partialSelf(double operand) {
+        double value = coefficients[coefficients.length - 1];
+        double derivative = 0;
+        for (int i = coefficients.length - 2; i >= 0; i--) {
+            derivative = derivative * operand + value;
+            value = value * operand + coefficients[i];
+        }
+        return derivative;
+    }
+
+    private double evaluateHorner(double operand) {
+        double value = coefficients[coefficients.length - 1];
+        for (int i = coefficients.length - 2; i >= 0; i--) {
+            value = value * operand + coefficients[i];
+        }
+        return value;
+    }
+
+    private double evaluateSplit(double operand) {
+        double square = operand * operand;
+        int i = coefficients.length - 1;
+        double even = 0;
+        double odd = 0;
+        if (i % 2 == 0) {
+            even = coefficients[i--];
+        }
+        for (; i > 0; i -= 2) {
+            odd = odd * square + coefficients[i];
+            even = even * square + coefficients[i - 1];
+        }
+        return even + operand * odd;
+    }
+}
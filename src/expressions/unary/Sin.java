@@ -5,8 +5,6 @@ import expressions.binary.Mult;
 import expressions.elements.Num;
 import interfaces.Expression;
 
-import java.util.Map;
-
 /**
  * A class that represents a Sine operation.
  */
@@ -22,81 +20,55 @@ public class Sin extends UnaryExpression {
 
 
     /**
-     * Evaluates the sine expression with the given variable assignments.
+     * Returns the text toString prints before the operand of the sine expression.
      *
-     * @param assignment a map of variable assignments
-     * @return the sine of the operand value
-     * @throws Exception if evaluation encounters an error
+     * @return the prefix text
      */
     @Override
-    public double evaluate(Map<String, Double> assignment) throws Exception {
-        double operandValue = getOperand().evaluate(assignment);
-        return Math.sin(Math.toRadians(operandValue));
+    protected String prefixSelf() {
+        return "sin(";
     }
 
+
     /**
-     * Evaluates the sine expression without any variable assignments.
+     * Computes the derivative of the sine expression from the derivative of its operand.
      *
-     * @return the sine of the operand value
-     * @throws Exception if evaluation encounters an error
+     * @param operandDerivative the derivative of the operand
+     * @return the derivative expression of the sine expression
      */
     @Override
-    public double evaluate() throws Exception {
-        double operandValue = getOperand().evaluate();
-        return Math.sin(Math.toRadians(operandValue));
+    protected Expression differentiateSelf(Expression operandDerivative) {
+        return new Mult(new Cos(super.getOperand()), operandDerivative);
     }
 
     /**
-     * Returns a string representation of the sine expression.
+     * Simplifies the sine of a simplified operand by folding it if it is a constant.
      *
-     * @return a string representation of the sine expression
+     * @param operandSimple the simplified operand
+     * @return the simplified expression
      */
-    public String toString() {
-        return "sin(" + super.getOperand().toString() + ")";
+    @Override
+    protected Expression simplifySelf(Expression operandSimple) {
+        Expression folded = foldSelf(operandSimple);
+        if (folded != null) {
+            return folded;
+        }
+        return new Sin(operandSimple);
     }
 
-    /**
-     * Assigns a new expression to the variable in the sine expression.
-     *
-     * @param var        the variable to assign the expression to
-     * @param expression the expression to assign
-     * @return a new sine expression with the updated operand
-     */
     @Override
-    public Expression assign(String var, Expression expression) {
-        return new Sin(super.getOperand().assign(var, expression));
+    protected double evaluateSelf(double operand) {
+        return Math.sin(Math.toRadians(operand));
     }
 
-    /**
-     * Computes the derivative of the sine expression with respect to the given variable.
-     *
-     * @param var the variable to differentiate by
-     * @return the derivative expression of the sine expression
-     */
     @Override
-    public Expression differentiate(String var) {
-        return new Mult(new Cos(super.getOperand()), getOperand().differentiate(var));
+    protected Expression assignSelf(Expression operand) {
+        return new Sin(operand);
     }
 
-    /**
-     * Simplifies the unary expression by evaluating it if possible.
-     *
-     * @return the simplified expression
-     */
+    // the partial follows differentiate(), which maps sin to cos without the degree conversion factor
     @Override
-    public Expression simplify() {
-        Expression simple;
-        try {
-            double evaluated = this.evaluate();
-            return new Num(evaluated);
-        } catch (Exception evalExpError) {
-            simple = super.getOperand().simplify();
-            try {
-                double simpleEvaluation = simple.evaluate();
-                return new Num(simpleEvaluation);
-            } catch (Exception evalSimpleError) {
-                return new Sin(simple);
-            }
-        }
+    protected double partialSelf(double operand) {
+        return Math.cos(Math.toRadians(operand));
     }
 }
@@ -0,0 +1,18 @@
+package interfaces;
+
+/**
+ * An interface that defines the behavior of an expression compiled against a fixed variable order.
+ * Variables are resolved to array indices once at compile time, so evaluation reads primitive values
+ * directly instead of looking them up in an assignment map.
+ */
+@FunctionalInterface
+public interface CompiledExpression {
+    /**
+     * Evaluates the compiled expression using the given variable values.
+     *
+     * @param values the variable values, indexed by the variable order used at compile time
+     * @return the result of evaluating the expression
+     * @throws Exception if evaluation encounters an error
+     */
+    double evaluate(double[] values) throws Exception;
+}
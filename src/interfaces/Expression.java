@@ -1,10 +1,16 @@
 package interfaces;
 
+import java.io.IOException;
 import java.util.List;
 import java.util.Map;
 
 /**
  * An interface that defines the behavior of an arithmetic expression.
+ * Expressions are immutable: every operation returns a new expression and leaves its receiver unchanged.
+ * All node types of this library keep only final fields, apart from the memoized results of lazy derivatives,
+ * and never modify the lists they return, so a tree can be shared between any number of threads, for example
+ * through a concurrent map, without copying or locking.
+ * Implementations outside the library must keep the same guarantee to be combined with library nodes.
  */
 public interface Expression {
     /**
@@ -24,8 +30,24 @@ public interface Expression {
      */
     double evaluate() throws Exception;
 
+    /**
+     * Evaluates the expression and its directional derivative together, by propagating
+     * (value, derivative) pairs through the expression instead of building a derivative expression.
+     * The derivative follows the same rules as differentiate.
+     *
+     * @param assignment variable assignments
+     * @param direction  the derivative of each variable along the direction; missing variables have derivative 0
+     * @param derivative a one-element array the directional derivative is written to
+     * @return the result of evaluating the expression
+     * @throws Exception if evaluation encounters an error
+     */
+    double evaluateDual(Map<String, Double> assignment, Map<String, Double> direction, double[] derivative)
+            throws Exception;
+
     /**
      * Returns a list of variables in the expression.
+     * Implementations return each variable once, in sorted order, and the list must not be modified;
+     * operator expressions rely on this to merge the lists of their operands.
      *
      * @return a list of variables
      */
@@ -38,6 +60,27 @@ public interface Expression {
      */
     String toString();
 
+    /**
+     * Writes the string representation of the expression, as toString returns it, to an output.
+     * The text is written piece by piece, without building strings for the subexpressions.
+     *
+     * @param out the output the text is appended to, such as a StringBuilder or a Writer
+     * @throws IOException if appending to the output fails
+     */
+    void appendTo(Appendable out) throws IOException;
+
+    /**
+     * Writes the string representation of the expression to an output, optionally with only the parentheses
+     * that precedence and grouping need, such as x + 2.0 * y^2.0 instead of (x + (2.0 * (y^2.0))).
+     * Minimal output reads back with the parser to an expression with the same value, though runs of an
+     * associative operator may come back as one flat sum or product.
+     *
+     * @param out                the output the text is appended to
+     * @param minimalParentheses whether to omit the parentheses that are not needed
+     * @throws IOException if appending to the output fails
+     */
+    void appendTo(Appendable out, boolean minimalParentheses) throws IOException;
+
     /**
      * Replaces occurrences of a variable with the provided expression.
      *
@@ -61,4 +104,40 @@ public interface Expression {
      * @return a simplified expression
      */
     Expression simplify();
+
+    /**
+     * Returns whether the expression is a literal constant (a number or a named constant),
+     * whose value is known without evaluation.
+     *
+     * @return true if the expression is a literal constant
+     */
+    boolean isConstant();
+
+    /**
+     * Returns the value of a literal constant expression.
+     *
+     * @return the value of the constant
+     * @throws UnsupportedOperationException if the expression is not a literal constant
+     */
+    double constantValue();
+
+    /**
+     * Compiles the expression into an evaluator that reads variable values from a primitive array.
+     * Each variable is resolved once to its index in the given order.
+     *
+     * @param variableOrder the variable names, in the order their values appear in the evaluator's input
+     * @return the compiled expression
+     */
+    CompiledExpression compile(List<String> variableOrder);
+
+    /**
+     * Evaluates the expression over columns of variable values, one operator at a time over whole columns.
+     * Rows whose evaluation is undefined (such as division by zero or a log outside its domain)
+     * are set to NaN instead of failing the whole batch.
+     *
+     * @param columns the values of each variable, one array per variable, at least as long as the output
+     * @param out     the array the results are written to, one value per row
+     * @throws Exception if a variable has no column or its column is shorter than the output
+     */
+    void evaluateBatch(Map<String, double[]> columns, double[] out) throws Exception;
 }
\ No newline at end of file